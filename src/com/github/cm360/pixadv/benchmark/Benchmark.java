@@ -0,0 +1,78 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import com.github.cm360.pixadv.util.Logger;
+
+/**
+ * Times a piece of code and measures how much it allocates. Each measurement
+ * runs warmup rounds first so the JIT has compiled the code being measured.
+ */
+public class Benchmark {
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	private int warmupRounds;
+	private int rounds;
+	private double lastNanosPerOperation;
+	
+	public Benchmark() {
+		this(5, 10);
+	}
+	
+	public Benchmark(int warmupRounds, int rounds) {
+		this.warmupRounds = warmupRounds;
+		this.rounds = rounds;
+	}
+	
+	/**
+	 * A single round of a benchmark.
+	 */
+	@FunctionalInterface
+	public interface Round {
+		/**
+		 * Runs the round.
+		 *
+		 * @return A value derived from the work done, so it cannot be optimized away.
+		 */
+		public long run();
+	}
+	
+	/**
+	 * Measures a round and logs the mean time and allocation per operation.
+	 *
+	 * @param name       The name to log the result under.
+	 * @param operations The number of operations each round performs.
+	 * @param round      The round to measure.
+	 * @return The mean number of bytes allocated per operation.
+	 */
+	public double measure(String name, long operations, Round round) {
+		long sink = 0;
+		for (int i = 0; i < warmupRounds; i++)
+			sink += round.run();
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			sink += round.run();
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		double totalOperations = (double) operations * rounds;
+		double bytesPerOperation = allocated / totalOperations;
+		lastNanosPerOperation = elapsed / totalOperations;
+		Logger.logMessage(Logger.INFO, "%s: %.2f ns/op, %.3f B/op (%d)",
+				name, lastNanosPerOperation, bytesPerOperation, sink);
+		return bytesPerOperation;
+	}
+	
+	/**
+	 * Gets the mean time per operation of the last measurement.
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public double getLastNanosPerOperation() {
+		return lastNanosPerOperation;
+	}
+
+}
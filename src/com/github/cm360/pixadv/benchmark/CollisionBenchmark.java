@@ -0,0 +1,239 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.entities.types.terra.Human;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.world.newton.Newton;
+import com.github.cm360.pixadv.world.newton.Newton.CollisionSide;
+import com.github.cm360.pixadv.world.newton.TileCollider;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+
+/**
+ * Times physics ticks for a crowd of entities falling onto uneven ground and
+ * bouncing off floating blocks, so most of the work is tile collision. The
+ * swept collider is timed against the stepped collision Newton used before it,
+ * kept here as {@link SteppedCollider}, on the same movements. Run with the
+ * main method; no arguments are needed. {@link CollisionChecks} checks the
+ * collision behaviour itself.
+ */
+public class CollisionBenchmark {
+
+	private static final int WIDTH = 16;
+	private static final int HEIGHT = 8;
+	private static final int CHUNK_SIZE = 20;
+	private static final int ENTITIES = 2000;
+	private static final int TICKS = 60;
+
+	public static void main(String[] args) {
+		World world = new LocalWorld(WIDTH, HEIGHT, CHUNK_SIZE, new HashMap<String, String>(), null);
+		try {
+			// Tick on this thread only
+			world.setPaused(true);
+			fill(world);
+			Random random = new Random(2);
+			Entity[] entities = new Entity[ENTITIES];
+			double[] start = new double[ENTITIES * 4];
+			for (int i = 0; i < ENTITIES; i++) {
+				entities[i] = new Human();
+				start[i * 4] = random.nextDouble() * WIDTH * CHUNK_SIZE;
+				start[i * 4 + 1] = HEIGHT * CHUNK_SIZE / 2 + random.nextDouble() * (HEIGHT * CHUNK_SIZE / 2 - 2);
+				start[i * 4 + 2] = random.nextDouble() * 40 - 20;
+				start[i * 4 + 3] = random.nextDouble() * 40 - 20;
+				world.addEntity(new UUID(0, i), entities[i]);
+			}
+			Newton newton = world.getPhysicsEngine();
+			// Simulate every entity, wherever the camera is
+			newton.setSimulationDistance(Integer.MAX_VALUE);
+			double tickSeconds = 1.0 / 60;
+			Benchmark benchmark = new Benchmark(3, 5);
+			// The collider alone, which should not allocate
+			TileCollider collider = new TileCollider(world);
+			double[] xs = new double[ENTITIES];
+			double[] ys = new double[ENTITIES];
+			SteppedCollider stepped = new SteppedCollider(world);
+			benchmark.measure("SteppedCollider.move (before)", (long) ENTITIES * TICKS, () -> {
+				long moved = 0;
+				for (int i = 0; i < ENTITIES; i++) {
+					Entity entity = entities[i];
+					entity.setX(start[i * 4]);
+					entity.setY(start[i * 4 + 1]);
+					for (int t = 0; t < TICKS; t++)
+						stepped.move(entity, start[i * 4 + 2] * tickSeconds, (start[i * 4 + 3] - t) * tickSeconds);
+					moved += Double.doubleToLongBits(entity.getY());
+				}
+				return moved;
+			});
+			benchmark.measure("TileCollider.move", (long) ENTITIES * TICKS, () -> {
+				long sides = 0;
+				for (int i = 0; i < ENTITIES; i++) {
+					Entity entity = entities[i];
+					xs[i] = start[i * 4];
+					ys[i] = start[i * 4 + 1];
+					for (int t = 0; t < TICKS; t++)
+						sides += collider.move(xs, ys, i, entity.getWidth() / 2, entity.getHeight() / 2,
+								start[i * 4 + 2] * tickSeconds, (start[i * 4 + 3] - t) * tickSeconds);
+				}
+				return sides;
+			});
+			benchmark.measure("Newton.tick", (long) ENTITIES * TICKS, () -> {
+				for (int i = 0; i < ENTITIES; i++) {
+					entities[i].setX(start[i * 4]);
+					entities[i].setY(start[i * 4 + 1]);
+					entities[i].setXVel(start[i * 4 + 2]);
+					entities[i].setYVel(start[i * 4 + 3]);
+				}
+				long onGround = 0;
+				for (int t = 0; t < TICKS; t++) {
+					newton.tick(tickSeconds);
+					for (Entity entity : entities)
+						if (entity.isOnGround())
+							onGround++;
+				}
+				return onGround;
+			});
+		} finally {
+			world.close();
+		}
+	}
+
+	/**
+	 * The collision Newton used before {@link TileCollider}, kept unchanged to
+	 * compare against. It moves an entity in half-tile steps, and at each step
+	 * finds every solid tile the entity's box would touch and which of its sides
+	 * those tiles hit. Like Newton did, it zeroes the velocity on a blocked axis
+	 * and sets whether the entity is on the ground.
+	 */
+	private static class SteppedCollider {
+
+		private final World world;
+
+		private SteppedCollider(World world) {
+			this.world = world;
+		}
+
+		private void move(Entity entity, double deltaX, double deltaY) {
+			double stepSize = 0.5;
+			Point2D.Double entityPos = new Point2D.Double(entity.getX(), entity.getY());
+			// Calculate movement distance and direction
+			double distance = Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
+			double angle = Math.atan2(deltaY, deltaX);
+			// Calculate size and number of movement steps
+			int steps = (int) Math.floor(distance / stepSize);
+			double remainder = distance % stepSize;
+			Point2D.Double step = new Point2D.Double(stepSize * Math.cos(angle), stepSize * Math.sin(angle));
+			// Check collisions at each step
+			for (int i = 1; i <= steps; i++) {
+				Point2D.Double stepPos = new Point2D.Double(entityPos.x + step.x, entityPos.y + step.y);
+				applyTileCollisions(entity, entityPos, stepPos, deltaX, deltaY, step);
+				// Exit loop if no more steps should be made
+				if (step.x == 0 && step.y == 0)
+					break;
+			}
+			// Handle remainder
+			Point2D.Double remainderPos = new Point2D.Double(entityPos.x + (remainder * Math.cos(angle)), entityPos.y + (remainder * Math.sin(angle)));
+			applyTileCollisions(entity, entityPos, remainderPos, deltaX, deltaY, step);
+			// Update position
+			entity.setX(entityPos.x);
+			entity.setY(entityPos.y);
+		}
+
+		private void applyTileCollisions(Entity entity, Point2D.Double safePos, Point2D.Double unsafePos, double deltaX, double deltaY, Point2D.Double step) {
+			Set<Point> collisions = findTileCollisions(entity, unsafePos.x, unsafePos.y);
+			Set<CollisionSide> sides = calculateCollisionSides(entity, unsafePos.x, unsafePos.y, deltaX, deltaY, collisions);
+			// Update velocities and step sizes
+			if (sides.contains(CollisionSide.TOP) || sides.contains(CollisionSide.BOTTOM)) {
+				entity.setYVel(0);
+				step.y = 0;
+			} else {
+				safePos.y = unsafePos.y;
+			}
+			if (sides.contains(CollisionSide.LEFT) || sides.contains(CollisionSide.RIGHT)) {
+				entity.setXVel(0);
+				step.x = 0;
+			} else {
+				safePos.x = unsafePos.x;
+			}
+			// Update onGround state
+			entity.setOnGround((world.getGravity() > 0 && sides.contains(CollisionSide.BOTTOM))
+					|| (world.getGravity() < 0 && sides.contains(CollisionSide.TOP)));
+		}
+
+		private Set<Point> findTileCollisions(Entity entity, double x, double y) {
+			double halfWidth = entity.getWidth() / 2;
+			int leftX = (int) Math.round(x - halfWidth);
+			int rightX = (int) Math.round(x + halfWidth);
+			double halfHeight = entity.getHeight() / 2;
+			int bottomY = (int) Math.round(y - halfHeight);
+			int topY = (int) Math.round(y + halfHeight);
+			Set<Point> collisions = new HashSet<Point>();
+			for (int tx = leftX; tx <= rightX; tx++)
+				for (int ty = bottomY; ty <= topY; ty++)
+					if (world.getTile(tx, ty, 2) != null)
+						collisions.add(new Point(tx, ty));
+			return collisions;
+		}
+
+		private Set<CollisionSide> calculateCollisionSides(Entity entity, double x, double y, double deltaX, double deltaY, Set<Point> collisions) {
+			double halfWidth = entity.getWidth() / 2;
+			double leftX = x - halfWidth;
+			double rightX = x + halfWidth;
+			double halfHeight = entity.getHeight() / 2;
+			double bottomY = y - halfHeight;
+			double topY = y + halfHeight;
+			// Entity bounding rectangle
+			Rectangle2D.Double entityBounds = new Rectangle2D.Double(x - halfWidth, y - halfHeight, entity.getWidth(), entity.getHeight());
+			// Check side collisions
+			Set<CollisionSide> allSides = new HashSet<CollisionSide>();
+			collisions.stream().forEach(point -> {
+				// Calculate tile intersection
+				Rectangle2D.Double tileBounds = new Rectangle2D.Double(point.x - 0.5, point.y - 0.5, 1, 1);
+				Rectangle2D intersection = tileBounds.createIntersection(entityBounds);
+				Set<CollisionSide> sides = new HashSet<CollisionSide>();
+				// Y axis collisions
+				if (intersection.getWidth() >= intersection.getHeight()) {
+					if ((deltaY > 0) && (point.y > topY && point.y - 0.5 < topY))
+						sides.add(CollisionSide.TOP);
+					if ((deltaY < 0) && (point.y < bottomY && point.y + 0.5 > bottomY))
+						sides.add(CollisionSide.BOTTOM);
+				}
+				// X axis collisions
+				if (intersection.getHeight() >= intersection.getWidth()) {
+					if ((deltaX < 0) && (point.x < leftX && point.x + 0.5 > leftX))
+						sides.add(CollisionSide.LEFT);
+					if ((deltaX > 0) && (point.x > rightX && point.x - 0.5 < rightX))
+						sides.add(CollisionSide.RIGHT);
+				}
+				allSides.addAll(sides);
+			});
+			return allSides;
+		}
+
+	}
+
+	private static void fill(World world) {
+		Random random = new Random(1);
+		for (int cx = 0; cx < WIDTH; cx++)
+			for (int cy = 0; cy < HEIGHT; cy++)
+				world.createChunk(cx, cy);
+		int widthTiles = WIDTH * CHUNK_SIZE;
+		int heightTiles = HEIGHT * CHUNK_SIZE;
+		for (int x = 0; x < widthTiles; x++) {
+			// Rolling ground in the bottom half, scattered blocks above it
+			int ground = heightTiles / 2 - 5 + (int) Math.round(Math.sin(x / 7.0) * 4);
+			for (int y = 0; y < heightTiles; y++)
+				if (y < ground || random.nextInt(25) == 0)
+					world.setTile(Stone.INSTANCE, x, y, 2);
+		}
+	}
+
+}
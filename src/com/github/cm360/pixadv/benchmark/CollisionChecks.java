@@ -0,0 +1,180 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.entities.types.terra.Human;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.newton.TileCollider;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+
+/**
+ * Checks how entities collide with tiles: resting, landing, sliding, walls,
+ * ceilings, tile corners, fast movement, escaping from inside terrain and the
+ * world's seam at x = 0. Entities are ticked by the physics engine, so each
+ * check also covers which velocities are zeroed and when an entity counts as
+ * on the ground. Run with the main method; no arguments are needed. Exits with
+ * status 1 if any check fails.
+ */
+public class CollisionChecks {
+
+	private static final int WIDTH = 4;
+	private static final int HEIGHT = 4;
+	private static final int CHUNK_SIZE = 20;
+	private static final double TICK = 1.0 / 60;
+	private static final double EPSILON = 1e-9;
+
+	// A human's box is 0.8 by 1.8 tiles, so it rests at y = 10.4 on ground up to row 9
+	private static final double HALF_WIDTH = 0.4;
+	private static final double HALF_HEIGHT = 0.9;
+	private static final double GROUND = 9.5 + HALF_HEIGHT;
+
+	private World world;
+	private int failures;
+
+	public static void main(String[] args) {
+		CollisionChecks checks = new CollisionChecks();
+		checks.run();
+		System.exit((checks.failures == 0) ? 0 : 1);
+	}
+
+	private void run() {
+		world = new LocalWorld(WIDTH, HEIGHT, CHUNK_SIZE, new HashMap<String, String>(), null);
+		try {
+			// Tick on this thread only, simulating every entity
+			world.setPaused(true);
+			world.getPhysicsEngine().setSimulationDistance(Integer.MAX_VALUE);
+			build();
+			checkGround();
+			checkWalls();
+			checkCeilings();
+			checkCorners();
+			checkSeam();
+		} finally {
+			world.close();
+		}
+		if (failures == 0)
+			Logger.logMessage(Logger.INFO, "All collision checks passed");
+		else
+			Logger.logMessage(Logger.ERROR, "%d collision checks failed!", failures);
+	}
+
+	private void build() {
+		for (int cx = 0; cx < WIDTH; cx++)
+			for (int cy = 0; cy < HEIGHT; cy++)
+				world.createChunk(cx, cy);
+		// Flat ground up to row 9, with a wall, a ceiling, a thin platform and a lone block above it
+		for (int x = 0; x < WIDTH * CHUNK_SIZE; x++)
+			for (int y = 0; y <= 9; y++)
+				world.setTile(Stone.INSTANCE, x, y, 2);
+		for (int y = 10; y < 20; y++)
+			world.setTile(Stone.INSTANCE, 30, y, 2);
+		for (int x = 50; x < 60; x++)
+			world.setTile(Stone.INSTANCE, x, 14, 2);
+		for (int x = 60; x < 70; x++)
+			world.setTile(Stone.INSTANCE, x, 40, 2);
+		world.setTile(Stone.INSTANCE, 41, 31, 2);
+	}
+
+	private void checkGround() {
+		Entity entity = simulate(10, GROUND, 0, 0, 120);
+		check("resting stays put and on the ground", near(entity.getY(), GROUND) && entity.isOnGround() && entity.getYVel() == 0, entity);
+		entity = simulate(10, 20, 0, 0, 240);
+		check("falling lands flush on the ground", near(entity.getY(), GROUND) && entity.isOnGround() && entity.getYVel() == 0, entity);
+		entity = simulate(20, GROUND, 8, 0, 30);
+		check("sliding keeps moving along the ground", entity.getX() > 22 && near(entity.getY(), GROUND) && entity.isOnGround(), entity);
+		entity = simulate(65, 60, 0, -2000, 2);
+		check("fast falls stop on thin platforms", near(entity.getY(), 40.5 + HALF_HEIGHT) && entity.isOnGround(), entity);
+		entity = simulate(10, 9.9, 0, 0, 1);
+		check("entities inside terrain sink no further", entity.getY() >= 9.9 - 0.01, entity);
+		entity = simulate(10, 9.9, 0, 20, 10);
+		check("entities inside terrain can move out", entity.getY() > GROUND, entity);
+	}
+
+	private void checkWalls() {
+		Entity entity = simulate(25, GROUND, 30, 0, 60);
+		check("walls stop entities moving right", near(entity.getX(), 29.5 - HALF_WIDTH) && entity.getXVel() == 0 && entity.isOnGround(), entity);
+		entity = simulate(35, GROUND, -30, 0, 60);
+		check("walls stop entities moving left", near(entity.getX(), 30.5 + HALF_WIDTH) && entity.getXVel() == 0 && entity.isOnGround(), entity);
+	}
+
+	private void checkCeilings() {
+		Entity entity = simulate(55, GROUND, 0, 40, 3);
+		check("ceilings stop entities moving up", entity.getY() <= 13.5 - HALF_HEIGHT + EPSILON && !entity.isOnGround(), entity);
+	}
+
+	private void checkCorners() {
+		// Boxes whose edges reach a tile's corner on both axes at once, around the block at (41, 31)
+		TileCollider collider = new TileCollider(world);
+		double[][] moves = {
+				{ 40, 30, 0.4, 1.2, 1.2 }, { 40, 30, 0.5, 1, 1 }, { 42, 32, 0.4, -1.2, -1.2 },
+				{ 42, 30, 0.4, -1.2, 1.2 }, { 40, 32, 0.5, 1, -1 } };
+		for (double[] move : moves) {
+			double[] xs = { move[0] };
+			double[] ys = { move[1] };
+			int sides = collider.move(xs, ys, 0, move[2], move[2], move[3], move[4]);
+			boolean inside = Math.abs(xs[0] - 41) < 0.5 + move[2] - EPSILON && Math.abs(ys[0] - 31) < 0.5 + move[2] - EPSILON;
+			check("diagonal moves from (%.0f, %.0f) stop at tile corners".formatted(move[0], move[1]), !inside && sides != 0,
+					"%.3f, %.3f, sides %d".formatted(xs[0], ys[0], sides));
+		}
+	}
+
+	private void checkSeam() {
+		int widthTiles = WIDTH * CHUNK_SIZE;
+		// Walls on either side of x = 0
+		for (int y = 10; y < 20; y++)
+			world.setTile(Stone.INSTANCE, widthTiles - 1, y, 2);
+		Entity entity = simulate(1.5, GROUND, -30, 0, 30);
+		check("walls across the seam stop entities moving left", near(entity.getX(), -0.5 + HALF_WIDTH) && entity.getXVel() == 0, entity);
+		for (int y = 10; y < 20; y++) {
+			world.setTile(null, widthTiles - 1, y, 2);
+			world.setTile(Stone.INSTANCE, 0, y, 2);
+		}
+		entity = simulate(widthTiles - 1.5, GROUND, 30, 0, 30);
+		check("walls across the seam stop entities moving right", near(entity.getX(), widthTiles - 0.5 - HALF_WIDTH) && entity.getXVel() == 0, entity);
+		for (int y = 10; y < 20; y++)
+			world.setTile(null, 0, y, 2);
+		entity = simulate(0.6, GROUND, -10, 0, 30);
+		check("entities walk across the seam on the ground", entity.getX() < 0 && near(entity.getY(), GROUND) && entity.isOnGround(), entity);
+	}
+
+	/**
+	 * Ticks a new human, alone in the world, from a position and velocity.
+	 */
+	private Entity simulate(double x, double y, double xVel, double yVel, int ticks) {
+		for (UUID uuid : new ArrayList<UUID>(world.getEntities().keySet()))
+			world.removeEntity(uuid);
+		Entity entity = new Human();
+		world.addEntity(UUID.randomUUID(), entity);
+		entity.setX(x);
+		entity.setY(y);
+		entity.setXVel(xVel);
+		entity.setYVel(yVel);
+		for (int t = 0; t < ticks; t++)
+			world.getPhysicsEngine().tick(TICK);
+		return entity;
+	}
+
+	private void check(String name, boolean passed, Object details) {
+		if (details instanceof Entity) {
+			Entity entity = (Entity) details;
+			details = "at %.3f, %.3f moving %.3f, %.3f, %s".formatted(entity.getX(), entity.getY(),
+					entity.getXVel(), entity.getYVel(), entity.isOnGround() ? "on the ground" : "in the air");
+		}
+		if (passed) {
+			Logger.logMessage(Logger.INFO, "Passed: %s", name);
+		} else {
+			Logger.logMessage(Logger.ERROR, "Failed: %s (%s)", name, details);
+			failures++;
+		}
+	}
+
+	private static boolean near(double value, double expected) {
+		return Math.abs(value - expected) < EPSILON;
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.BasicWorldGenerator;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.util.TextUtil;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * Generates worlds of several sizes from fixed seeds, reporting throughput and
+ * peak heap, and hashes every chunk so changes to generated output are caught.
+ * <p>
+ * Run with the main method. With no arguments the results are only logged.
+ * "record &lt;file&gt;" writes the hashes to a golden manifest, and "verify
+ * &lt;file&gt;" compares them against one, exiting with status 1 if any chunk
+ * differs. No manifest is committed, since one is only valid for the noise
+ * library version it was recorded with: record one on a known good build,
+ * outside the resources directory so it is not packaged, and verify later
+ * builds against it.
+ */
+public class GenerationBenchmark {
+	
+	private static final long[] SEEDS = { 1, 42, 8675309 };
+	private static final int[][] SIZES = { { 25, 10 }, { 50, 20 }, { 100, 20 } };
+	private static final int CHUNK_SIZE = 20;
+	private static final int ROUNDS = 3;
+	
+	public static void main(String[] args) throws Exception {
+		String mode = (args.length > 0) ? args[0] : "report";
+		File manifestFile = (args.length > 1) ? new File(args[1]) : null;
+		if (!mode.equals("record") && !mode.equals("verify") && !mode.equals("report")) {
+			Logger.logMessage(Logger.ERROR, "Unknown mode '%s', expected record, verify or report", mode);
+			System.exit(2);
+		}
+		if (!mode.equals("report") && manifestFile == null) {
+			Logger.logMessage(Logger.ERROR, "Usage: %s <manifest file>", mode);
+			System.exit(2);
+		}
+		if (mode.equals("verify") && !manifestFile.isFile()) {
+			Logger.logMessage(Logger.ERROR, "No golden manifest found at '%s'!", manifestFile);
+			System.exit(2);
+		}
+		Map<String, String> hashes = new LinkedHashMap<String, String>();
+		// Warm up so the first measured size is not dominated by the JIT
+		new BasicWorldGenerator(0).setWidth(SIZES[0][0]).setHeight(SIZES[0][1]).generate().close();
+		for (int[] size : SIZES) {
+			for (long seed : SEEDS) {
+				double bestNanos = Double.MAX_VALUE;
+				long peakHeap = 0;
+				for (int round = 0; round < ROUNDS; round++) {
+					resetPeakHeap();
+					long start = System.nanoTime();
+					World world = new BasicWorldGenerator(seed)
+							.setWidth(size[0]).setHeight(size[1]).setChunkSize(CHUNK_SIZE)
+							.generate();
+					bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+					peakHeap = Math.max(peakHeap, getPeakHeap());
+					if (round == 0)
+						hashWorld(world, seed, hashes);
+					world.close();
+				}
+				int chunks = size[0] * size[1];
+				long tiles = (long) chunks * CHUNK_SIZE * CHUNK_SIZE;
+				Logger.logMessage(Logger.INFO, "%dx%d seed %d: %.0f chunks/s, %.1f ns/tile, %dMB peak heap, %s",
+						size[0], size[1], seed, chunks / (bestNanos / 1e9), bestNanos / tiles,
+						peakHeap / (1024 * 1024), hashes.get(worldKey(seed, size[0], size[1])));
+			}
+		}
+		// Generation must not depend on the number of threads
+		Map<String, String> sequential = new LinkedHashMap<String, String>();
+		World world = new BasicWorldGenerator(SEEDS[0]).setWidth(SIZES[0][0]).setHeight(SIZES[0][1])
+				.setChunkSize(CHUNK_SIZE).setParallelism(1).generate();
+		hashWorld(world, SEEDS[0], sequential);
+		world.close();
+		boolean passed = true;
+		String key = worldKey(SEEDS[0], SIZES[0][0], SIZES[0][1]);
+		if (!sequential.get(key).equals(hashes.get(key))) {
+			Logger.logMessage(Logger.ERROR, "Sequential and parallel generation produced different worlds!");
+			passed = false;
+		}
+		if (mode.equals("record")) {
+			manifestFile.getAbsoluteFile().getParentFile().mkdirs();
+			writeManifest(manifestFile, hashes);
+			Logger.logMessage(Logger.INFO, "Recorded %d hashes to '%s'", hashes.size(), manifestFile);
+		} else if (mode.equals("verify")) {
+			passed &= verify(parseManifest(TextUtil.read(manifestFile)), hashes);
+		}
+		System.exit(passed ? 0 : 1);
+	}
+	
+	/**
+	 * Hashes every chunk of a world, and the world as a whole.
+	 */
+	private static void hashWorld(World world, long seed, Map<String, String> hashes) throws NoSuchAlgorithmException {
+		MessageDigest worldDigest = MessageDigest.getInstance("SHA-256");
+		MessageDigest chunkDigest = MessageDigest.getInstance("SHA-256");
+		Map<Tile, byte[]> tileBytes = new IdentityHashMap<Tile, byte[]>();
+		byte[] air = "air;".getBytes(StandardCharsets.UTF_8);
+		for (int cx = 0; cx < world.getWidth(); cx++) {
+			for (int cy = 0; cy < world.getHeight(); cy++) {
+				Chunk chunk = world.getChunk(cx, cy);
+				for (int l = 0; l < Chunk.LAYERS; l++) {
+					for (int y = 0; y < chunk.getSize(); y++) {
+						for (int x = 0; x < chunk.getSize(); x++) {
+							Tile tile = chunk.getTile(x, y, l);
+							chunkDigest.update((tile == null) ? air : tileBytes.computeIfAbsent(tile,
+									t -> "%s:%s;".formatted(t.getID(), t.getData()).getBytes(StandardCharsets.UTF_8)));
+						}
+					}
+				}
+				byte[] chunkHash = chunkDigest.digest();
+				worldDigest.update(chunkHash);
+				hashes.put("%d %dx%d %d,%d".formatted(seed, world.getWidth(), world.getHeight(), cx, cy), HexFormat.of().formatHex(chunkHash));
+			}
+		}
+		hashes.put(worldKey(seed, world.getWidth(), world.getHeight()), HexFormat.of().formatHex(worldDigest.digest()));
+	}
+	
+	private static String worldKey(long seed, int width, int height) {
+		return "%d %dx%d world".formatted(seed, width, height);
+	}
+	
+	private static boolean verify(Map<String, String> golden, Map<String, String> hashes) {
+		int mismatches = 0;
+		for (Map.Entry<String, String> entry : golden.entrySet()) {
+			if (!entry.getValue().equals(hashes.get(entry.getKey()))) {
+				if (mismatches < 10)
+					Logger.logMessage(Logger.ERROR, "Output changed for %s", entry.getKey());
+				mismatches++;
+			}
+		}
+		if (golden.size() != hashes.size())
+			Logger.logMessage(Logger.WARNING, "The manifest has %d hashes but %d were generated", golden.size(), hashes.size());
+		if (mismatches > 0)
+			Logger.logMessage(Logger.ERROR, "%d of %d hashes differ from the golden manifest!", mismatches, golden.size());
+		else
+			Logger.logMessage(Logger.INFO, "All %d hashes match the golden manifest", golden.size());
+		return mismatches == 0;
+	}
+	
+	private static void writeManifest(File file, Map<String, String> hashes) {
+		StringBuilder manifest = new StringBuilder();
+		hashes.forEach((key, hash) -> manifest.append(key).append(' ').append(hash).append('\n'));
+		TextUtil.write(file, manifest.toString());
+	}
+	
+	private static Map<String, String> parseManifest(String manifest) {
+		Map<String, String> hashes = new LinkedHashMap<String, String>();
+		for (String line : manifest.split("[\\n\\r]+")) {
+			int split = line.lastIndexOf(' ');
+			if (split > 0)
+				hashes.put(line.substring(0, split), line.substring(split + 1));
+		}
+		return hashes;
+	}
+	
+	private static void resetPeakHeap() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+	}
+	
+	private static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+	
+}
@@ -0,0 +1,71 @@
+package com.github.cm360.pixadv.benchmark;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.NoiseField;
+import com.github.cm360.pixadv.util.Logger;
+
+import de.articdive.jnoise.JNoise;
+
+/**
+ * Compares cave noise sampled on lattices of different spacings against exact
+ * evaluation, reporting throughput and how far the interpolated values and
+ * cave shapes stray from the exact ones. Run with the main method; an optional
+ * argument sets the seed.
+ */
+public class NoiseFieldBenchmark {
+
+	private static final int WORLD_WIDTH = 2000;
+	private static final int WORLD_HEIGHT = 400;
+	private static final int CHUNK_SIZE = 20;
+	private static final int[] STEPS = { 1, 2, 4, 8 };
+	
+	public static void main(String[] args) {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : 0;
+		JNoise noise = JNoise.newBuilder().fastSimplex().setSeed(seed).build();
+		// Exact values for the whole world to compare against
+		NoiseField exactField = new NoiseField(noise, WORLD_WIDTH, 0.4, 1, 1);
+		double[] exact = fillWorld(exactField);
+		Benchmark benchmark = new Benchmark(2, 5);
+		double[] buffer = new double[CHUNK_SIZE * CHUNK_SIZE];
+		int chunks = (WORLD_WIDTH / CHUNK_SIZE) * (WORLD_HEIGHT / CHUNK_SIZE);
+		for (int step : STEPS) {
+			NoiseField field = new NoiseField(noise, WORLD_WIDTH, 0.4, 1, step);
+			// Throughput, filling one chunk at a time like the generator does
+			benchmark.measure("step %d".formatted(step), (long) WORLD_WIDTH * WORLD_HEIGHT, () -> {
+				long sink = 0;
+				for (int i = 0; i < chunks; i++) {
+					int cx = i / (WORLD_HEIGHT / CHUNK_SIZE);
+					int cy = i % (WORLD_HEIGHT / CHUNK_SIZE);
+					field.fill(cx * CHUNK_SIZE, cy * CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE, buffer);
+					sink += Double.doubleToLongBits(buffer[0]);
+				}
+				return sink;
+			});
+			double cellsPerSecond = 1e9 / benchmark.getLastNanosPerOperation();
+			// Quality, as value error and as tiles whose cave status differs
+			double[] sampled = fillWorld(field);
+			double maxError = 0;
+			double totalError = 0;
+			int cheeseFlips = 0;
+			int networkFlips = 0;
+			for (int i = 0; i < exact.length; i++) {
+				double error = Math.abs(sampled[i] - exact[i]);
+				maxError = Math.max(maxError, error);
+				totalError += error;
+				if ((((exact[i] + 1) / 2) > 0.8) != (((sampled[i] + 1) / 2) > 0.8))
+					cheeseFlips++;
+				if ((Math.abs(exact[i]) < 0.06) != (Math.abs(sampled[i]) < 0.06))
+					networkFlips++;
+			}
+			Logger.logMessage(Logger.INFO, "step %d: %.0f cells/s, max error %.5f, mean error %.5f, %.3f%% cheese and %.3f%% network cave tiles differ",
+					step, cellsPerSecond, maxError, totalError / exact.length,
+					100.0 * cheeseFlips / exact.length, 100.0 * networkFlips / exact.length);
+		}
+	}
+	
+	private static double[] fillWorld(NoiseField field) {
+		double[] values = new double[WORLD_WIDTH * WORLD_HEIGHT];
+		field.fill(0, 0, WORLD_WIDTH, WORLD_HEIGHT, values);
+		return values;
+	}
+
+}
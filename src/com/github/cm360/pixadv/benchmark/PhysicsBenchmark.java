@@ -0,0 +1,171 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.entities.types.terra.Human;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.newton.Newton;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.entities.EntityStore;
+
+/**
+ * Times physics ticks for 10k to 100k entities spread over worlds sized to
+ * keep the same density, so the time per entity should stay about the same as
+ * the count grows. Each count is timed on one thread and then on one per
+ * processor, and both must leave every entity in exactly the same state.
+ * Finally, a sparser world is left to settle and then timed with entities
+ * sleeping and with every entity kept awake. Run with the main method; no
+ * arguments are needed. Exits with status 1 if the states differ.
+ */
+public class PhysicsBenchmark {
+
+	private static final int[] COUNTS = { 10000, 30000, 100000 };
+	private static final int ENTITIES_PER_CHUNK_COLUMN = 100;
+	private static final int HEIGHT = 8;
+	private static final int CHUNK_SIZE = 20;
+	private static final int TICKS = 30;
+	private static final int SETTLED_COUNT = 10000;
+	private static final int SETTLED_ENTITIES_PER_CHUNK_COLUMN = 10;
+	private static final int SETTLE_TICKS = 1200;
+
+	public static void main(String[] args) {
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		boolean passed = true;
+		for (int count : COUNTS) {
+			int width = count / ENTITIES_PER_CHUNK_COLUMN;
+			World world = new LocalWorld(width, HEIGHT, CHUNK_SIZE, new HashMap<String, String>(), null);
+			try {
+				Entity[] entities = new Entity[count];
+				double[] start = populate(world, entities);
+				Newton newton = world.getPhysicsEngine();
+				Benchmark benchmark = new Benchmark(2, 3);
+				long[] states = new long[2];
+				for (int run = 0; run < 2; run++) {
+					newton.setParallelism((run == 0) ? 1 : threads);
+					benchmark.measure("Newton.tick, %d entities, %d thread(s)".formatted(count, newton.getParallelism()),
+							(long) count * TICKS, () -> simulate(newton, entities, start));
+					simulate(newton, entities, start);
+					states[run] = hashState(world.getEntityStore());
+				}
+				if (states[0] != states[1]) {
+					Logger.logMessage(Logger.ERROR, "Serial and parallel ticks left %d entities in different states!", count);
+					passed = false;
+				}
+			} finally {
+				world.close();
+			}
+		}
+		measureSettled();
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static void measureSettled() {
+		int width = SETTLED_COUNT / SETTLED_ENTITIES_PER_CHUNK_COLUMN;
+		World world = new LocalWorld(width, HEIGHT, CHUNK_SIZE, new HashMap<String, String>(), null);
+		try {
+			Entity[] entities = new Entity[SETTLED_COUNT];
+			double[] start = populate(world, entities);
+			for (int i = 0; i < entities.length; i++) {
+				entities[i].setX(start[i * 4]);
+				entities[i].setY(start[i * 4 + 1]);
+			}
+			Newton newton = world.getPhysicsEngine();
+			for (int t = 0; t < SETTLE_TICKS; t++)
+				newton.tick(1.0 / 60);
+			Benchmark benchmark = new Benchmark(2, 3);
+			benchmark.measure("Newton.tick, %d settled entities, %d asleep".formatted(SETTLED_COUNT, newton.getSleepingCount()),
+					(long) SETTLED_COUNT * TICKS, () -> tick(newton));
+			// Wake everything and keep it awake
+			newton.setSleepDelay(Double.POSITIVE_INFINITY);
+			EntityStore store = world.getEntityStore();
+			synchronized (store) {
+				for (int i = 0; i < store.size(); i++)
+					store.wake(i);
+			}
+			benchmark.measure("Newton.tick, %d settled entities, none asleep".formatted(SETTLED_COUNT),
+					(long) SETTLED_COUNT * TICKS, () -> tick(newton));
+		} finally {
+			world.close();
+		}
+	}
+
+	/**
+	 * Fills a world with terrain and adds entities to it, ticking on this thread
+	 * only.
+	 *
+	 * @return Each entity's starting position and velocity, four values per
+	 *         entity.
+	 */
+	private static double[] populate(World world, Entity[] entities) {
+		world.setPaused(true);
+		// Simulate every entity, wherever the camera is
+		world.getPhysicsEngine().setSimulationDistance(Integer.MAX_VALUE);
+		fill(world);
+		Random random = new Random(3);
+		double[] start = new double[entities.length * 4];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = new Human();
+			world.addEntity(new UUID(0, i), entities[i]);
+			start[i * 4] = random.nextDouble() * world.getWidth() * CHUNK_SIZE;
+			start[i * 4 + 1] = 12 + random.nextDouble() * (HEIGHT * CHUNK_SIZE - 14);
+			start[i * 4 + 2] = random.nextDouble() * 10 - 5;
+			start[i * 4 + 3] = random.nextDouble() * 10 - 5;
+		}
+		return start;
+	}
+
+	private static long tick(Newton newton) {
+		long nanos = 0;
+		for (int t = 0; t < TICKS; t++)
+			nanos += newton.tick(1.0 / 60);
+		return nanos;
+	}
+
+	private static long simulate(Newton newton, Entity[] entities, double[] start) {
+		for (int i = 0; i < entities.length; i++) {
+			entities[i].setX(start[i * 4]);
+			entities[i].setY(start[i * 4 + 1]);
+			entities[i].setXVel(start[i * 4 + 2]);
+			entities[i].setYVel(start[i * 4 + 3]);
+			entities[i].setXAccel(0);
+			entities[i].setYAccel(0);
+		}
+		long onGround = 0;
+		for (int t = 0; t < TICKS; t++)
+			newton.tick(1.0 / 60);
+		for (Entity entity : entities)
+			if (entity.isOnGround())
+				onGround++;
+		return onGround;
+	}
+
+	private static long hashState(EntityStore store) {
+		long hash = 0;
+		for (int i = 0; i < store.size(); i++) {
+			hash = hash * 31 + Double.doubleToLongBits(store.getXs()[i]);
+			hash = hash * 31 + Double.doubleToLongBits(store.getYs()[i]);
+			hash = hash * 31 + Double.doubleToLongBits(store.getXVels()[i]);
+			hash = hash * 31 + Double.doubleToLongBits(store.getYVels()[i]);
+			hash = hash * 31 + store.getFlags()[i];
+		}
+		return hash;
+	}
+
+	private static void fill(World world) {
+		for (int cx = 0; cx < world.getWidth(); cx++)
+			for (int cy = 0; cy < world.getHeight(); cy++)
+				world.createChunk(cx, cy);
+		// Flat ground with a few pillars to collide with
+		for (int x = 0; x < world.getWidth() * CHUNK_SIZE; x++) {
+			int top = (x % 23 == 0) ? 30 : 9;
+			for (int y = 0; y <= top; y++)
+				world.setTile(Stone.INSTANCE, x, y, 2);
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.github.cm360.pixadv.benchmark;
+
+import java.awt.Point;
+import java.util.HashMap;
+import java.util.Random;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.luna.Luminite;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
+import com.github.cm360.pixadv.world.storage.world.TileRegion;
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * Compares per-tile and bulk tile reads, and checks that neither allocates.
+ * Run with the main method; no arguments are needed.
+ */
+public class TileAccessBenchmark {
+
+	private static final int WIDTH = 16;
+	private static final int HEIGHT = 8;
+	private static final int CHUNK_SIZE = 20;
+	private static final int ACCESSES = 1000000;
+	
+	public static void main(String[] args) {
+		World world = new LocalWorld(WIDTH, HEIGHT, CHUNK_SIZE, new HashMap<String, String>(), null);
+		try {
+			fill(world);
+			int widthTiles = WIDTH * CHUNK_SIZE;
+			int heightTiles = HEIGHT * CHUNK_SIZE;
+			// Random coordinates, including some which need wrapping
+			Random random = new Random(0);
+			int[] xs = new int[ACCESSES];
+			int[] ys = new int[ACCESSES];
+			for (int i = 0; i < ACCESSES; i++) {
+				xs[i] = random.nextInt(widthTiles * 3) - widthTiles;
+				ys[i] = random.nextInt(heightTiles);
+			}
+			Benchmark benchmark = new Benchmark();
+			benchmark.measure("getTile", ACCESSES, () -> {
+				long found = 0;
+				for (int i = 0; i < ACCESSES; i++)
+					if (world.getTile(xs[i], ys[i], 2) != null)
+						found++;
+				return found;
+			});
+			benchmark.measure("correctCoord + getTile", ACCESSES, () -> {
+				long found = 0;
+				for (int i = 0; i < ACCESSES; i++) {
+					Point corrected = world.correctCoord(xs[i], ys[i]);
+					if (world.getTile(corrected.x, corrected.y, 2) != null)
+						found++;
+				}
+				return found;
+			});
+			// Bulk reads of a screen sized area
+			int regionWidth = 64;
+			int regionHeight = 36;
+			Tile[] buffer = new Tile[regionWidth * regionHeight];
+			benchmark.measure("readTiles", (long) regionWidth * regionHeight * 100, () -> {
+				long found = 0;
+				for (int i = 0; i < 100; i++) {
+					world.readTiles(xs[i], ys[i] % (heightTiles - regionHeight), regionWidth, regionHeight, 2, buffer, 0);
+					for (Tile tile : buffer)
+						if (tile != null)
+							found++;
+				}
+				return found;
+			});
+			TileRegion region = new TileRegion(regionWidth, regionHeight);
+			benchmark.measure("TileRegion.read", (long) regionWidth * regionHeight * 3 * 100, () -> {
+				long found = 0;
+				for (int i = 0; i < 100; i++) {
+					region.read(world, xs[i], ys[i] % (heightTiles - regionHeight));
+					if (region.get(0, 0, 2) != null)
+						found++;
+				}
+				return found;
+			});
+		} finally {
+			world.close();
+		}
+	}
+	
+	private static void fill(World world) {
+		Random random = new Random(1);
+		for (int cx = 0; cx < WIDTH; cx++)
+			for (int cy = 0; cy < HEIGHT; cy++)
+				world.createChunk(cx, cy);
+		for (int x = 0; x < WIDTH * CHUNK_SIZE; x++)
+			for (int y = 0; y < HEIGHT * CHUNK_SIZE; y++) {
+				int roll = random.nextInt(10);
+				if (roll < 6)
+					world.setTile(Stone.INSTANCE, x, y, 2);
+				else if (roll < 7)
+					world.setTile(Luminite.INSTANCE, x, y, 2);
+			}
+	}
+
+}
@@ -1,11 +1,20 @@
 package com.github.cm360.pixadv.builtin.pixadv;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.github.cm360.pixadv.builtin.pixadv.java.entities.types.terra.Human;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.CaveStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.OreStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.SurfaceStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.TerrainStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.luna.Luminite;
 import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Dirt;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
 import com.github.cm360.pixadv.registry.ModuleContentProvider;
 import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public class BuiltinModuleContentProvider implements ModuleContentProvider {
@@ -14,14 +23,26 @@ public class BuiltinModuleContentProvider implements ModuleContentProvider {
 	public Map<String, Class<? extends Tile>> getTiles() {
 		Map<String, Class<? extends Tile>> tiles = new HashMap<String, Class<? extends Tile>>();
 		tiles.put("terra/dirt", Dirt.class);
-		tiles.put("terra/stone", Dirt.class);
+		tiles.put("terra/stone", Stone.class);
+		tiles.put("luna/luminite", Luminite.class);
 		return tiles;
 	}
 
 	@Override
 	public Map<String, Class<? extends Entity>> getEntities() {
 		Map<String, Class<? extends Entity>> entities = new HashMap<String, Class<? extends Entity>>();
+		entities.put("terra/human", Human.class);
 		return entities;
 	}
 
+	@Override
+	public Map<String, Class<? extends GenerationStage>> getGenerationStages() {
+		Map<String, Class<? extends GenerationStage>> stages = new LinkedHashMap<String, Class<? extends GenerationStage>>();
+		stages.put("terrain", TerrainStage.class);
+		stages.put("surface", SurfaceStage.class);
+		stages.put("caves", CaveStage.class);
+		stages.put("ores", OreStage.class);
+		return stages;
+	}
+
 }
@@ -0,0 +1,63 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.commands;
+
+import java.io.File;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.BasicWorldGenerator;
+import com.github.cm360.pixadv.commands.Command;
+import com.github.cm360.pixadv.commands.Syntax;
+import com.github.cm360.pixadv.world.io.WorldPregenerator;
+import com.github.cm360.pixadv.world.storage.universe.LocalUniverse;
+import com.github.cm360.pixadv.world.storage.universe.Universe;
+
+public class PregenCommand extends Command {
+
+	protected Universe universe;
+	protected WorldPregenerator pregenerator;
+	protected Thread pregenThread;
+	
+	public PregenCommand(Universe universe) {
+		super();
+		this.universe = universe;
+		// Pregenerates a world into this save, optionally with a size in chunks, or cancels a running pregeneration
+		addSyntax(new Syntax(args -> {
+			if (!(universe instanceof LocalUniverse))
+				return "Worlds can only be pregenerated in a local save!";
+			synchronized (this) {
+				boolean running = pregenThread != null && pregenThread.isAlive();
+				if (args.length == 1 && args[0].equals("cancel")) {
+					if (!running)
+						return "Nothing is being pregenerated.";
+					pregenerator.cancel();
+					return "Cancelling pregeneration after %d/%d chunks, the chunks being generated are still saved.".formatted(
+							pregenerator.getCompletedChunks(), pregenerator.getTotalChunks());
+				}
+				if (args.length < 2 || !(args[1] instanceof Number))
+					return "Usage: pregen <world> <seed> [width height] or pregen cancel";
+				if (running)
+					return "Already pregenerating, %d/%d chunks (%.1f%%).".formatted(pregenerator.getCompletedChunks(),
+							pregenerator.getTotalChunks(), 100 * pregenerator.getProgress());
+				String name = (String) args[0];
+				// A loaded world has its own storage open on the same region files
+				if (universe.getWorld(name) != null)
+					return "The world '%s' is loaded, refusing to pregenerate into it!".formatted(name);
+				BasicWorldGenerator generator = new BasicWorldGenerator(((Number) args[1]).longValue());
+				generator.setName(name).setStages(universe.getRegistry().createGenerationStages());
+				if (args.length > 3)
+					generator.setWidth(((Number) args[2]).intValue()).setHeight(((Number) args[3]).intValue());
+				File worldDirectory = new File(((LocalUniverse) universe).getDirectory(), "worlds/" + name);
+				pregenerator = new WorldPregenerator(universe.getRegistry());
+				pregenThread = new Thread(() -> pregenerator.pregenerate(generator, worldDirectory), "Pregen-" + name);
+				pregenThread.setDaemon(true);
+				pregenThread.start();
+				return "Pregenerating %dx%d chunks into '%s', it can be played after reloading the save.".formatted(
+						generator.getWidth(), generator.getHeight(), name);
+			}
+		}, String.class));
+	}
+	
+	@Override
+	public String getName() {
+		return "pregen";
+	}
+
+}
@@ -39,16 +39,16 @@ public class HumanPlayer extends Human implements PlayerEntity, FlyingEntity {
 		double accel = 0;
 		if (flying) {
 			if (inputs.contains(Input.LEFT))
-				accel -= getBoundedAccel(Math.max(0, -xVel));
+				accel -= getBoundedAccel(Math.max(0, -getXVel()));
 			if (inputs.contains(Input.RIGHT))
-				accel += getBoundedAccel(Math.max(0, xVel));
+				accel += getBoundedAccel(Math.max(0, getXVel()));
 		} else {
 			if (inputs.contains(Input.LEFT))
 				accel -= walkAccel;
 			if (inputs.contains(Input.RIGHT))
 				accel += walkAccel;
 		}
-		return xAccel + accel;
+		return super.getXAccel() + accel;
 	}
 	
 	@Override
@@ -56,14 +56,14 @@ public class HumanPlayer extends Human implements PlayerEntity, FlyingEntity {
 		double accel = 0;
 		if (flying) {
 			if (inputs.contains(Input.UP))
-				accel += getBoundedAccel(Math.max(0, yVel));
+				accel += getBoundedAccel(Math.max(0, getYVel()));
 			if (inputs.contains(Input.DOWN))
-				accel -= getBoundedAccel(Math.max(0, -yVel));
+				accel -= getBoundedAccel(Math.max(0, -getYVel()));
 		} else {
-			if (inputs.contains(Input.JUMP) && (onGround || (System.nanoTime() - lastGroundTime) < 120000000))
+			if (inputs.contains(Input.JUMP) && (isOnGround() || (System.nanoTime() - getLastGroundTime()) < 120000000))
 				accel += jumpAccel;
 		}
-		return yAccel + accel;
+		return super.getYAccel() + accel;
 	}
 	
 	protected double getBoundedAccel(double vel) {
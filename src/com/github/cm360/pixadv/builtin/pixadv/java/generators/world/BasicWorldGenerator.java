@@ -1,162 +1,143 @@
 package com.github.cm360.pixadv.builtin.pixadv.java.generators.world;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
 
-import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.luna.Luminite;
-import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Dirt;
-import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.CaveStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.OreStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.SurfaceStage;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages.TerrainStage;
+import com.github.cm360.pixadv.world.storage.Chunk;
 import com.github.cm360.pixadv.world.storage.world.LocalWorld;
 import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.generators.GenerationPipeline;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
 import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
-import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 import de.articdive.jnoise.JNoise;
 
 public class BasicWorldGenerator implements WorldGenerator {
 
+	/** Indices of the noise offsets drawn from the seed, see {@link #getNoiseOffset(long, int)}. */
+	public static final int HEIGHT_NOISE = 0, CHEESE_CAVE_NOISE = 1, NETWORK_CAVE_NOISE = 2;
+	
 	protected long seed;
 	protected Random random;
-	protected JNoise noiseGen;
 	
 	protected String name;
 	protected int width;
 	protected int height;
 	protected int chunkSize;
-	protected int seaLevel;
-	protected int maxMountainHeight;
-	protected int maxOceanDepth;
 	
 	protected World world;
 	protected Phase generationPhase = Phase.Waiting;
 	
-	private int[] heightmap;
+	private int parallelism;
+	private int noiseStep;
+	private Map<String, GenerationStage> stages;
+	private volatile GenerationPipeline pipeline;
 	
 	public BasicWorldGenerator(long seed) {
 		// Pseudo-random generators
 		this.seed = seed;
 		random = new Random(seed);
-		noiseGen = JNoise.newBuilder().fastSimplex().setSeed(seed).build();
 		// World properties
 		name = "New World";
 		width = 100;
 		height = 20;
 		chunkSize = 20;
-		seaLevel = (height * chunkSize) / 2;
-		maxMountainHeight = chunkSize;
-		maxOceanDepth = chunkSize;
+		parallelism = Runtime.getRuntime().availableProcessors();
+		noiseStep = 4;
+		stages = getBuiltinStages();
+	}
+	
+	/**
+	 * Creates the noise generator shared by the built-in generation stages.
+	 *
+	 * @param seed The world seed.
+	 * @return The noise generator.
+	 */
+	public static JNoise createNoise(long seed) {
+		return JNoise.newBuilder().fastSimplex().setSeed(seed).build();
+	}
+	
+	/**
+	 * Gets one of the offsets which give each built-in stage its own slice of
+	 * the noise. Offsets are drawn from the seed in a fixed order, so every
+	 * stage gets the same values however many times it is created.
+	 *
+	 * @param seed  The world seed.
+	 * @param index The offset's index, such as {@link #HEIGHT_NOISE}.
+	 * @return The offset.
+	 */
+	public static int getNoiseOffset(long seed, int index) {
+		Random offsets = new Random(seed);
+		int offset = 0;
+		for (int i = 0; i <= index; i++)
+			offset = offsets.nextInt();
+		return offset;
+	}
+	
+	/**
+	 * Creates the stages of the built-in module, for generating without a
+	 * registry.
+	 *
+	 * @return The new stages, keyed by their identifiers.
+	 */
+	public static Map<String, GenerationStage> getBuiltinStages() {
+		Map<String, GenerationStage> stages = new LinkedHashMap<String, GenerationStage>();
+		stages.put("pixadv:terrain", new TerrainStage());
+		stages.put("pixadv:surface", new SurfaceStage());
+		stages.put("pixadv:caves", new CaveStage());
+		stages.put("pixadv:ores", new OreStage());
+		return stages;
 	}
 	
 	@Override
 	public World generate() {
-		// Create world object and populate with empty chunks
+		// Create world object
 		generationPhase = Phase.Init;
-		Map<String, String> worldInfo = new HashMap<String, String>();
-		worldInfo.put("name", name);
-		world = new LocalWorld(width, height, chunkSize, worldInfo, null);
-		for (int cx = 0; cx < width; cx++)
-			for (int cy = 0; cy < height; cy++)
-				world.createChunk(cx, cy);
-		// Generate terrain
-		generationPhase = Phase.Heightmap;
-		int[] heightmap = generateHeightmap(0.2);
-		generationPhase = Phase.Surface;
-		for (int x = 0; x < heightmap.length; x++) {
-			for (int y = 0; y <= heightmap[x]; y++) {
-				Dirt grass = new Dirt();
-				grass.grass = true;
-				Dirt grass2 = new Dirt();
-				grass2.grass = true;
-				world.setTile((heightmap[x] - y) < 15 ? new Dirt() : new Stone(), x, y, 0);
-				Tile otherTile = new Stone();
-				if (random.nextInt(50) == 6)
-					otherTile = new Luminite();
-				world.setTile(heightmap[x] == y ? grass2 : ((heightmap[x] - y) < 15 ? new Dirt() : otherTile), x, y, 2);
-			}
-		}
-		// Carve caves into terrain
-		generationPhase = Phase.Caves;
-		generateCaves();
-		// Decorate surface
-		generationPhase = Phase.Decorate;
+		createWorld();
+		// Run every stage on every chunk, then place the finished chunks
+		getPipeline().generateAll(parallelism, world::setChunk);
 		// Return completed world
 		generationPhase = Phase.Complete;
 		return world;
 	}
 	
-	protected int[] generateHeightmap(double scale) {
-		// Pseudo-random number generator
-		int noiseZ = random.nextInt();
-		// 
-		heightmap = new int[width * chunkSize];
-		for (int x = 0; x < heightmap.length; x++) {
-			heightmap[x] = seaLevel + (int) Math.round(
-					(chunkSize) * noiseGen.getNoise(
-							Math.cos(((double) x / heightmap.length) * (2 * Math.PI))
-									* (heightmap.length * (scale / 100.0)),
-							Math.sin(((double) x / heightmap.length) * (2 * Math.PI))
-									* (heightmap.length * (scale / 100.0)),
-							noiseZ));
-//			heightmap[i] = 1;
-		}
-		return heightmap;
-	}
-	
-	protected void generateCaves() {
-		generateCheeseCaves(0.2, 0.4, 0.5);
-		generateNetworkCaves(0.06, 0.4, 0.5);
-//		generateWormCaves(2, 0.1);
+	@Override
+	public World createWorld() {
+		Map<String, String> worldInfo = new HashMap<String, String>();
+		worldInfo.put("name", name);
+		LocalWorld localWorld = new LocalWorld(width, height, chunkSize, worldInfo, null);
+		localWorld.setGenerator(this);
+		world = localWorld;
+		return world;
 	}
 	
-	/**
-	 * Generate cheese caves in this world.
-	 *
-	 * @param density The approximate percent of this world that should be cheese caves.
-	 * @param scale   How much to scale the noise map used to generate caves.
-	 * @param falloff How quickly the cave density decreases near the surface and world edges.
-	 */
-	protected void generateCheeseCaves(double density, double scale, double falloff) {
-		int noiseZ = random.nextInt();
-		for (int x = 0; x < width * chunkSize; x++) {
-			for (int y = 0; y < height * chunkSize; y++) {
-				double noise = noiseGen.getNoise(
-						Math.cos(((double) x / heightmap.length) * (2 * Math.PI))
-								* (heightmap.length * (scale / 100.0)),
-						Math.sin(((double) x / heightmap.length) * (2 * Math.PI))
-								* (heightmap.length * (scale / 100.0)),
-						y / ((4 * Math.PI) / scale),
-						noiseZ);
-				if (((noise + 1) / 2) > (1 - density)) {
-					world.setTile(null, x, y, 2);
-				}
-			}
-		}
+	@Override
+	public Chunk generateChunk(int cx, int cy) {
+		return getPipeline().generateChunk(cx, cy);
 	}
 	
 	/**
-	 * Generate cheese caves in this world.
+	 * Gets the pipeline running this generator's stages, creating it if the
+	 * stages or world settings changed.
 	 *
-	 * @param density The approximate percent of this world that should be cheese caves.
-	 * @param scale   How much to scale the noise map used to generate caves.
-	 * @param falloff How quickly the cave density decreases near the surface and world edges.
+	 * @return The pipeline.
 	 */
-	protected void generateNetworkCaves(double density, double scale, double falloff) {
-		int noiseZ = random.nextInt();
-		for (int x = 0; x < width * chunkSize; x++) {
-			for (int y = 0; y < height * chunkSize; y++) {
-				double noise = noiseGen.getNoise(
-						Math.cos(((double) x / heightmap.length) * (2 * Math.PI))
-								* (heightmap.length * (scale / 100.0)),
-						Math.sin(((double) x / heightmap.length) * (2 * Math.PI))
-								* (heightmap.length * (scale / 100.0)),
-						y / ((4 * Math.PI) / scale),
-						noiseZ);
-				if (Math.abs(noise) < density) {
-					world.setTile(null, x, y, 2);
-				}
+	public GenerationPipeline getPipeline() {
+		GenerationPipeline current = pipeline;
+		if (current == null) {
+			synchronized (this) {
+				if (pipeline == null)
+					pipeline = new GenerationPipeline(this, stages);
+				current = pipeline;
 			}
 		}
+		return current;
 	}
 	
 	/**
@@ -187,9 +168,44 @@ public class BasicWorldGenerator implements WorldGenerator {
 	
 	@Override
 	public Phase getGenerationPhase() {
+		// Report the running stage's phase while generating a whole world
+		if (generationPhase == Phase.Init && pipeline != null && pipeline.getPhase() != Phase.Complete)
+			return pipeline.getPhase();
 		return generationPhase;
 	}
 	
+	@Override
+	public double getProgress() {
+		if (generationPhase == Phase.Complete)
+			return 1;
+		return (pipeline == null) ? 0 : pipeline.getProgress();
+	}
+	
+	@Override
+	public long getSeed() {
+		return seed;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
 	@Override
 	public BasicWorldGenerator setName(String name) {
 		this.name = name;
@@ -199,18 +215,62 @@ public class BasicWorldGenerator implements WorldGenerator {
 	@Override
 	public BasicWorldGenerator setWidth(int width) {
 		this.width = width;
+		pipeline = null;
 		return this;
 	}
 	
 	@Override
 	public BasicWorldGenerator setHeight(int height) {
 		this.height = height;
+		pipeline = null;
 		return this;
 	}
 	
 	@Override
 	public BasicWorldGenerator setChunkSize(int chunkSize) {
 		this.chunkSize = chunkSize;
+		pipeline = null;
+		return this;
+	}
+	
+	/**
+	 * Sets the stages this generator runs, such as those created by
+	 * {@link com.github.cm360.pixadv.registry.Registry#createGenerationStages()}.
+	 *
+	 * @param stages The stages, keyed by their identifiers.
+	 * @return This generator.
+	 */
+	public BasicWorldGenerator setStages(Map<String, GenerationStage> stages) {
+		this.stages = stages;
+		pipeline = null;
+		return this;
+	}
+	
+	/**
+	 * Sets how many threads generate chunks. The generated world is the same for
+	 * any value.
+	 *
+	 * @param parallelism The number of threads, or 1 to generate on the calling thread.
+	 * @return This generator.
+	 */
+	public BasicWorldGenerator setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	public int getNoiseStep() {
+		return noiseStep;
+	}
+	
+	/**
+	 * Sets the lattice spacing cave noise is sampled at, see {@link NoiseField}.
+	 *
+	 * @param noiseStep The spacing in tiles, or 1 to sample every tile exactly.
+	 * @return This generator.
+	 */
+	public BasicWorldGenerator setNoiseStep(int noiseStep) {
+		this.noiseStep = noiseStep;
+		pipeline = null;
 		return this;
 	}
 
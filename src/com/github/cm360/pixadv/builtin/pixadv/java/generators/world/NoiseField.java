@@ -0,0 +1,156 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.generators.world;
+
+import de.articdive.jnoise.JNoise;
+
+/**
+ * A noise field covering a world which wraps horizontally. The world's X axis
+ * is mapped onto a circle in noise space, so the field has no seam where the
+ * world wraps around.
+ * <p>
+ * The circle's coordinates only depend on X, so they are computed once per
+ * world column. Areas are filled by sampling the noise on a coarse lattice and
+ * interpolating between lattice points, which trades a small, smooth error for
+ * evaluating the noise far less often. The lattice is aligned to world
+ * coordinates, so areas filled separately agree where they meet. Its columns
+ * are spaced evenly around the world, at most the step apart, so the last
+ * column interpolates towards the first and the lattice has no seam either.
+ * <p>
+ * The noise is stretched by the same amount per tile whatever the world's
+ * size, so the interpolation error only depends on the step, and a fixed step
+ * keeps it within the same bound in every world.
+ */
+public class NoiseField {
+	
+	private final JNoise noise;
+	private final int worldWidth;
+	private final double yDivisor;
+	private final double slice;
+	private final int step;
+	private final int latticeColumns;
+	private final double[] circleX;
+	private final double[] circleY;
+	private final double[] latticeCircleX;
+	private final double[] latticeCircleY;
+	private final ThreadLocal<double[]> lattice;
+	
+	/**
+	 * Creates a noise field.
+	 *
+	 * @param noise      The noise generator to sample. It is shared by every
+	 *                   thread filling this field, and must be safe to do so.
+	 * @param worldWidth The width of the world, in tiles.
+	 * @param scale      How much to scale the noise.
+	 * @param slice      The fourth noise coordinate, which selects an
+	 *                   independent slice of the noise.
+	 * @param step       The largest lattice spacing in tiles, or 1 to evaluate
+	 *                   the noise at every tile. Larger steps are faster but
+	 *                   less exact. Columns are spaced slightly closer if the
+	 *                   step does not divide the world's width.
+	 */
+	public NoiseField(JNoise noise, int worldWidth, double scale, double slice, int step) {
+		if (step < 1)
+			throw new IllegalArgumentException("The lattice step must be at least 1!");
+		this.noise = noise;
+		this.worldWidth = worldWidth;
+		this.yDivisor = (4 * Math.PI) / scale;
+		this.slice = slice;
+		this.step = step;
+		this.latticeColumns = Math.max(1, (worldWidth + step - 1) / step);
+		this.circleX = new double[worldWidth];
+		this.circleY = new double[worldWidth];
+		this.latticeCircleX = new double[latticeColumns];
+		this.latticeCircleY = new double[latticeColumns];
+		double radius = worldWidth * (scale / 100.0);
+		for (int x = 0; x < worldWidth; x++) {
+			double angle = ((double) x / worldWidth) * (2 * Math.PI);
+			circleX[x] = Math.cos(angle) * radius;
+			circleY[x] = Math.sin(angle) * radius;
+		}
+		for (int i = 0; i < latticeColumns; i++) {
+			double angle = ((double) i / latticeColumns) * (2 * Math.PI);
+			latticeCircleX[i] = Math.cos(angle) * radius;
+			latticeCircleY[i] = Math.sin(angle) * radius;
+		}
+		this.lattice = ThreadLocal.withInitial(() -> new double[0]);
+	}
+	
+	/**
+	 * Evaluates the noise at a single tile, without interpolation.
+	 *
+	 * @param x The tile X coordinate, wrapped to the world's width.
+	 * @param y The tile Y coordinate.
+	 * @return The noise value, between -1 and 1.
+	 */
+	public double getExact(int x, int y) {
+		int wx = Math.floorMod(x, worldWidth);
+		return noise.getNoise(circleX[wx], circleY[wx], y / yDivisor, slice);
+	}
+	
+	/**
+	 * Fills an array with the noise values of a rectangle of tiles.
+	 *
+	 * @param x   The X coordinate of the rectangle's bottom left tile.
+	 * @param y   The Y coordinate of the rectangle's bottom left tile.
+	 * @param w   The rectangle's width.
+	 * @param h   The rectangle's height.
+	 * @param out The array to fill, indexed by row * w + column.
+	 */
+	public void fill(int x, int y, int w, int h, double[] out) {
+		if (step == 1) {
+			for (int row = 0; row < h; row++)
+				for (int column = 0; column < w; column++)
+					out[row * w + column] = getExact(x + column, y + row);
+			return;
+		}
+		// Evaluate the lattice points around the rectangle
+		int latticeX = latticeColumnOf(x);
+		int latticeY = Math.floorDiv(y, step);
+		int latticeWidth = latticeColumnOf(x + w - 1) - latticeX + 2;
+		int latticeHeight = Math.floorDiv(y + h - 1, step) - latticeY + 2;
+		double[] points = lattice.get();
+		if (points.length < latticeWidth * latticeHeight) {
+			points = new double[latticeWidth * latticeHeight];
+			lattice.set(points);
+		}
+		for (int j = 0; j < latticeHeight; j++) {
+			for (int i = 0; i < latticeWidth; i++) {
+				int column = Math.floorMod(latticeX + i, latticeColumns);
+				points[j * latticeWidth + i] = noise.getNoise(latticeCircleX[column], latticeCircleY[column],
+						((latticeY + j) * step) / yDivisor, slice);
+			}
+		}
+		// Bilinear interpolation between the surrounding lattice points
+		for (int row = 0; row < h; row++) {
+			int ty = y + row;
+			int j = Math.floorDiv(ty, step) - latticeY;
+			double fy = (double) Math.floorMod(ty, step) / step;
+			for (int column = 0; column < w; column++) {
+				int tx = x + column;
+				int i = latticeColumnOf(tx) - latticeX;
+				double fx = (double) ((long) Math.floorMod(tx, worldWidth) * latticeColumns % worldWidth) / worldWidth;
+				int corner = j * latticeWidth + i;
+				double bottom = points[corner] + (points[corner + 1] - points[corner]) * fx;
+				double top = points[corner + latticeWidth] + (points[corner + latticeWidth + 1] - points[corner + latticeWidth]) * fx;
+				out[row * w + column] = bottom + (top - bottom) * fy;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the lattice column at or before a tile, counting on across each lap
+	 * of the world so columns stay in order past its seam.
+	 */
+	private int latticeColumnOf(int x) {
+		int wx = Math.floorMod(x, worldWidth);
+		return Math.floorDiv(x, worldWidth) * latticeColumns + (int) ((long) wx * latticeColumns / worldWidth);
+	}
+	
+	public int getWorldWidth() {
+		return worldWidth;
+	}
+	
+	public int getStep() {
+		return step;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages;
+
+import java.util.Set;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.BasicWorldGenerator;
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.NoiseField;
+import com.github.cm360.pixadv.world.types.generators.GenerationContext;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+import de.articdive.jnoise.JNoise;
+
+/**
+ * Carves cheese caves, large open areas, and network caves, long winding
+ * tunnels, out of the foreground.
+ */
+public class CaveStage implements GenerationStage {
+
+	protected NoiseField cheeseNoise;
+	protected NoiseField networkNoise;
+	protected double cheeseDensity = 0.2;
+	protected double networkDensity = 0.06;
+	protected double scale = 0.4;
+	
+	private final ThreadLocal<double[][]> noiseBuffers = ThreadLocal.withInitial(() -> new double[][] { new double[0], new double[0] });
+	
+	@Override
+	public Phase getPhase() {
+		return Phase.Caves;
+	}
+	
+	@Override
+	public Set<String> getDependencies() {
+		return Set.of("pixadv:surface");
+	}
+	
+	@Override
+	public void initialize(WorldGenerator generator) {
+		JNoise noise = BasicWorldGenerator.createNoise(generator.getSeed());
+		int worldWidth = generator.getWidth() * generator.getChunkSize();
+		int step = (generator instanceof BasicWorldGenerator) ? ((BasicWorldGenerator) generator).getNoiseStep() : 4;
+		cheeseNoise = new NoiseField(noise, worldWidth, scale,
+				BasicWorldGenerator.getNoiseOffset(generator.getSeed(), BasicWorldGenerator.CHEESE_CAVE_NOISE), step);
+		networkNoise = new NoiseField(noise, worldWidth, scale,
+				BasicWorldGenerator.getNoiseOffset(generator.getSeed(), BasicWorldGenerator.NETWORK_CAVE_NOISE), step);
+	}
+	
+	@Override
+	public void generate(GenerationContext context) {
+		int chunkSize = context.getChunkSize();
+		int cells = chunkSize * chunkSize;
+		// Sample cave noise for the whole chunk at once
+		double[][] noise = noiseBuffers.get();
+		if (noise[0].length != cells)
+			noiseBuffers.set(noise = new double[][] { new double[cells], new double[cells] });
+		int x = context.getChunkX() * chunkSize;
+		int y = context.getChunkY() * chunkSize;
+		cheeseNoise.fill(x, y, chunkSize, chunkSize, noise[0]);
+		networkNoise.fill(x, y, chunkSize, chunkSize, noise[1]);
+		Tile[] foreground = context.getBuilder().getLayer(2);
+		for (int i = 0; i < cells; i++)
+			if (foreground[i] != null && (isCheeseCave(noise[0][i]) || isNetworkCave(noise[1][i])))
+				foreground[i] = null;
+	}
+	
+	/**
+	 * Checks if a tile is inside a cheese cave.
+	 *
+	 * @param noise The cheese cave noise at the tile.
+	 * @return true, if the tile should be carved out.
+	 */
+	protected boolean isCheeseCave(double noise) {
+		return ((noise + 1) / 2) > (1 - cheeseDensity);
+	}
+	
+	/**
+	 * Checks if a tile is inside a network cave.
+	 *
+	 * @param noise The network cave noise at the tile.
+	 * @return true, if the tile should be carved out.
+	 */
+	protected boolean isNetworkCave(double noise) {
+		return Math.abs(noise) < networkDensity;
+	}
+
+}
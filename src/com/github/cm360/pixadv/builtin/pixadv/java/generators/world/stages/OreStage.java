@@ -0,0 +1,67 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages;
+
+import java.util.Set;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.luna.Luminite;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.world.types.generators.GenerationContext;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * Scatters luminite through the stone left after caves are carved.
+ */
+public class OreStage implements GenerationStage {
+
+	protected long seed;
+	protected int rarity = 50;
+	
+	@Override
+	public Phase getPhase() {
+		return Phase.Decorate;
+	}
+	
+	@Override
+	public Set<String> getDependencies() {
+		return Set.of("pixadv:caves");
+	}
+	
+	@Override
+	public void initialize(WorldGenerator generator) {
+		seed = generator.getSeed();
+	}
+	
+	@Override
+	public void generate(GenerationContext context) {
+		int chunkSize = context.getChunkSize();
+		Tile[] foreground = context.getBuilder().getLayer(2);
+		for (int ly = 0; ly < chunkSize; ly++) {
+			int y = context.getChunkY() * chunkSize + ly;
+			for (int lx = 0; lx < chunkSize; lx++) {
+				int i = ly * chunkSize + lx;
+				int x = context.getChunkX() * chunkSize + lx;
+				if (foreground[i] == Stone.INSTANCE && Math.floorMod(hash(seed, x, y), rarity) == 6)
+					foreground[i] = Luminite.INSTANCE;
+			}
+		}
+	}
+	
+	/**
+	 * Hashes a seed and tile position into a pseudo-random value, so per-tile
+	 * choices do not depend on the order tiles are generated in.
+	 *
+	 * @param seed The world seed.
+	 * @param x    The tile X coordinate.
+	 * @param y    The tile Y coordinate.
+	 * @return A well mixed pseudo-random value.
+	 */
+	protected static long hash(long seed, int x, int y) {
+		long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+}
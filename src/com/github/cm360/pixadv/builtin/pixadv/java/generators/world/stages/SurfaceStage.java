@@ -0,0 +1,50 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages;
+
+import java.util.Set;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Dirt;
+import com.github.cm360.pixadv.builtin.pixadv.java.tiles.types.terra.Stone;
+import com.github.cm360.pixadv.world.types.generators.GenerationContext;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * Fills the ground below the surface with grass, a layer of dirt and then
+ * stone, in both the background and foreground.
+ */
+public class SurfaceStage implements GenerationStage {
+
+	protected int dirtDepth = 15;
+	
+	@Override
+	public Phase getPhase() {
+		return Phase.Surface;
+	}
+	
+	@Override
+	public Set<String> getDependencies() {
+		return Set.of("pixadv:terrain");
+	}
+	
+	@Override
+	public void generate(GenerationContext context) {
+		int chunkSize = context.getChunkSize();
+		int[] heights = context.get(TerrainStage.HEIGHTS);
+		Tile[] background = context.getBuilder().getLayer(0);
+		Tile[] foreground = context.getBuilder().getLayer(2);
+		Dirt dirt = Dirt.of(false, false, false);
+		Dirt grass = dirt.withGrass(true);
+		for (int lx = 0; lx < chunkSize; lx++) {
+			for (int ly = 0; ly < chunkSize; ly++) {
+				int depth = heights[lx] - (context.getChunkY() * chunkSize + ly);
+				if (depth >= 0) {
+					int i = ly * chunkSize + lx;
+					background[i] = depth < dirtDepth ? dirt : Stone.INSTANCE;
+					foreground[i] = depth == 0 ? grass : (depth < dirtDepth ? dirt : Stone.INSTANCE);
+				}
+			}
+		}
+	}
+
+}
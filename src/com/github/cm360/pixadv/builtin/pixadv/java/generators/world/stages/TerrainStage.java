@@ -0,0 +1,65 @@
+package com.github.cm360.pixadv.builtin.pixadv.java.generators.world.stages;
+
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.BasicWorldGenerator;
+import com.github.cm360.pixadv.world.types.generators.GenerationContext;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+
+import de.articdive.jnoise.JNoise;
+
+/**
+ * Finds the height of the surface in each column of a chunk. The heights are
+ * left under "pixadv:heights" as the surface's Y coordinate for each local X.
+ */
+public class TerrainStage implements GenerationStage {
+
+	public static final String HEIGHTS = "pixadv:heights";
+	
+	protected JNoise noise;
+	protected double noiseZ;
+	protected int worldWidth;
+	protected int chunkSize;
+	protected int seaLevel;
+	protected double scale = 0.2;
+	
+	@Override
+	public Phase getPhase() {
+		return Phase.Heightmap;
+	}
+	
+	@Override
+	public void initialize(WorldGenerator generator) {
+		noise = BasicWorldGenerator.createNoise(generator.getSeed());
+		noiseZ = BasicWorldGenerator.getNoiseOffset(generator.getSeed(), BasicWorldGenerator.HEIGHT_NOISE);
+		worldWidth = generator.getWidth() * generator.getChunkSize();
+		chunkSize = generator.getChunkSize();
+		seaLevel = (generator.getHeight() * chunkSize) / 2;
+	}
+	
+	@Override
+	public void generate(GenerationContext context) {
+		int[] heights = new int[chunkSize];
+		for (int lx = 0; lx < chunkSize; lx++)
+			heights[lx] = getHeight(context.getChunkX() * chunkSize + lx);
+		context.put(HEIGHTS, heights);
+	}
+	
+	/**
+	 * Gets the height of the surface in a column of tiles. Noise is sampled
+	 * around a circle so the heights wrap seamlessly with the world.
+	 *
+	 * @param x The tile X coordinate.
+	 * @return The Y coordinate of the surface tile.
+	 */
+	protected int getHeight(int x) {
+		return seaLevel + (int) Math.round(
+				(chunkSize) * noise.getNoise(
+						Math.cos(((double) x / worldWidth) * (2 * Math.PI))
+								* (worldWidth * (scale / 100.0)),
+						Math.sin(((double) x / worldWidth) * (2 * Math.PI))
+								* (worldWidth * (scale / 100.0)),
+						noiseZ));
+	}
+
+}
@@ -9,11 +9,9 @@ import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public class Luminite implements Tile, LightEmitter {
 
-	protected Identifier textureId;
+	public static final Luminite INSTANCE = new Luminite();
 	
-	public Luminite() {
-		textureId = Identifier.parse("pixadv:textures/tiles/luna/luminite");
-	}
+	private static final List<Identifier> TEXTURES = List.of(Identifier.parse("pixadv:textures/tiles/luna/luminite"));
 	
 	@Override
 	public String getID() {
@@ -21,20 +19,18 @@ public class Luminite implements Tile, LightEmitter {
 	}
 
 	@Override
-	public void setData(String data) {
-		// TODO Auto-generated method stub
-		
+	public Luminite withData(String data) {
+		return INSTANCE;
 	}
 
 	@Override
 	public String getData() {
-		// TODO Auto-generated method stub
 		return null;
 	}
 
 	@Override
 	public List<Identifier> getTextures() {
-		return List.of(textureId);
+		return TEXTURES;
 	}
 
 	@Override
@@ -11,7 +11,68 @@ import com.google.gson.reflect.TypeToken;
 
 public class Dirt implements Tile {
 
-	public boolean mud, grass, snow;
+	private static final Dirt[] STATES = new Dirt[8];
+	
+	static {
+		for (int i = 0; i < STATES.length; i++)
+			STATES[i] = new Dirt((i & 1) != 0, (i & 2) != 0, (i & 4) != 0);
+	}
+	
+	public final boolean mud, grass, snow;
+	private final String data;
+	private final List<Identifier> textures;
+	
+	/**
+	 * Creates the prototype used by the registry. Use {@link #of} to get a shared
+	 * state instead.
+	 */
+	public Dirt() {
+		this(false, false, false);
+	}
+	
+	private Dirt(boolean mud, boolean grass, boolean snow) {
+		this.mud = mud;
+		this.grass = grass;
+		this.snow = snow;
+		// Serialize data
+		HashMap<String, String> dataMap = new HashMap<String, String>();
+		dataMap.put("mud", Boolean.toString(mud));
+		dataMap.put("grass", Boolean.toString(grass));
+		dataMap.put("snow", Boolean.toString(snow));
+		data = new Gson().toJson(dataMap);
+		// Build texture list
+		List<Identifier> textures = new ArrayList<Identifier>();
+		textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/basic"));
+		if (grass)
+			textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/grass"));
+		if (snow)
+			textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/snow"));
+		this.textures = List.copyOf(textures);
+	}
+	
+	/**
+	 * Gets the shared dirt state with the given properties.
+	 *
+	 * @param mud   Whether the dirt is mud.
+	 * @param grass Whether the dirt is covered in grass.
+	 * @param snow  Whether the dirt is covered in snow.
+	 * @return The matching dirt state.
+	 */
+	public static Dirt of(boolean mud, boolean grass, boolean snow) {
+		return STATES[(mud ? 1 : 0) | (grass ? 2 : 0) | (snow ? 4 : 0)];
+	}
+	
+	public Dirt withMud(boolean mud) {
+		return of(mud, grass, snow);
+	}
+	
+	public Dirt withGrass(boolean grass) {
+		return of(mud, grass, snow);
+	}
+	
+	public Dirt withSnow(boolean snow) {
+		return of(mud, grass, snow);
+	}
 	
 	@Override
 	public String getID() {
@@ -19,34 +80,25 @@ public class Dirt implements Tile {
 	}
 	
 	@Override
-	public void setData(String data) {
+	public Dirt withData(String data) {
 		try {
 			HashMap<String, String> dataMap = new Gson().fromJson(data, TypeToken.getParameterized(HashMap.class, String.class, String.class).getType());
-			mud = Boolean.parseBoolean(dataMap.getOrDefault("mud", "false"));
-			grass = Boolean.parseBoolean(dataMap.getOrDefault("grass", "false"));
-			snow = Boolean.parseBoolean(dataMap.getOrDefault("snow", "false"));
+			return of(
+					Boolean.parseBoolean(dataMap.getOrDefault("mud", "false")),
+					Boolean.parseBoolean(dataMap.getOrDefault("grass", "false")),
+					Boolean.parseBoolean(dataMap.getOrDefault("snow", "false")));
 		} catch (Exception e) {
-			// Do nothing
+			return of(false, false, false);
 		}
 	}
 	
 	@Override
 	public String getData() {
-		HashMap<String, String> dataMap = new HashMap<String, String>();
-		dataMap.put("mud", Boolean.toString(mud));
-		dataMap.put("grass", Boolean.toString(grass));
-		dataMap.put("snow", Boolean.toString(snow));
-		return new Gson().toJson(dataMap);
+		return data;
 	}
 	
 	@Override
 	public List<Identifier> getTextures() {
-		List<Identifier> textures = new ArrayList<Identifier>();
-		textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/basic"));
-		if (grass)
-			textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/grass"));
-		if (snow)
-			textures.add(Identifier.parse("pixadv:textures/tiles/terra/dirt/" + (mud ? "mud" : "dirt") + "/snow"));
 		return textures;
 	}
 	
@@ -7,26 +7,28 @@ import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public class Stone implements Tile {
 
+	public static final Stone INSTANCE = new Stone();
+	
+	private static final List<Identifier> TEXTURES = List.of(Identifier.parse("pixadv:textures/tiles/terra/stone/basic"));
+	
 	@Override
 	public String getID() {
 		return "terra/stone";
 	}
 
 	@Override
-	public void setData(String data) {
-		// TODO Auto-generated method stub
-
+	public Stone withData(String data) {
+		return INSTANCE;
 	}
 
 	@Override
 	public String getData() {
-		// TODO Auto-generated method stub
 		return null;
 	}
 
 	@Override
 	public List<Identifier> getTextures() {
-		return List.of(Identifier.parse("pixadv:textures/tiles/terra/stone/basic"));
+		return TEXTURES;
 	}
 	
 	@Override
@@ -8,6 +8,7 @@ import java.util.Scanner;
 import java.util.regex.Pattern;
 
 import com.github.cm360.pixadv.builtin.pixadv.java.commands.NoClipCommand;
+import com.github.cm360.pixadv.builtin.pixadv.java.commands.PregenCommand;
 import com.github.cm360.pixadv.builtin.pixadv.java.commands.TeleportCommand;
 import com.github.cm360.pixadv.util.Logger;
 import com.github.cm360.pixadv.world.storage.universe.Universe;
@@ -22,6 +23,7 @@ public class CommandProcessor {
 		this.commands = new HashMap<String, Command>();
 		this.registerCommand("tp", new TeleportCommand(universe));
 		this.registerCommand("noclip", new NoClipCommand(universe));
+		this.registerCommand("pregen", new PregenCommand(universe));
 	}
 	
 	public String processCommand(String commandString) {
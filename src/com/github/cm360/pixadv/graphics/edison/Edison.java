@@ -1,28 +1,37 @@
 package com.github.cm360.pixadv.graphics.edison;
 
 import java.awt.Color;
-import java.util.HashMap;
-import java.util.Map;
 
 import com.github.cm360.pixadv.builtin.pixadv.java.tiles.capabilities.LightEmitter;
-import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
+import com.github.cm360.pixadv.util.LongObjectMap;
 import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.ChunkKey;
 import com.github.cm360.pixadv.world.storage.world.World;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public class Edison {
 
 	protected World world;
-	protected Map<HashablePoint, Lightmap> lightmaps;
+	protected LongObjectMap<Lightmap> lightmaps;
 	
 	public Edison(World world) {
 		this.world = world;
-		lightmaps = new HashMap<HashablePoint, Lightmap>();
+		lightmaps = new LongObjectMap<Lightmap>();
 	}
 	
-	public void relight(HashablePoint chunkPos) {
+	/**
+	 * Builds a new lightmap for a chunk. This reads every tile of the chunk, so
+	 * it is queued as a task rather than run while rendering.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 */
+	public void relight(int cx, int cy) {
 		int chunkSize = world.getChunkSize();
-		Chunk chunk = world.getChunk(chunkPos.x, chunkPos.y);
+		long chunkVersion = world.getChunkVersion(cx, cy);
+		Chunk chunk = world.getChunk(cx, cy);
+		if (chunk == null)
+			return;
 		double[][] intensities = new double[chunkSize][chunkSize];
 		Color[][] colors = new Color[chunkSize][chunkSize];
 		for (int x = 0; x < chunkSize; x++) {
@@ -45,17 +54,30 @@ public class Edison {
 				colors[x][y] = Color.WHITE;
 			}
 		}
-		lightmaps.put(chunkPos, new Lightmap(chunkSize, 16, intensities, colors));
+		Lightmap lightmap = new Lightmap(chunkSize, 16, intensities, colors, chunkVersion);
+		synchronized (lightmaps) {
+			lightmaps.put(ChunkKey.of(cx, cy), lightmap);
+		}
 	}
 	
 	
 	
-	public boolean isLit(HashablePoint chunkPos) {
-		return lightmaps.containsKey(chunkPos);
+	/**
+	 * Checks if a chunk has a lightmap which is up to date with its tiles.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return true, if the chunk does not need to be relit.
+	 */
+	public boolean isLit(int cx, int cy) {
+		Lightmap lightmap = getLightmap(cx, cy);
+		return lightmap != null && lightmap.getChunkVersion() == world.getChunkVersion(cx, cy);
 	}
 	
-	public Lightmap getLightmap(HashablePoint chunkPos) {
-		return lightmaps.get(chunkPos);
+	public Lightmap getLightmap(int cx, int cy) {
+		synchronized (lightmaps) {
+			return lightmaps.get(ChunkKey.of(cx, cy));
+		}
 	}
 	
 // transmittance, how much light a block can pass
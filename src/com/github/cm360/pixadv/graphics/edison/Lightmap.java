@@ -12,8 +12,10 @@ public class Lightmap {
 
 	protected BufferedImage rawMap;
 	protected BufferedImage scaledMap;
+	protected long chunkVersion;
 	
-	protected Lightmap(int size, int scale, double[][] intensities, Color[][] colors) {
+	protected Lightmap(int size, int scale, double[][] intensities, Color[][] colors, long chunkVersion) {
+		this.chunkVersion = chunkVersion;
 		// Create raw map
 		rawMap = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
 		WritableRaster raster = rawMap.getRaster();
@@ -57,5 +59,9 @@ public class Lightmap {
 	public BufferedImage getScaledMap() {
 		return scaledMap;
 	}
+	
+	public long getChunkVersion() {
+		return chunkVersion;
+	}
 
 }
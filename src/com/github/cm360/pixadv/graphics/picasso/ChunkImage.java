@@ -6,14 +6,17 @@ public class ChunkImage {
 
 	private Image image;
 	private long creationTime;
+	private long chunkVersion;
 	
 	/**
 	 * @param image
 	 * @param creationTime
+	 * @param chunkVersion The version of the chunk the image was drawn from.
 	 */
-	public ChunkImage(Image image, long creationTime) {
+	public ChunkImage(Image image, long creationTime, long chunkVersion) {
 		this.image = image;
 		this.creationTime = creationTime;
+		this.chunkVersion = chunkVersion;
 	}
 
 	public Image getImage() {
@@ -23,5 +26,9 @@ public class ChunkImage {
 	public long getCreationTime() {
 		return creationTime;
 	}
+	
+	public long getChunkVersion() {
+		return chunkVersion;
+	}
 
 }
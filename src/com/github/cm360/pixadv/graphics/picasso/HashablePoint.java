@@ -16,7 +16,7 @@ public class HashablePoint extends Point {
 	
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return 31 * x + y;
 	}
 
 }
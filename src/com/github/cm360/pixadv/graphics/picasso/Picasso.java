@@ -8,18 +8,21 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.github.cm360.pixadv.graphics.edison.Edison;
+import com.github.cm360.pixadv.graphics.edison.Lightmap;
 import com.github.cm360.pixadv.network.endpoints.Client;
 import com.github.cm360.pixadv.registry.Identifier;
 import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.util.LongObjectMap;
 import com.github.cm360.pixadv.util.Stopwatch;
+import com.github.cm360.pixadv.world.storage.ChunkKey;
 import com.github.cm360.pixadv.world.storage.world.World;
 import com.github.cm360.pixadv.world.types.entities.Entity;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
@@ -33,13 +36,13 @@ public class Picasso {
 	
 	private int chunkCacheTarget = 200;
 	private int chunkCacheMax = 300;
-	private Map<HashablePoint, ChunkImage> chunkCache;
+	private LongObjectMap<ChunkImage> chunkCache;
 	
 	
 	// Constructor
 	public Picasso(Client client) {
 		this.client = client;
-		chunkCache = new HashMap<HashablePoint, ChunkImage>();
+		chunkCache = new LongObjectMap<ChunkImage>(chunkCacheMax);
 	}
 	
 	// Main method
@@ -58,14 +61,8 @@ public class Picasso {
 			renderTimes.mark("ui-loading");
 		} else {
 			precomp.update(world, this);
-			// Save entity coordinates before rendering
-			Map<UUID, Point2D.Double> entityPositions = world.getEntities().entrySet().stream()
-					.collect(Collectors.toMap(entry -> {
-						return entry.getKey();
-					}, entry -> {
-						Entity entity = entry.getValue();
-						return new Point2D.Double(entity.getX(), entity.getY());
-					}));
+			// Save entity coordinates before rendering, between the last two physics ticks
+			Map<UUID, Point2D.Double> entityPositions = world.getInterpolatedEntityPositions();
 			//
 			Point2D.Double cameraFollowedEntityPos = entityPositions.get(client.getCameraFollowedId());
 			if (cameraFollowedEntityPos != null) {
@@ -142,11 +139,12 @@ public class Picasso {
 			for (int cy = (int) Math.round((precomp.getMinY() + 0.5) / world.getChunkSize() - 0.5); cy <= (int) Math.round((precomp.getMaxY() - 0.5) / world.getChunkSize() - 0.5); cy++) {
 				if (cy >= 0 && cy < world.getHeight()) {
 					// Get actual chunk coordinates
-					HashablePoint correctedChunk = new HashablePoint(world.correctChunkCoord(cx, cy));
-					if (world.isChunkLoaded(correctedChunk.x, correctedChunk.y)) {
-						ChunkImage chunkImage = chunkCache.get(correctedChunk);
-						if (chunkImage == null || world.getChunkUpdates().contains(correctedChunk)) {
-							client.getTaskQueueManager().repaintChunk(client, world, correctedChunk.x, correctedChunk.y);
+					int chunkX = world.wrapChunkX(cx);
+					if (world.isChunkLoaded(chunkX, cy)) {
+						world.getChunkResidency().touch(chunkX, cy);
+						ChunkImage chunkImage = getCachedChunkImage(chunkX, cy);
+						if (chunkImage == null || chunkImage.getChunkVersion() != world.getChunkVersion(chunkX, cy)) {
+							client.getTaskQueueManager().repaintChunk(client, world, chunkX, cy);
 						}
 						if (chunkImage != null) {
 							// Draw entire chunk
@@ -160,7 +158,7 @@ public class Picasso {
 						}
 					} else {
 						// Request that this chunk be loaded
-						client.getTaskQueueManager().requestChunk(client.getRegistry(), world, correctedChunk.x, correctedChunk.y);
+						client.getTaskQueueManager().requestChunk(client.getRegistry(), world, chunkX, cy);
 					}
 					// Draw chunk-specific debug info
 					if (client.getGamePanel().showUI && client.getGamePanel().showDebugMenu) {
@@ -171,7 +169,7 @@ public class Picasso {
 								precomp.getCenterY() - (int) Math.round(precomp.getScaledTileTextureSize() * ((cy + 1) * world.getChunkSize() - world.getCameraY() - 1)),
 								(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()),
 								(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()));
-						g.drawString(String.format("%d,%d (%d,%d)", correctedChunk.x, correctedChunk.y, cx, cy),
+						g.drawString(String.format("%d,%d (%d,%d)", chunkX, cy, cx, cy),
 								precomp.getCenterX() + (int) Math.round(precomp.getScaledTileTextureSize() * (cx * world.getChunkSize() - world.getCameraX())) + 5,
 								precomp.getCenterY() - (int) Math.round(precomp.getScaledTileTextureSize() * ((cy + 1) * world.getChunkSize() - world.getCameraY() - 1)) + 15);
 					}
@@ -187,10 +185,14 @@ public class Picasso {
 			for (int cy = (int) Math.round((precomp.getMinY() + 0.5) / world.getChunkSize() - 0.5); cy <= (int) Math.round((precomp.getMaxY() - 0.5) / world.getChunkSize() - 0.5); cy++) {
 				if (cy >= 0 && cy < world.getHeight()) {
 					// Get actual chunk coordinates
-					HashablePoint correctedChunk = new HashablePoint(world.correctChunkCoord(cx, cy));
-					if (world.isChunkLoaded(correctedChunk.x, correctedChunk.y)) {
-						if (edison.isLit(correctedChunk)) {
-							BufferedImage lightmap = edison.getLightmap(correctedChunk).getScaledMap();
+					int chunkX = world.wrapChunkX(cx);
+					if (world.isChunkLoaded(chunkX, cy)) {
+						// Relight off the render thread, drawing the old lightmap until then
+						if (!edison.isLit(chunkX, cy))
+							client.getTaskQueueManager().relightChunk(world, chunkX, cy);
+						Lightmap chunkLightmap = edison.getLightmap(chunkX, cy);
+						if (chunkLightmap != null) {
+							BufferedImage lightmap = chunkLightmap.getScaledMap();
 							// Draw entire chunk
 							g.drawImage(lightmap,
 									precomp.getCenterX() + (int) Math.round(precomp.getScaledTileTextureSize()
@@ -199,8 +201,6 @@ public class Picasso {
 											* ((cy + 1) * world.getChunkSize() - world.getCameraY() - 1)),
 									(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()),
 									(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()), null);
-						} else {
-							edison.relight(correctedChunk);
 						}
 					}
 					// Draw chunk-specific debug info
@@ -212,7 +212,7 @@ public class Picasso {
 								precomp.getCenterY() - (int) Math.round(precomp.getScaledTileTextureSize() * ((cy + 1) * world.getChunkSize() - world.getCameraY() - 1)),
 								(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()),
 								(int) (precomp.getScaledTileTextureSize() * world.getChunkSize()));
-						g.drawString(String.format("%d,%d (%d,%d)", correctedChunk.x, correctedChunk.y, cx, cy),
+						g.drawString(String.format("%d,%d (%d,%d)", chunkX, cy, cx, cy),
 								precomp.getCenterX() + (int) Math.round(precomp.getScaledTileTextureSize() * (cx * world.getChunkSize() - world.getCameraX())) + 5,
 								precomp.getCenterY() - (int) Math.round(precomp.getScaledTileTextureSize() * ((cy + 1) * world.getChunkSize() - world.getCameraY() - 1)) + 15);
 					}
@@ -238,10 +238,9 @@ public class Picasso {
 				g.setColor(Color.BLACK);
 				g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
 				g.drawString(String.format("(x%d,y%d)", mouseTile.x, mouseTile.y), mouseLocation.x + 3, mouseLocation.y - 20);
-				Point correctedTileCoords = world.correctCoord(mouseTile.x, mouseTile.y);
-				Tile tile0 = world.getTile(correctedTileCoords.x, correctedTileCoords.y, 0);
-				Tile tile1 = world.getTile(correctedTileCoords.x, correctedTileCoords.y, 1);
-				Tile tile2 = world.getTile(correctedTileCoords.x, correctedTileCoords.y, 2);
+				Tile tile0 = world.getTile(mouseTile.x, mouseTile.y, 0);
+				Tile tile1 = world.getTile(mouseTile.x, mouseTile.y, 1);
+				Tile tile2 = world.getTile(mouseTile.x, mouseTile.y, 2);
 				g.drawString(String.format("%s, %s, %s",
 						((tile0 == null) ? "air" : tile0.getID()),
 						((tile1 == null) ? "air" : tile1.getID()),
@@ -255,9 +254,16 @@ public class Picasso {
 		int renderCount = 0;
 		Map<UUID, Entity> entities = world.getEntities();
 		stats.setTotalEntities(entities.size());
+		// Find entities near the view, with a margin for movement since the last physics tick
+		List<UUID> nearby = new ArrayList<UUID>();
+		world.getPhysicsEngine().getEntityGrid().forEachInBox(
+				precomp.getMinX() - 2, precomp.getMinY() - 2, precomp.getMaxX() + 2, precomp.getMaxY() + 2,
+				(uuid, entity) -> nearby.add(uuid));
 		// Draw entities
-		for (UUID uuid : entities.keySet()) {
+		for (UUID uuid : nearby) {
 			Entity entity = entities.get(uuid);
+			if (entity == null)
+				continue;
 			try {
 //				HashMap<String, String> data = new Gson().fromJson(entity.getData(), TypeToken.getParameterized(HashMap.class, String.class, String.class).getType());
 				// Grab entity location info
@@ -268,6 +274,9 @@ public class Picasso {
 					x = entityPos.x;
 					y = entityPos.y;
 				}
+				// Draw the entity on the side of the world's seam nearest the camera
+				double worldWidth = world.getWidth() * world.getChunkSize();
+				x += worldWidth * Math.rint((world.getCameraX() - x) / worldWidth);
 				
 				int pixelsWidth = (int) Math.round(precomp.getScaledTileTextureSize() * entity.getWidth());
 				int pixelsHeight = (int) Math.round(precomp.getScaledTileTextureSize() * entity.getHeight());
@@ -342,22 +351,50 @@ public class Picasso {
 		return new Point(mouseTileX, mouseTileY);
 	}
 	
-	public void cacheChunkImage(Point location, ChunkImage chunkImage) {
-		chunkCache.put(new HashablePoint(location), chunkImage);
+	public ChunkImage getCachedChunkImage(int cx, int cy) {
+		synchronized (chunkCache) {
+			return chunkCache.get(ChunkKey.of(cx, cy));
+		}
+	}
+	
+	public void cacheChunkImage(int cx, int cy, ChunkImage chunkImage) {
+		synchronized (chunkCache) {
+			chunkCache.put(ChunkKey.of(cx, cy), chunkImage);
+		}
 	}
 
 	public int getCacheSize() {
-		return chunkCache.size();
+		synchronized (chunkCache) {
+			return chunkCache.size();
+		}
 	}
 	
 	public void trimCache(Point centerChunk) {
-		chunkCache.keySet().retainAll(chunkCache.keySet().stream().sorted((point1, point2) -> {
-			return (int) Math.round(point1.distance(centerChunk) - point2.distance(centerChunk));
-		}).limit(chunkCacheTarget).toList());
+		synchronized (chunkCache) {
+			// Keep the cached images closest to the center
+			long[] keys = chunkCache.keys();
+			if (keys.length <= chunkCacheTarget)
+				return;
+			double[] distances = new double[keys.length];
+			for (int i = 0; i < keys.length; i++)
+				distances[i] = centerChunk.distance(ChunkKey.getX(keys[i]), ChunkKey.getY(keys[i]));
+			double[] sorted = distances.clone();
+			Arrays.sort(sorted);
+			double cutoff = sorted[chunkCacheTarget - 1];
+			int kept = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (distances[i] <= cutoff && kept < chunkCacheTarget)
+					kept++;
+				else
+					chunkCache.remove(keys[i]);
+			}
+		}
 	}
 	
 	public void clearCache() {
-		chunkCache.clear();
+		synchronized (chunkCache) {
+			chunkCache.clear();
+		}
 	}
 	
 	// Info methods
@@ -54,7 +54,11 @@ import com.github.cm360.pixadv.registry.Identifier;
 import com.github.cm360.pixadv.registry.Registry;
 import com.github.cm360.pixadv.util.Logger;
 import com.github.cm360.pixadv.util.Stopwatch;
+import com.github.cm360.pixadv.world.io.ChunkIOService;
+import com.github.cm360.pixadv.world.newton.Newton;
+import com.github.cm360.pixadv.world.storage.Chunk;
 import com.github.cm360.pixadv.world.storage.universe.Universe;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
 import com.github.cm360.pixadv.world.storage.world.World;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
@@ -341,7 +345,7 @@ public class GameCanvas extends JComponent {
 			if (new Rectangle(world.getWidth() * world.getChunkSize(), world.getHeight() * world.getChunkSize()).contains(correctedPoint)) {
 				Tile tile = world.getTile(correctedPoint.x, correctedPoint.y, 2);
 				if (tile == null)
-					world.setTile(new Dirt(), correctedPoint.x, correctedPoint.y, 2);
+					world.setTile(Dirt.of(false, false, false), correctedPoint.x, correctedPoint.y, 2);
 				else
 					world.setTile(null, correctedPoint.x, correctedPoint.y, 2);
 			}
@@ -470,6 +474,12 @@ public class GameCanvas extends JComponent {
 				leftLines.add("Entities: %d/%d".formatted(
 						stats.getUniqueEntities(),
 						stats.getTotalEntities()));
+				Newton newton = world.getPhysicsEngine();
+				leftLines.add("Sleeping: %d/%d (%d slept, %d woken)".formatted(
+						newton.getSleepingCount(),
+						world.getEntityStore().size(),
+						newton.getSleepCount(),
+						newton.getWakeCount()));
 			}
 		}
 		// Right anchored text lines
@@ -478,6 +488,26 @@ public class GameCanvas extends JComponent {
 				Runtime.getRuntime().totalMemory() / 1048576,
 				Runtime.getRuntime().maxMemory() / 1048576));
 		rightLines.add("Chunk Cache: " + client.getRenderingEngine().getCacheSize());
+		if (universe != null && universe.getCurrentWorld() != null) {
+			World world = universe.getCurrentWorld();
+			int loadedChunks = world.getLoadedChunkCount();
+			rightLines.add("Chunk Memory: %dKB/%dKB (%d loaded)".formatted(
+					world.getChunkMemoryUsage() / 1024,
+					loadedChunks * Chunk.getLegacyMemoryUsage(world.getChunkSize()) / 1024,
+					loadedChunks));
+			if (world instanceof LocalWorld) {
+				ChunkIOService chunkIO = ((LocalWorld) world).getChunkIO();
+				rightLines.add("Chunk I/O: %d queued, %d active, %d rejected".formatted(
+						chunkIO.getQueueDepth(),
+						chunkIO.getInFlight(),
+						chunkIO.getRejections()));
+				rightLines.add("Chunk Loads/Saves: %.1f/%.1fms, %.1f/%.1fms".formatted(
+						chunkIO.getAverageLoadNanos() / 1000000.0,
+						chunkIO.getMaxLoadNanos() / 1000000.0,
+						chunkIO.getAverageSaveNanos() / 1000000.0,
+						chunkIO.getMaxSaveNanos() / 1000000.0));
+			}
+		}
 		rightLines.add("Modules: %d".formatted(client.getRegistry().getModulesList().size()));
 		// Debug info bar
 		g.setFont(client.getGamePanel().getDefaultFont().deriveFont(16f));
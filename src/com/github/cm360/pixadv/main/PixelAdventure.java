@@ -2,10 +2,13 @@ package com.github.cm360.pixadv.main;
 
 import java.io.File;
 
+import com.github.cm360.pixadv.builtin.pixadv.java.generators.world.BasicWorldGenerator;
 import com.github.cm360.pixadv.network.endpoints.Client;
 import com.github.cm360.pixadv.network.endpoints.Server;
 import com.github.cm360.pixadv.registry.Registry;
 import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.io.ChunkConverter;
+import com.github.cm360.pixadv.world.io.WorldPregenerator;
 
 public class PixelAdventure {
 
@@ -16,7 +19,24 @@ public class PixelAdventure {
 			// Create registry
 			Registry registry = new Registry();
 			// Start game
-			if (args.length > 0 && args[0].equals("server")) {
+			if (args.length > 1 && args[0].equals("convert")) {
+				// Upgrade a save's chunk files without starting the game
+				registry.initialize(workingDirectory);
+				ChunkConverter converter = new ChunkConverter(registry);
+				converter.setDeleteLegacy(args.length > 2 && args[2].equals("--delete-legacy"));
+				converter.convertSave(new File(args[1]));
+				return;
+			} else if (args.length > 2 && args[0].equals("pregen")) {
+				// Generate a world straight to disk without starting the game
+				registry.initialize(workingDirectory);
+				File worldDirectory = new File(args[1]);
+				BasicWorldGenerator generator = new BasicWorldGenerator(Long.parseLong(args[2]));
+				generator.setName(worldDirectory.getName()).setStages(registry.createGenerationStages());
+				if (args.length > 4)
+					generator.setWidth(Integer.parseInt(args[3])).setHeight(Integer.parseInt(args[4]));
+				new WorldPregenerator(registry).pregenerate(generator, worldDirectory);
+				return;
+			} else if (args.length > 0 && args[0].equals("server")) {
 				new Server(registry, new File(workingDirectory, "saves/Universe Zero"), "", 43234);
 			} else {
 				new Client(registry);
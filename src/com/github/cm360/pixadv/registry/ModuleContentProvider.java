@@ -3,6 +3,7 @@ package com.github.cm360.pixadv.registry;
 import java.util.Map;
 
 import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public interface ModuleContentProvider {
@@ -11,4 +12,8 @@ public interface ModuleContentProvider {
 
 	public Map<String, Class<? extends Entity>> getEntities();
 
+	public default Map<String, Class<? extends GenerationStage>> getGenerationStages() {
+		return null;
+	}
+
 }
@@ -16,8 +16,10 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -27,7 +29,9 @@ import javax.swing.ImageIcon;
 import com.github.cm360.pixadv.registry.Asset.AssetType;
 import com.github.cm360.pixadv.util.FileUtil;
 import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.types.entities.AbstractEntity;
 import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.generators.GenerationStage;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -44,7 +48,11 @@ public class Registry {
 	private Map<Identifier, Font> fonts;
 	
 	private Map<Identifier, Class<? extends Tile>> tiles;
+	private Map<Identifier, Map<String, Tile>> tileStates;
+	private Map<Class<? extends Tile>, Identifier> tileIds;
 	private Map<Identifier, Class<? extends Entity>> entities;
+	private Map<Class<? extends Entity>, Identifier> entityIds;
+	private Map<Identifier, Class<? extends GenerationStage>> generationStages;
 	
 	
 	public Registry() {
@@ -64,7 +72,11 @@ public class Registry {
 			sounds = new HashMap<Identifier, ByteBuffer>();
 			fonts = new HashMap<Identifier, Font>();
 			tiles = new HashMap<Identifier, Class<? extends Tile>>();
+			tileStates = new HashMap<Identifier, Map<String, Tile>>();
+			tileIds = new HashMap<Class<? extends Tile>, Identifier>();
 			entities = new HashMap<Identifier, Class<? extends Entity>>();
+			entityIds = new HashMap<Class<? extends Entity>, Identifier>();
+			generationStages = new LinkedHashMap<Identifier, Class<? extends GenerationStage>>();
 			// Load builtin module first
 			try {
 				Map<String, Object> builtinModuleInfo = new Gson().fromJson(
@@ -140,8 +152,12 @@ public class Registry {
 						loadAsset(module, asset);
 					// Load tiles
 					importNamespaced(moduleId, provider.getTiles(), tiles);
+					importTileStates(moduleId, provider.getTiles());
 					// Load entities
 					importNamespaced(moduleId, provider.getEntities(), entities);
+					importEntityIds(moduleId, provider.getEntities());
+					// Load world generation stages
+					importNamespaced(moduleId, provider.getGenerationStages(), generationStages);
 				} else {
 					
 				}
@@ -164,6 +180,32 @@ public class Registry {
 		}
 	}
 	
+	private void importTileStates(String namespace, Map<String, Class<? extends Tile>> rawMap) throws Exception {
+		if (rawMap != null) {
+			for (String key : rawMap.keySet()) {
+				// Resolve the default state from a prototype instance
+				Tile prototype = rawMap.get(key).getDeclaredConstructor().newInstance();
+				Map<String, Tile> states = new ConcurrentHashMap<String, Tile>();
+				states.put("", prototype.withData(null));
+				Identifier namespacedId = new Identifier(namespace, key);
+				tileStates.put(namespacedId, states);
+				tileIds.put(rawMap.get(key), namespacedId);
+			}
+		}
+	}
+	
+	private void importEntityIds(String namespace, Map<String, Class<? extends Entity>> rawMap) {
+		if (rawMap != null) {
+			rawMap.forEach((key, entityClass) -> {
+				// Worlds can only store entities built on AbstractEntity
+				if (AbstractEntity.class.isAssignableFrom(entityClass))
+					entityIds.put(entityClass, new Identifier(namespace, key));
+				else
+					Logger.logMessage(Logger.ERROR, "Entity '%s:%s' does not extend AbstractEntity and cannot be placed in worlds!", namespace, key);
+			});
+		}
+	}
+	
 	private List<Asset> discoverAssets(Module module, ModuleContentProvider provider, ClassLoader loader) throws Exception {
 		List<Asset> assets = new ArrayList<Asset>();
 		// Check if module is being loaded from a jar or directory
@@ -221,9 +263,13 @@ public class Registry {
 				case TEXTURE:
 					// Texture
 					ImageIcon iconImage = new ImageIcon(assetBytes);
-					BufferedImage bufferedImage = GraphicsEnvironment.getLocalGraphicsEnvironment()
-							.getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(
-									iconImage.getIconWidth(), iconImage.getIconHeight(), Transparency.TRANSLUCENT);
+					BufferedImage bufferedImage;
+					if (GraphicsEnvironment.isHeadless())
+						bufferedImage = new BufferedImage(iconImage.getIconWidth(), iconImage.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+					else
+						bufferedImage = GraphicsEnvironment.getLocalGraphicsEnvironment()
+								.getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(
+										iconImage.getIconWidth(), iconImage.getIconHeight(), Transparency.TRANSLUCENT);
 					Graphics bufferedImageGraphics = bufferedImage.getGraphics();
 					bufferedImageGraphics.drawImage(iconImage.getImage(), 0, 0, null);
 					bufferedImageGraphics.dispose();
@@ -273,13 +319,48 @@ public class Registry {
 		return fonts.get(id);
 	}
 	
+	/**
+	 * Gets the default state of a tile.
+	 *
+	 * @param id The tile's identifier.
+	 * @return The shared default state, or null if the tile is not registered.
+	 */
 	public Tile getTile(Identifier id) {
-		try {
-			return tiles.get(id).getDeclaredConstructor().newInstance();
-		} catch (Exception e) {
-			Logger.logException("Failed to create tile %s!", e, id);
+		return getTile(id, null);
+	}
+	
+	/**
+	 * Gets the state of a tile matching some serialized data. Each distinct data
+	 * string is only parsed once, and equal states are returned as the same
+	 * instance.
+	 *
+	 * @param id   The tile's identifier.
+	 * @param data The serialized tile data, or null for the default state.
+	 * @return The shared tile state, or null if the tile is not registered.
+	 */
+	public Tile getTile(Identifier id, String data) {
+		Map<String, Tile> states = tileStates.get(id);
+		if (states == null) {
+			Logger.logMessage(Logger.ERROR, "Unknown tile %s!", id);
+			return null;
 		}
-		return null;
+		String key = (data == null) ? "" : data;
+		Tile state = states.get(key);
+		if (state == null) {
+			state = states.get("").withData(data);
+			states.putIfAbsent(key, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Gets the identifier a tile was registered under.
+	 *
+	 * @param tile The tile state.
+	 * @return The tile's identifier, or null if its type is not registered.
+	 */
+	public Identifier getTileId(Tile tile) {
+		return tileIds.get(tile.getClass());
 	}
 
 	public Entity getEntity(Identifier id) {
@@ -291,6 +372,34 @@ public class Registry {
 		return null;
 	}
 	
+	/**
+	 * Gets the identifier an entity was registered under.
+	 *
+	 * @param entity The entity.
+	 * @return The entity's identifier, or null if its type is not registered.
+	 */
+	public Identifier getEntityId(Entity entity) {
+		return entityIds.get(entity.getClass());
+	}
+	
+	/**
+	 * Creates an instance of every registered world generation stage, in the
+	 * order their modules were loaded.
+	 *
+	 * @return The new stages, keyed by their identifiers.
+	 */
+	public Map<String, GenerationStage> createGenerationStages() {
+		Map<String, GenerationStage> stages = new LinkedHashMap<String, GenerationStage>();
+		generationStages.forEach((id, stageClass) -> {
+			try {
+				stages.put(id.toString(), stageClass.getDeclaredConstructor().newInstance());
+			} catch (Exception e) {
+				Logger.logException("Failed to create generation stage %s!", e, id);
+			}
+		});
+		return stages;
+	}
+	
 	public Map<String, Module> getModulesList() {
 		return loadedModules;
 	}
@@ -6,6 +6,7 @@ import java.util.Map;
 import com.github.cm360.pixadv.network.endpoints.Client;
 import com.github.cm360.pixadv.registry.Registry;
 import com.github.cm360.pixadv.tasks.types.ChunkLoadRequest;
+import com.github.cm360.pixadv.tasks.types.ChunkRelightTask;
 import com.github.cm360.pixadv.tasks.types.ChunkRepaintTask;
 import com.github.cm360.pixadv.tasks.types.Task;
 import com.github.cm360.pixadv.util.Logger;
@@ -34,6 +35,13 @@ public class TaskQueue {
 			requests.put(requestId, new ChunkRepaintTask(client, world, cx, cy));
 	}
 	
+	public synchronized void relightChunk(World world, int cx, int cy) {
+		String requestId = String.format("relightChunk_%s_%s-%s", world, cx, cy);
+		Logger.logMessage(Logger.DEBUG, requestId);
+		if (!requests.containsKey(requestId))
+			requests.put(requestId, new ChunkRelightTask(world, cx, cy));
+	}
+	
 	public synchronized void requestChunk(Registry registry, World world, int cx, int cy) {
 		String requestId = String.format("requestChunk_%d_%s-%s", world.hashCode(), cx, cy);
 		Logger.logMessage(Logger.DEBUG, requestId);
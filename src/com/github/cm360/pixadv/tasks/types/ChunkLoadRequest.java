@@ -21,7 +21,8 @@ public class ChunkLoadRequest implements Task {
 	@Override
 	public void process() {
 		if (world instanceof LocalWorld) {
-			((LocalWorld) world).loadChunk(registry, cx, cy);
+			// Rejected when the I/O queue is full, and requested again the next time the chunk is drawn
+			((LocalWorld) world).requestChunk(registry, cx, cy);
 		} else if (world instanceof RemoteWorld) {
 			// Send chunk request packet
 		} else {
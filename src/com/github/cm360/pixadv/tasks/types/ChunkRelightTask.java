@@ -0,0 +1,23 @@
+package com.github.cm360.pixadv.tasks.types;
+
+import com.github.cm360.pixadv.world.storage.world.World;
+
+public class ChunkRelightTask implements Task {
+
+	private World world;
+	private int cx, cy;
+	
+	public ChunkRelightTask(World world, int cx, int cy) {
+		this.world = world;
+		this.cx = cx;
+		this.cy = cy;
+	}
+	
+	@Override
+	public void process() {
+		// Skip chunks relit since this was queued
+		if (!world.getLightingEngine().isLit(cx, cy))
+			world.getLightingEngine().relight(cx, cy);
+	}
+
+}
@@ -12,6 +12,7 @@ import com.github.cm360.pixadv.network.endpoints.Client;
 import com.github.cm360.pixadv.registry.Identifier;
 import com.github.cm360.pixadv.util.ImageUtil;
 import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.world.TileRegion;
 import com.github.cm360.pixadv.world.storage.world.World;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
@@ -33,6 +34,8 @@ public class ChunkRepaintTask implements Task {
 		Picasso picasso = client.getRenderingEngine();
 		Point chunkPos = new Point(cx, cy);
 		String chunkName = chunkPos.toString();
+		// Read the version first, so changes made while drawing trigger another repaint
+		long chunkVersion = world.getChunkVersion(cx, cy);
 		// Create a new image for the chunk cache
 		BufferedImage chunkImage = GraphicsEnvironment.getLocalGraphicsEnvironment()
 				.getDefaultScreenDevice()
@@ -41,16 +44,17 @@ public class ChunkRepaintTask implements Task {
 						picasso.getTileTextureSize() * world.getChunkSize(),
 						picasso.getTileTextureSize() * world.getChunkSize(),
 						Transparency.TRANSLUCENT);
+		// Copy the chunk's tiles in one pass
+		TileRegion tiles = new TileRegion(world.getChunkSize(), world.getChunkSize());
+		tiles.read(world, cx * world.getChunkSize(), cy * world.getChunkSize());
 		// Draw tiles to chunk image
 		Graphics2D cg = chunkImage.createGraphics();
 		for (int xc = 0; xc < world.getChunkSize(); xc++)
 			for (int yc = 0; yc < world.getChunkSize(); yc++) {
 				try {
-					int x = cx * world.getChunkSize() + xc;
-					int y = cy * world.getChunkSize() + yc;
 					// Draw tile layers
 					for (int l = 0; l < 3; l++) {
-						Tile tile = world.getTile(x, y, l);
+						Tile tile = tiles.get(xc, yc, l);
 						if (tile != null) {
 							for (Identifier textureId : tile.getTextures()) {
 								BufferedImage texture = client.getRegistry().getTexture(textureId);
@@ -78,8 +82,7 @@ public class ChunkRepaintTask implements Task {
 			}
 		// Finalization
 		cg.dispose();
-		picasso.cacheChunkImage(chunkPos, new ChunkImage(chunkImage, System.nanoTime()));
-		world.getChunkUpdates().remove(chunkPos);
+		picasso.cacheChunkImage(cx, cy, new ChunkImage(chunkImage, System.nanoTime(), chunkVersion));
 	}
 
 }
@@ -0,0 +1,201 @@
+package com.github.cm360.pixadv.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to objects, using open addressing with
+ * linear probing. Lookups never box keys or allocate. Null values are not
+ * allowed, since a null value marks an empty slot. Not thread-safe.
+ *
+ * @param <V> The type of values.
+ */
+public class LongObjectMap<V> {
+
+	/**
+	 * Receives each entry of a map.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<V> {
+		public void accept(long key, V value);
+	}
+	
+	/**
+	 * Tests each entry of a map.
+	 */
+	@FunctionalInterface
+	public interface EntryPredicate<V> {
+		public boolean test(long key, V value);
+	}
+	
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	private int resizeAt;
+	
+	public LongObjectMap() {
+		this(16);
+	}
+	
+	public LongObjectMap(int expectedSize) {
+		allocate(Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1));
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = find(key);
+		return (slot < 0) ? null : (V) values[slot];
+	}
+	
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+	
+	/**
+	 * Associates a value with a key.
+	 *
+	 * @param key   The key.
+	 * @param value The value, which must not be null.
+	 * @return The previous value for the key, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new NullPointerException("LongObjectMap does not allow null values!");
+		int slot = hash(key) & mask;
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > resizeAt)
+			allocate(values.length * 2);
+		return null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = find(key);
+		if (slot < 0)
+			return null;
+		V previous = (V) values[slot];
+		removeSlot(slot);
+		return previous;
+	}
+	
+	/**
+	 * Removes every entry matching a predicate.
+	 *
+	 * @param filter Returns true for entries to remove.
+	 * @return The number of entries removed.
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeIf(EntryPredicate<? super V> filter) {
+		int removed = 0;
+		for (int slot = 0; slot < values.length; slot++) {
+			// Removing shifts later entries back, so recheck the same slot
+			while (values[slot] != null && filter.test(keys[slot], (V) values[slot])) {
+				removeSlot(slot);
+				removed++;
+			}
+		}
+		return removed;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> action) {
+		for (int slot = 0; slot < values.length; slot++)
+			if (values[slot] != null)
+				action.accept(keys[slot], (V) values[slot]);
+	}
+	
+	/**
+	 * Gets a copy of every key in this map, in no particular order.
+	 *
+	 * @return The keys.
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int i = 0;
+		for (int slot = 0; slot < values.length; slot++)
+			if (values[slot] != null)
+				result[i++] = keys[slot];
+		return result;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	private int find(long key) {
+		int slot = hash(key) & mask;
+		while (values[slot] != null) {
+			if (keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private void removeSlot(int slot) {
+		// Shift later entries of the probe sequence back into the gap
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (values[next] != null) {
+			int home = hash(keys[next]) & mask;
+			// Move the entry if the gap lies between its home slot and where it is now
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[gap] = null;
+		size--;
+	}
+	
+	private void allocate(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+		if (oldValues != null) {
+			// Reinsert existing entries
+			for (int slot = 0; slot < oldValues.length; slot++) {
+				if (oldValues[slot] != null) {
+					int newSlot = hash(oldKeys[slot]) & mask;
+					while (values[newSlot] != null)
+						newSlot = (newSlot + 1) & mask;
+					keys[newSlot] = oldKeys[slot];
+					values[newSlot] = oldValues[slot];
+				}
+			}
+		}
+	}
+	
+	private static int hash(long key) {
+		// Fibonacci hashing spreads neighbouring chunk coordinates apart
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,193 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.github.cm360.pixadv.registry.Identifier;
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.ChunkLayer;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+public class BinaryChunkReader {
+
+	private Registry registry;
+	private int chunkSize;
+	
+	public BinaryChunkReader(Registry registry, int chunkSize) {
+		this.registry = registry;
+		this.chunkSize = chunkSize;
+	}
+	
+	public Chunk read(File chunkFile) throws IOException {
+		Logger.logMessage(Logger.DEBUG, "Loading chunk from '%s'", chunkFile);
+		return read(ByteBuffer.wrap(Files.readAllBytes(chunkFile.toPath())));
+	}
+	
+	/**
+	 * Reads a chunk from a buffer, starting at its current position.
+	 *
+	 * @param buffer The buffer holding the chunk's header and payload.
+	 * @return The decoded chunk.
+	 * @throws IOException If the data is not a valid chunk of this reader's size,
+	 *                     or is truncated or corrupt.
+	 */
+	public Chunk read(ByteBuffer buffer) throws IOException {
+		// Header
+		if (buffer.remaining() < ChunkFormat.HEADER_LENGTH || buffer.getInt() != ChunkFormat.MAGIC)
+			throw new IOException("Not a chunk file!");
+		short version = buffer.getShort();
+		if (version > ChunkFormat.VERSION)
+			throw new IOException("Unsupported chunk format version %d!".formatted(version));
+		byte flags = buffer.get();
+		int size = buffer.getInt();
+		if (size != chunkSize)
+			throw new IOException("Chunk size %d does not match world chunk size %d!".formatted(size, chunkSize));
+		int payloadLength = buffer.getInt();
+		if (payloadLength < 0)
+			throw new IOException("Corrupt chunk header!");
+		// Payload
+		ByteBuffer payload;
+		if ((flags & ChunkFormat.FLAG_DEFLATE) != 0) {
+			payload = ByteBuffer.allocate(payloadLength);
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(buffer);
+				// Inflate to the end of the stream so a missing checksum or extra data is caught
+				ByteBuffer overflow = ByteBuffer.allocate(1);
+				while (!inflater.finished()) {
+					ByteBuffer target = payload.hasRemaining() ? payload : overflow;
+					if (inflater.inflate(target) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						throw new IOException("Truncated chunk payload!");
+					if (overflow.position() > 0)
+						throw new IOException("Chunk payload is longer than its header declares!");
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt chunk payload!", e);
+			} finally {
+				inflater.end();
+			}
+			if (payload.hasRemaining())
+				throw new IOException("Truncated chunk payload!");
+			payload.flip();
+		} else {
+			if (buffer.remaining() < payloadLength)
+				throw new IOException("Truncated chunk payload!");
+			payload = buffer.slice(buffer.position(), payloadLength);
+		}
+		try {
+			return readPayload(payload, version);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated chunk payload!", e);
+		}
+	}
+	
+	private Chunk readPayload(ByteBuffer payload, short version) throws IOException {
+		// Chunk palette
+		Tile[] palette = new Tile[payload.getShort() & 0xFFFF];
+		for (int p = 0; p < palette.length; p++) {
+			if (payload.get() != 0) {
+				Identifier tileId = readIdentifier(payload);
+				String data = (payload.get() != 0) ? readString(payload) : null;
+				palette[p] = registry.getTile(tileId, data);
+				if (palette[p] == null)
+					Logger.logMessage(Logger.WARNING, "Unknown tile %s in chunk, its cells will be loaded as air", tileId);
+			}
+		}
+		// Layers
+		int cells = chunkSize * chunkSize;
+		ChunkLayer[] layers = new ChunkLayer[Chunk.LAYERS];
+		for (int l = 0; l < Chunk.LAYERS; l++) {
+			int bits = payload.get();
+			if (bits == 0) {
+				layers[l] = new ChunkLayer(cells, palette[readPaletteIndex(payload, palette.length, l)]);
+			} else {
+				Tile[] layerPalette = new Tile[payload.getShort() & 0xFFFF];
+				if (bits < 0 || bits > 16 || layerPalette.length == 0 || layerPalette.length > (1 << bits))
+					throw new IOException("Corrupt layer %d!".formatted(l));
+				for (int p = 0; p < layerPalette.length; p++)
+					layerPalette[p] = palette[readPaletteIndex(payload, palette.length, l)];
+				long[] data = new long[ChunkLayer.wordCount(cells, bits)];
+				payload.asLongBuffer().get(data);
+				payload.position(payload.position() + data.length * Long.BYTES);
+				checkPackedIndices(data, cells, bits, layerPalette.length, l);
+				layers[l] = new ChunkLayer(cells, layerPalette, bits, data);
+			}
+		}
+		Chunk chunk = new Chunk(chunkSize, layers);
+		// Entities
+		if (version >= ChunkFormat.ENTITIES_VERSION) {
+			int entityCount = payload.getInt();
+			for (int e = 0; e < entityCount; e++) {
+				Identifier entityId = readIdentifier(payload);
+				UUID uuid = new UUID(payload.getLong(), payload.getLong());
+				double x = payload.getDouble();
+				double y = payload.getDouble();
+				double xVel = payload.getDouble();
+				double yVel = payload.getDouble();
+				byte entityFlags = payload.get();
+				Entity entity = registry.getEntity(entityId);
+				if (entity == null) {
+					Logger.logMessage(Logger.WARNING, "Unknown entity %s (%s) in chunk, it will not be loaded", entityId, uuid);
+					continue;
+				}
+				entity.setX(x);
+				entity.setY(y);
+				entity.setXVel(xVel);
+				entity.setYVel(yVel);
+				entity.setNoClip((entityFlags & ChunkFormat.ENTITY_NO_CLIP) != 0);
+				entity.setOnGround((entityFlags & ChunkFormat.ENTITY_ON_GROUND) != 0);
+				chunk.addEntity(uuid, entity);
+			}
+		}
+		return chunk;
+	}
+	
+	private static int readPaletteIndex(ByteBuffer payload, int paletteSize, int layer) throws IOException {
+		int index = payload.getShort() & 0xFFFF;
+		if (index >= paletteSize)
+			throw new IOException("Corrupt layer %d, palette index %d is out of range!".formatted(layer, index));
+		return index;
+	}
+	
+	/**
+	 * Checks that every packed index of a layer refers to an entry in its palette,
+	 * so a corrupt layer fails here instead of on some later tile access.
+	 */
+	private static void checkPackedIndices(long[] data, int cells, int bits, int paletteSize, int layer) throws IOException {
+		// Indices up to 2^bits - 1 fit, so only check if the palette is smaller than that
+		if (paletteSize == (1 << bits))
+			return;
+		int perWord = 64 / bits;
+		long mask = (1L << bits) - 1;
+		for (int i = 0; i < cells; i++) {
+			int index = (int) ((data[i / perWord] >>> ((i % perWord) * bits)) & mask);
+			if (index >= paletteSize)
+				throw new IOException("Corrupt layer %d, cell %d has palette index %d of %d!".formatted(layer, i, index, paletteSize));
+		}
+	}
+	
+	private static Identifier readIdentifier(ByteBuffer buffer) throws IOException {
+		String string = readString(buffer);
+		if (string.indexOf(':') < 0)
+			throw new IOException("Corrupt identifier '%s'!".formatted(string));
+		return Identifier.parse(string);
+	}
+	
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.github.cm360.pixadv.registry.Identifier;
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.ChunkLayer;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+public class BinaryChunkWriter {
+
+	private Registry registry;
+	private boolean compressed;
+	
+	public BinaryChunkWriter(Registry registry) {
+		this.registry = registry;
+		this.compressed = true;
+	}
+	
+	/**
+	 * Writes a chunk to a file. The data is written to a temporary file which then
+	 * replaces the chunk file, so a crash part way through never leaves a
+	 * truncated chunk behind.
+	 *
+	 * @param chunk     The chunk to write.
+	 * @param chunkFile The file to write to.
+	 * @return The number of bytes written.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public int write(Chunk chunk, File chunkFile) throws IOException {
+		byte[] data = write(chunk);
+		File tempFile = new File(chunkFile.getPath() + ".tmp");
+		try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+			fos.write(data);
+			fos.getFD().sync();
+		}
+		try {
+			Files.move(tempFile.toPath(), chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return data.length;
+	}
+	
+	public byte[] write(Chunk chunk) throws IOException {
+		byte[] payload = writePayload(chunk);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(ChunkFormat.HEADER_LENGTH + payload.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		// Header
+		out.writeInt(ChunkFormat.MAGIC);
+		out.writeShort(ChunkFormat.VERSION);
+		out.writeByte(compressed ? ChunkFormat.FLAG_DEFLATE : 0);
+		out.writeInt(chunk.getSize());
+		out.writeInt(payload.length);
+		// Payload
+		if (compressed) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try (DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater)) {
+				dos.write(payload);
+			} finally {
+				deflater.end();
+			}
+		} else {
+			out.write(payload);
+			out.flush();
+		}
+		return bytes.toByteArray();
+	}
+	
+	private byte[] writePayload(Chunk chunk) throws IOException {
+		// Collect the tiles used by every layer into one chunk palette
+		Map<Tile, Integer> paletteIndices = new IdentityHashMap<Tile, Integer>();
+		List<Tile> palette = new ArrayList<Tile>();
+		for (int l = 0; l < Chunk.LAYERS; l++) {
+			ChunkLayer layer = chunk.getLayer(l);
+			for (int p = 0; p < layer.getPaletteSize(); p++) {
+				Tile tile = layer.getPaletteEntry(p);
+				if (!paletteIndices.containsKey(tile)) {
+					paletteIndices.put(tile, palette.size());
+					palette.add(tile);
+				}
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		// Chunk palette
+		out.writeShort(palette.size());
+		for (Tile tile : palette) {
+			if (tile == null) {
+				out.writeBoolean(false);
+			} else {
+				Identifier tileId = registry.getTileId(tile);
+				if (tileId == null)
+					throw new IOException("Tile '%s' is not registered!".formatted(tile.getID()));
+				out.writeBoolean(true);
+				writeString(out, tileId.toString());
+				String data = tile.getData();
+				out.writeBoolean(data != null);
+				if (data != null)
+					writeString(out, data);
+			}
+		}
+		// Layers
+		for (int l = 0; l < Chunk.LAYERS; l++) {
+			ChunkLayer layer = chunk.getLayer(l);
+			int bits = layer.getBitsPerEntry();
+			out.writeByte(bits);
+			if (bits == 0) {
+				out.writeShort(paletteIndices.get(layer.getPaletteEntry(0)));
+			} else {
+				out.writeShort(layer.getPaletteSize());
+				for (int p = 0; p < layer.getPaletteSize(); p++)
+					out.writeShort(paletteIndices.get(layer.getPaletteEntry(p)));
+				for (long word : layer.getPackedData())
+					out.writeLong(word);
+			}
+		}
+		// Entities, which must all be registered so they can be created again when loading
+		List<Map.Entry<UUID, Entity>> entities = new ArrayList<Map.Entry<UUID, Entity>>(chunk.getEntities().entrySet());
+		for (Map.Entry<UUID, Entity> entry : entities)
+			if (registry.getEntityId(entry.getValue()) == null)
+				throw new IOException("Entity '%s' of type %s is not registered and cannot be saved!"
+						.formatted(entry.getKey(), entry.getValue().getClass().getName()));
+		out.writeInt(entities.size());
+		for (Map.Entry<UUID, Entity> entry : entities) {
+			Entity entity = entry.getValue();
+			writeString(out, registry.getEntityId(entity).toString());
+			out.writeLong(entry.getKey().getMostSignificantBits());
+			out.writeLong(entry.getKey().getLeastSignificantBits());
+			out.writeDouble(entity.getX());
+			out.writeDouble(entity.getY());
+			out.writeDouble(entity.getXVel());
+			out.writeDouble(entity.getYVel());
+			out.writeByte((entity.canNoClip() ? ChunkFormat.ENTITY_NO_CLIP : 0)
+					| (entity.isOnGround() ? ChunkFormat.ENTITY_ON_GROUND : 0));
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF)
+			throw new IOException("String is too long to store in a chunk palette!");
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+	
+	public boolean isCompressed() {
+		return compressed;
+	}
+	
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.List;
+import java.util.Map;
+
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.util.FileUtil;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Upgrades the legacy text chunk files of a save to the binary chunk format.
+ */
+public class ChunkConverter {
+
+	private Registry registry;
+	private boolean deleteLegacy;
+	
+	private int converted;
+	private int failed;
+	private long legacyBytes;
+	private long binaryBytes;
+	
+	public ChunkConverter(Registry registry) {
+		this.registry = registry;
+		this.deleteLegacy = false;
+	}
+	
+	/**
+	 * Converts every legacy chunk file in every world of a save.
+	 *
+	 * @param saveDirectory The save's root directory, containing the worlds directory.
+	 * @return true, if every chunk was converted successfully.
+	 */
+	public boolean convertSave(File saveDirectory) {
+		Logger.logMessage(Logger.INFO, "Converting chunks in '%s'...", saveDirectory);
+		long start = System.currentTimeMillis();
+		converted = 0;
+		failed = 0;
+		legacyBytes = 0;
+		binaryBytes = 0;
+		List<File> worldDirs = FileUtil.listFiles(new File(saveDirectory, "worlds"), File::isDirectory, false);
+		for (File worldDir : worldDirs)
+			convertWorld(worldDir);
+		Logger.logMessage(Logger.INFO, "Converted %d chunks (%d failed) in %dms, %dKB -> %dKB",
+				converted, failed, System.currentTimeMillis() - start, legacyBytes / 1024, binaryBytes / 1024);
+		return failed == 0;
+	}
+	
+	/**
+	 * Converts every legacy chunk file in a single world.
+	 *
+	 * @param worldDirectory The world's directory, containing its info.json file.
+	 */
+	public void convertWorld(File worldDirectory) {
+		File infoFile = new File(worldDirectory, "info.json");
+		int chunkSize;
+		try (FileReader infoFileReader = new FileReader(infoFile)) {
+			Map<String, String> worldInfo = new Gson().fromJson(infoFileReader, TypeToken.getParameterized(Map.class, String.class, String.class).getType());
+			chunkSize = Integer.parseInt(worldInfo.get("chunkSize"));
+		} catch (Exception e) {
+			Logger.logException("Failed to read world info from '%s'!", e, infoFile);
+			return;
+		}
+		BinaryChunkWriter writer = new BinaryChunkWriter(registry);
+		List<File> legacyFiles = FileUtil.listFiles(new File(worldDirectory, "chunks"),
+				file -> FileUtil.getExtension(file.getName()).equals(ChunkFormat.LEGACY_EXTENSION), false);
+		for (File legacyFile : legacyFiles) {
+			File binaryFile = new File(legacyFile.getParentFile(),
+					"%s.%s".formatted(FileUtil.removeExtension(legacyFile.getName()), ChunkFormat.EXTENSION));
+			try {
+				Chunk chunk = new ChunkReader(registry, chunkSize).read(legacyFile);
+				writer.write(chunk, binaryFile);
+				legacyBytes += legacyFile.length();
+				binaryBytes += binaryFile.length();
+				converted++;
+				if (deleteLegacy && !legacyFile.delete())
+					Logger.logMessage(Logger.WARNING, "Could not delete legacy chunk file '%s'", legacyFile);
+			} catch (Exception e) {
+				Logger.logException("Failed to convert chunk file '%s'!", e, legacyFile);
+				failed++;
+			}
+		}
+	}
+	
+	public boolean isDeletingLegacy() {
+		return deleteLegacy;
+	}
+	
+	public void setDeleteLegacy(boolean deleteLegacy) {
+		this.deleteLegacy = deleteLegacy;
+	}
+
+}
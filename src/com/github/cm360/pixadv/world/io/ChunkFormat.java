@@ -0,0 +1,48 @@
+package com.github.cm360.pixadv.world.io;
+
+/**
+ * Constants describing the binary chunk file format.
+ * <p>
+ * A chunk file begins with a fixed header: the magic number, the format version,
+ * a flags byte, the chunk size and the length of the uncompressed payload. The
+ * payload holds a palette of every tile used by the chunk followed by each
+ * layer, stored either as a single palette index or as a layer-local palette
+ * and the layer's packed index words. From version 2 the layers are followed by
+ * the entities frozen in the chunk: a count, then each entity's identifier,
+ * UUID, position, velocity and {@link #ENTITY_NO_CLIP} or
+ * {@link #ENTITY_ON_GROUND} flags. The payload is Deflate compressed if
+ * {@link #FLAG_DEFLATE} is set.
+ */
+public final class ChunkFormat {
+
+	/** The bytes "PACH". */
+	public static final int MAGIC = 0x50414348;
+	
+	/** The current format version. */
+	public static final short VERSION = 2;
+	
+	/** The first format version which stores entities. */
+	public static final short ENTITIES_VERSION = 2;
+	
+	/** Set if the payload is Deflate compressed. */
+	public static final byte FLAG_DEFLATE = 0x01;
+	
+	/** Set on a stored entity which can clip through tiles. */
+	public static final byte ENTITY_NO_CLIP = 0x01;
+	
+	/** Set on a stored entity which was on the ground. */
+	public static final byte ENTITY_ON_GROUND = 0x02;
+	
+	/** The length of the uncompressed header, in bytes. */
+	public static final int HEADER_LENGTH = 4 + 2 + 1 + 4 + 4;
+	
+	/** The file extension used for binary chunk files. */
+	public static final String EXTENSION = "pacb";
+	
+	/** The file extension used for legacy text chunk files. */
+	public static final String LEGACY_EXTENSION = "pachunk";
+	
+	private ChunkFormat() {
+	}
+
+}
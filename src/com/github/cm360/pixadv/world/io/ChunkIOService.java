@@ -0,0 +1,295 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+
+/**
+ * Runs chunk reads and writes on a small pool of I/O threads so disk latency
+ * never blocks the threads which render or simulate a world. Duplicate loads of
+ * a chunk which is already being read share the same future, and saves of a
+ * chunk run one at a time in the order they were requested.
+ * <p>
+ * Requests never run on the calling thread. If the queue is full, the request
+ * is rejected and its future fails with a {@link RejectedExecutionException},
+ * so the caller can retry later, such as on the next frame.
+ */
+public class ChunkIOService {
+
+	public static final int DEFAULT_THREADS = 2;
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+	
+	/**
+	 * Reads a chunk for the service.
+	 */
+	@FunctionalInterface
+	public interface ChunkLoader {
+		public Chunk load(int cx, int cy) throws IOException;
+	}
+	
+	/**
+	 * Writes a chunk for the service.
+	 */
+	@FunctionalInterface
+	public interface ChunkSaver {
+		/**
+		 * Writes a chunk.
+		 *
+		 * @return The number of bytes written.
+		 */
+		public int save(int cx, int cy, Chunk chunk) throws IOException;
+	}
+	
+	private final ThreadPoolExecutor executor;
+	private final Map<HashablePoint, CompletableFuture<Chunk>> pendingLoads;
+	private final Map<HashablePoint, CompletableFuture<Integer>> pendingSaves;
+	
+	// Metrics
+	private final AtomicInteger inFlight;
+	private final AtomicLong completedLoads;
+	private final AtomicLong completedSaves;
+	private final AtomicLong failures;
+	private final AtomicLong rejections;
+	private final AtomicLong totalLoadNanos;
+	private final AtomicLong maxLoadNanos;
+	private final AtomicLong totalSaveNanos;
+	private final AtomicLong maxSaveNanos;
+	
+	public ChunkIOService(String name) {
+		this(name, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	public ChunkIOService(String name, int threads, int queueCapacity) {
+		AtomicInteger threadCount = new AtomicInteger();
+		// When the queue is full, requests are rejected rather than run by the caller
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "ChunkIO-%s-%d".formatted(name, threadCount.incrementAndGet()));
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		this.pendingLoads = new ConcurrentHashMap<HashablePoint, CompletableFuture<Chunk>>();
+		this.pendingSaves = new ConcurrentHashMap<HashablePoint, CompletableFuture<Integer>>();
+		this.inFlight = new AtomicInteger();
+		this.completedLoads = new AtomicLong();
+		this.completedSaves = new AtomicLong();
+		this.failures = new AtomicLong();
+		this.rejections = new AtomicLong();
+		this.totalLoadNanos = new AtomicLong();
+		this.maxLoadNanos = new AtomicLong();
+		this.totalSaveNanos = new AtomicLong();
+		this.maxSaveNanos = new AtomicLong();
+	}
+	
+	/**
+	 * Loads a chunk in the background. If the chunk is already being loaded, the
+	 * existing request's future is returned instead of reading it again. A
+	 * chunk which is still being saved is read once the save has finished.
+	 *
+	 * @param cx     The chunk's X coordinate.
+	 * @param cy     The chunk's Y coordinate.
+	 * @param loader Reads the chunk on an I/O thread.
+	 * @return A future completed with the loaded chunk.
+	 */
+	public CompletableFuture<Chunk> load(int cx, int cy, ChunkLoader loader) {
+		HashablePoint key = new HashablePoint(cx, cy);
+		CompletableFuture<Chunk> future = new CompletableFuture<Chunk>();
+		CompletableFuture<Chunk> existing = pendingLoads.putIfAbsent(key, future);
+		if (existing != null)
+			return existing;
+		long submitted = System.nanoTime();
+		inFlight.incrementAndGet();
+		future.whenComplete((chunk, e) -> {
+			pendingLoads.remove(key, future);
+			inFlight.decrementAndGet();
+			if (e == null) {
+				long latency = System.nanoTime() - submitted;
+				completedLoads.incrementAndGet();
+				totalLoadNanos.addAndGet(latency);
+				maxLoadNanos.accumulateAndGet(latency, Math::max);
+			} else if (!(e instanceof RejectedExecutionException)) {
+				failures.incrementAndGet();
+			}
+		});
+		// Read a chunk which is still being written only once the write is done
+		CompletableFuture<Integer> saving = pendingSaves.get(key);
+		if (saving == null)
+			submit(future, () -> loader.load(cx, cy));
+		else
+			saving.whenComplete((bytes, e) -> submit(future, () -> loader.load(cx, cy)));
+		return future;
+	}
+	
+	/**
+	 * Saves a chunk in the background. If the chunk is already being saved, this
+	 * save starts once that one has finished, so the last snapshot requested is
+	 * the one left in storage.
+	 *
+	 * @param cx    The chunk's X coordinate.
+	 * @param cy    The chunk's Y coordinate.
+	 * @param chunk The chunk to save, which must not change while it is written.
+	 * @param saver Writes the chunk on an I/O thread.
+	 * @return A future completed with the number of bytes written.
+	 */
+	public CompletableFuture<Integer> save(int cx, int cy, Chunk chunk, ChunkSaver saver) {
+		HashablePoint key = new HashablePoint(cx, cy);
+		CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+		CompletableFuture<Integer> write = new CompletableFuture<Integer>();
+		long submitted = System.nanoTime();
+		inFlight.incrementAndGet();
+		// Finish the bookkeeping before anything waiting on the save sees it complete
+		write.whenComplete((bytes, e) -> {
+			pendingSaves.remove(key, future);
+			inFlight.decrementAndGet();
+			if (e == null) {
+				long latency = System.nanoTime() - submitted;
+				completedSaves.incrementAndGet();
+				totalSaveNanos.addAndGet(latency);
+				maxSaveNanos.accumulateAndGet(latency, Math::max);
+				future.complete(bytes);
+			} else {
+				if (!(e instanceof RejectedExecutionException))
+					failures.incrementAndGet();
+				future.completeExceptionally(e);
+			}
+		});
+		Callable<Integer> task = () -> saver.save(cx, cy, chunk);
+		CompletableFuture<Integer> previous = pendingSaves.put(key, future);
+		if (previous == null)
+			submit(write, task);
+		else
+			previous.whenComplete((bytes, e) -> submit(write, task));
+		return future;
+	}
+	
+	private <T> void submit(CompletableFuture<T> future, Callable<T> task) {
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(task.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejections.incrementAndGet();
+			future.completeExceptionally(executor.isShutdown()
+					? new RejectedExecutionException("Chunk I/O service has been closed!") : e);
+		}
+	}
+	
+	/**
+	 * Checks if a chunk is currently being loaded.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return true, if a load for the chunk has not completed yet.
+	 */
+	public boolean isLoading(int cx, int cy) {
+		return pendingLoads.containsKey(new HashablePoint(cx, cy));
+	}
+	
+	/**
+	 * Checks if a chunk is currently being saved.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return true, if a save for the chunk has not completed yet.
+	 */
+	public boolean isSaving(int cx, int cy) {
+		return pendingSaves.containsKey(new HashablePoint(cx, cy));
+	}
+	
+	public boolean isClosed() {
+		return executor.isShutdown();
+	}
+	
+	// Metric methods
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+	
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	public long getCompletedLoads() {
+		return completedLoads.get();
+	}
+	
+	public long getCompletedSaves() {
+		return completedSaves.get();
+	}
+	
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	/**
+	 * Gets how many requests were turned away because the queue was full or the
+	 * service was closed.
+	 *
+	 * @return The number of rejected requests.
+	 */
+	public long getRejections() {
+		return rejections.get();
+	}
+	
+	/**
+	 * Gets the mean time from requesting a load to it completing, including time
+	 * spent waiting in the queue.
+	 *
+	 * @return The mean load latency in nanoseconds.
+	 */
+	public long getAverageLoadNanos() {
+		long loads = completedLoads.get();
+		return (loads == 0) ? 0 : totalLoadNanos.get() / loads;
+	}
+	
+	public long getMaxLoadNanos() {
+		return maxLoadNanos.get();
+	}
+	
+	/**
+	 * Gets the mean time from requesting a save to it completing, including time
+	 * spent waiting in the queue and behind earlier saves of the same chunk.
+	 *
+	 * @return The mean save latency in nanoseconds.
+	 */
+	public long getAverageSaveNanos() {
+		long saves = completedSaves.get();
+		return (saves == 0) ? 0 : totalSaveNanos.get() / saves;
+	}
+	
+	public long getMaxSaveNanos() {
+		return maxSaveNanos.get();
+	}
+	
+	/**
+	 * Stops accepting new requests and waits for queued ones to finish.
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+				Logger.logMessage(Logger.WARNING, "Chunk I/O did not finish within 30 seconds, %d requests dropped",
+						executor.shutdownNow().size());
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.github.cm360.pixadv.world.storage.Chunk;
+
+/**
+ * A place chunks of a single world can be saved to and loaded from.
+ */
+public interface ChunkStorage extends Closeable {
+
+	/**
+	 * Checks if a chunk has been saved.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return true, if the chunk can be read.
+	 */
+	public boolean contains(int cx, int cy);
+
+	/**
+	 * Reads a saved chunk.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return The chunk, or null if it has not been saved.
+	 * @throws IOException If the chunk exists but cannot be read.
+	 */
+	public Chunk read(int cx, int cy) throws IOException;
+
+	/**
+	 * Saves a chunk. A chunk is either fully replaced or left as it was, even if
+	 * the game stops part way through the write.
+	 *
+	 * @param cx    The chunk's X coordinate.
+	 * @param cy    The chunk's Y coordinate.
+	 * @param chunk The chunk to save.
+	 * @return The number of bytes written.
+	 * @throws IOException If the chunk cannot be written.
+	 */
+	public int write(int cx, int cy, Chunk chunk) throws IOException;
+
+}
@@ -0,0 +1,64 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.world.storage.Chunk;
+
+/**
+ * Stores each chunk in its own file. Binary chunk files are preferred, but
+ * legacy text chunk files are still read if no binary file exists.
+ */
+public class FileChunkStorage implements ChunkStorage {
+
+	private Registry registry;
+	private File directory;
+	private int chunkSize;
+	
+	public FileChunkStorage(Registry registry, File directory, int chunkSize) {
+		this.registry = registry;
+		this.directory = directory;
+		this.chunkSize = chunkSize;
+	}
+	
+	@Override
+	public boolean contains(int cx, int cy) {
+		return getChunkFile(cx, cy, ChunkFormat.EXTENSION).exists()
+				|| getChunkFile(cx, cy, ChunkFormat.LEGACY_EXTENSION).exists();
+	}
+	
+	@Override
+	public Chunk read(int cx, int cy) throws IOException {
+		File chunkFile = getChunkFile(cx, cy, ChunkFormat.EXTENSION);
+		if (chunkFile.exists())
+			return new BinaryChunkReader(registry, chunkSize).read(chunkFile);
+		File legacyFile = getChunkFile(cx, cy, ChunkFormat.LEGACY_EXTENSION);
+		if (legacyFile.exists()) {
+			try {
+				return new ChunkReader(registry, chunkSize).read(legacyFile);
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("Corrupt legacy chunk file '%s'!".formatted(legacyFile), e);
+			}
+		}
+		return null;
+	}
+	
+	@Override
+	public int write(int cx, int cy, Chunk chunk) throws IOException {
+		directory.mkdirs();
+		return new BinaryChunkWriter(registry).write(chunk, getChunkFile(cx, cy, ChunkFormat.EXTENSION));
+	}
+	
+	public File getChunkFile(int cx, int cy, String extension) {
+		return new File(directory, "%d_%d.%s".formatted(cx, cy, extension));
+	}
+	
+	@Override
+	public void close() {
+		// Nothing is held open between calls
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+
+/**
+ * Stores chunks in region files, each holding a square group of chunks. Chunks
+ * missing from the regions are read from a fallback storage instead, so worlds
+ * saved with one file per chunk are migrated as their chunks are saved again.
+ */
+public class RegionChunkStorage implements ChunkStorage {
+
+	public static final int DEFAULT_REGION_SIZE = 16;
+	public static final String EXTENSION = "pareg";
+	
+	private Registry registry;
+	private File directory;
+	private int chunkSize;
+	private int regionSize;
+	private ChunkStorage fallback;
+	private Map<String, RegionFile> openRegions;
+	
+	public RegionChunkStorage(Registry registry, File directory, int chunkSize, ChunkStorage fallback) {
+		this(registry, directory, chunkSize, DEFAULT_REGION_SIZE, fallback);
+	}
+	
+	public RegionChunkStorage(Registry registry, File directory, int chunkSize, int regionSize, ChunkStorage fallback) {
+		this.registry = registry;
+		this.directory = directory;
+		this.chunkSize = chunkSize;
+		this.regionSize = regionSize;
+		this.fallback = fallback;
+		this.openRegions = new HashMap<String, RegionFile>();
+	}
+	
+	@Override
+	public boolean contains(int cx, int cy) {
+		try {
+			RegionFile region = getRegion(cx, cy, false);
+			if (region != null && region.contains(Math.floorMod(cx, regionSize), Math.floorMod(cy, regionSize)))
+				return true;
+		} catch (IOException e) {
+			Logger.logException("Failed to open region for chunk %d,%d!", e, cx, cy);
+		}
+		return fallback != null && fallback.contains(cx, cy);
+	}
+	
+	@Override
+	public Chunk read(int cx, int cy) throws IOException {
+		RegionFile region = getRegion(cx, cy, false);
+		if (region != null) {
+			ByteBuffer data = region.read(Math.floorMod(cx, regionSize), Math.floorMod(cy, regionSize));
+			if (data != null)
+				return new BinaryChunkReader(registry, chunkSize).read(data);
+		}
+		return (fallback == null) ? null : fallback.read(cx, cy);
+	}
+	
+	@Override
+	public int write(int cx, int cy, Chunk chunk) throws IOException {
+		byte[] data = new BinaryChunkWriter(registry).write(chunk);
+		getRegion(cx, cy, true).write(Math.floorMod(cx, regionSize), Math.floorMod(cy, regionSize), data);
+		return data.length;
+	}
+	
+	/**
+	 * Gets the open region file holding a chunk.
+	 *
+	 * @param cx     The chunk's X coordinate.
+	 * @param cy     The chunk's Y coordinate.
+	 * @param create Whether to create the region file if it does not exist.
+	 * @return The region file, or null if it does not exist and create is false.
+	 * @throws IOException If the region file cannot be opened.
+	 */
+	private synchronized RegionFile getRegion(int cx, int cy, boolean create) throws IOException {
+		int rx = Math.floorDiv(cx, regionSize);
+		int ry = Math.floorDiv(cy, regionSize);
+		String key = "r.%d.%d".formatted(rx, ry);
+		RegionFile region = openRegions.get(key);
+		if (region == null) {
+			File regionFile = new File(directory, "%s.%s".formatted(key, EXTENSION));
+			if (!create && !regionFile.exists())
+				return null;
+			directory.mkdirs();
+			region = new RegionFile(regionFile, regionSize);
+			openRegions.put(key, region);
+		}
+		return region;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		for (RegionFile region : openRegions.values())
+			region.close();
+		openRegions.clear();
+		if (fallback != null)
+			fallback.close();
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * A file holding a square region of chunks. The file is divided into fixed size
+ * sectors. The first sectors hold a header with an offset table, and each
+ * stored chunk occupies a run of consecutive sectors after it.
+ * <p>
+ * Reads copy a chunk out of a memory-mapped view of the file while holding
+ * the region's lock, so a chunk can be read without a system call, and a write
+ * reusing its sectors cannot change the data while it is being decoded.
+ */
+public class RegionFile implements Closeable {
+
+	/** The bytes "PARG". */
+	public static final int MAGIC = 0x50415247;
+
+	/** The current region format version. */
+	public static final short VERSION = 1;
+
+	/** The size of a sector, in bytes. */
+	public static final int SECTOR_SIZE = 4096;
+
+	/** The length of each offset table entry: sector offset, sector count, data length. */
+	private static final int ENTRY_LENGTH = 12;
+
+	private final File file;
+	private final int regionSize;
+	private final int headerSectors;
+	private final FileChannel channel;
+
+	private final int[] sectorOffsets;
+	private final int[] sectorCounts;
+	private final int[] lengths;
+	private final BitSet usedSectors;
+	private int totalSectors;
+
+	private MappedByteBuffer mapped;
+
+	/**
+	 * Opens a region file, creating it if it does not exist.
+	 *
+	 * @param file       The file to open.
+	 * @param regionSize The width and height of the region, in chunks.
+	 * @throws IOException If the file cannot be opened or is not a valid region.
+	 */
+	public RegionFile(File file, int regionSize) throws IOException {
+		this.file = file;
+		this.regionSize = regionSize;
+		int entries = regionSize * regionSize;
+		this.headerSectors = (8 + entries * ENTRY_LENGTH + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		this.sectorOffsets = new int[entries];
+		this.sectorCounts = new int[entries];
+		this.lengths = new int[entries];
+		this.usedSectors = new BitSet();
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() == 0)
+				writeEmptyHeader();
+			else
+				readHeader();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void writeEmptyHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(headerSectors * SECTOR_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) regionSize);
+		header.rewind();
+		writeFully(header, 0);
+		usedSectors.set(0, headerSectors);
+		totalSectors = headerSectors;
+	}
+
+	private void readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(headerSectors * SECTOR_SIZE);
+		while (header.hasRemaining())
+			if (channel.read(header, header.position()) < 0)
+				throw new IOException("Truncated region file header in '%s'!".formatted(file));
+		header.flip();
+		if (header.getInt() != MAGIC)
+			throw new IOException("'%s' is not a region file!".formatted(file));
+		short version = header.getShort();
+		if (version > VERSION)
+			throw new IOException("Unsupported region format version %d in '%s'!".formatted(version, file));
+		if (header.getShort() != regionSize)
+			throw new IOException("Region size mismatch in '%s'!".formatted(file));
+		totalSectors = (int) ((channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE);
+		usedSectors.set(0, headerSectors);
+		for (int i = 0; i < sectorOffsets.length; i++) {
+			sectorOffsets[i] = header.getInt();
+			sectorCounts[i] = header.getInt();
+			lengths[i] = header.getInt();
+			if (sectorCounts[i] > 0) {
+				if (sectorOffsets[i] < headerSectors || sectorOffsets[i] + sectorCounts[i] > totalSectors) {
+					// Entry points outside the file, treat the chunk as missing
+					sectorOffsets[i] = 0;
+					sectorCounts[i] = 0;
+					lengths[i] = 0;
+				} else {
+					usedSectors.set(sectorOffsets[i], sectorOffsets[i] + sectorCounts[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if a chunk is stored in this region.
+	 *
+	 * @param lx The chunk's X coordinate within the region.
+	 * @param ly The chunk's Y coordinate within the region.
+	 * @return true, if the chunk is stored.
+	 */
+	public synchronized boolean contains(int lx, int ly) {
+		return sectorCounts[index(lx, ly)] > 0;
+	}
+
+	/**
+	 * Gets a copy of a stored chunk's data.
+	 *
+	 * @param lx The chunk's X coordinate within the region.
+	 * @param ly The chunk's Y coordinate within the region.
+	 * @return The chunk's data, or null if the chunk is not stored.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public synchronized ByteBuffer read(int lx, int ly) throws IOException {
+		int i = index(lx, ly);
+		if (sectorCounts[i] == 0)
+			return null;
+		long end = (long) sectorOffsets[i] * SECTOR_SIZE + lengths[i];
+		if (mapped == null || mapped.capacity() < end)
+			mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		ByteBuffer data = ByteBuffer.allocate(lengths[i]);
+		data.put(mapped.slice(sectorOffsets[i] * SECTOR_SIZE, lengths[i]));
+		return data.flip();
+	}
+
+	/**
+	 * Stores a chunk's data. The data is always written to sectors the current
+	 * copy does not occupy and flushed before the offset table is updated, so a
+	 * crash part way through leaves the previous copy intact. The updated entry
+	 * is flushed too before the old sectors are freed for reuse, so the table on
+	 * disk never points at sectors which may have been overwritten.
+	 *
+	 * @param lx   The chunk's X coordinate within the region.
+	 * @param ly   The chunk's Y coordinate within the region.
+	 * @param data The chunk's encoded data.
+	 * @throws IOException If the data cannot be written.
+	 */
+	public synchronized void write(int lx, int ly, byte[] data) throws IOException {
+		int i = index(lx, ly);
+		int sectorsNeeded = (data.length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		int oldOffset = sectorOffsets[i];
+		int oldCount = sectorCounts[i];
+		int offset = allocate(sectorsNeeded);
+		writeFully(ByteBuffer.wrap(data), (long) offset * SECTOR_SIZE);
+		channel.force(false);
+		updateEntry(i, offset, sectorsNeeded, data.length);
+		channel.force(false);
+		if (oldCount > 0)
+			usedSectors.clear(oldOffset, oldOffset + oldCount);
+	}
+
+	private int allocate(int sectors) {
+		// First fit among free sectors, or append to the end of the file
+		int start = usedSectors.nextClearBit(headerSectors);
+		while (start < totalSectors) {
+			int end = usedSectors.nextSetBit(start);
+			if (end < 0 || end - start >= sectors)
+				break;
+			start = usedSectors.nextClearBit(end);
+		}
+		usedSectors.set(start, start + sectors);
+		totalSectors = Math.max(totalSectors, start + sectors);
+		return start;
+	}
+
+	private void updateEntry(int i, int offset, int count, int length) throws IOException {
+		sectorOffsets[i] = offset;
+		sectorCounts[i] = count;
+		lengths[i] = length;
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_LENGTH);
+		entry.putInt(offset).putInt(count).putInt(length).flip();
+		writeFully(entry, 8 + (long) i * ENTRY_LENGTH);
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	private int index(int lx, int ly) {
+		if (lx < 0 || ly < 0 || lx >= regionSize || ly >= regionSize)
+			throw new IndexOutOfBoundsException("Chunk %d,%d is outside of the region!".formatted(lx, ly));
+		return ly * regionSize + lx;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getRegionSize() {
+		return regionSize;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		mapped = null;
+		channel.close();
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.github.cm360.pixadv.world.io;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.util.TextUtil;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Generates every chunk of a world and writes them straight to its save
+ * directory, without loading the world or starting a client. Chunks are
+ * generated on several threads and written as soon as they are finished, so
+ * only a few are held in memory at once. Chunks which are already stored are
+ * skipped, so an interrupted run picks up where it stopped.
+ */
+public class WorldPregenerator {
+	
+	private Registry registry;
+	private int threads;
+	private long progressInterval;
+	
+	private volatile boolean cancelled;
+	private volatile int total;
+	private volatile int skipped;
+	private AtomicInteger generated;
+	private AtomicInteger failed;
+	
+	public WorldPregenerator(Registry registry) {
+		this.registry = registry;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.progressInterval = 5000;
+		this.generated = new AtomicInteger();
+		this.failed = new AtomicInteger();
+	}
+	
+	/**
+	 * Generates and saves every chunk of a world which is not saved yet. The
+	 * world's info.json file is written first, recording the generator's seed so
+	 * the world keeps generating the same terrain once it is loaded.
+	 *
+	 * @param generator      The generator to run.
+	 * @param worldDirectory The world's directory, usually inside a save's worlds directory.
+	 * @return true, if every chunk was generated and saved.
+	 */
+	public boolean pregenerate(WorldGenerator generator, File worldDirectory) {
+		cancelled = false;
+		total = generator.getWidth() * generator.getHeight();
+		skipped = 0;
+		generated.set(0);
+		failed.set(0);
+		Logger.logMessage(Logger.INFO, "Pregenerating %dx%d chunks with seed %d in '%s'...",
+				generator.getWidth(), generator.getHeight(), generator.getSeed(), worldDirectory);
+		if (!writeInfo(generator, worldDirectory))
+			return false;
+		long start = System.currentTimeMillis();
+		int chunkSize = generator.getChunkSize();
+		ChunkStorage fileStorage = new FileChunkStorage(registry, new File(worldDirectory, "chunks"), chunkSize);
+		ChunkStorage storage = new RegionChunkStorage(registry, new File(worldDirectory, "regions"), chunkSize, fileStorage);
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "Pregen-%d".formatted(threadCount.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Limits how many finished chunks can wait to be written
+		int permits = threads * 2;
+		Semaphore inFlight = new Semaphore(permits);
+		try {
+			long lastReport = start;
+			for (int cx = 0; cx < generator.getWidth() && !cancelled; cx++) {
+				for (int cy = 0; cy < generator.getHeight() && !cancelled; cy++) {
+					if (storage.contains(cx, cy)) {
+						skipped++;
+						continue;
+					}
+					inFlight.acquire();
+					int chunkX = cx;
+					int chunkY = cy;
+					executor.execute(() -> {
+						try {
+							storage.write(chunkX, chunkY, generator.generateChunk(chunkX, chunkY));
+							generated.incrementAndGet();
+						} catch (IOException | RuntimeException e) {
+							Logger.logException("Failed to pregenerate chunk %d,%d!", e, chunkX, chunkY);
+							failed.incrementAndGet();
+						} finally {
+							inFlight.release();
+						}
+					});
+					if (System.currentTimeMillis() - lastReport >= progressInterval) {
+						logProgress();
+						lastReport = System.currentTimeMillis();
+					}
+				}
+			}
+			// Wait for the last chunks to be written
+			while (!inFlight.tryAcquire(permits, progressInterval, TimeUnit.MILLISECONDS))
+				logProgress();
+		} catch (InterruptedException e) {
+			cancelled = true;
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+			try {
+				if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+					Logger.logMessage(Logger.WARNING, "Pregeneration threads did not stop in time");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				storage.close();
+			} catch (IOException e) {
+				Logger.logException("Failed to close chunk storage in '%s'!", e, worldDirectory);
+			}
+		}
+		Logger.logMessage(Logger.INFO, "%s %d chunks (%d already saved, %d failed) in %dms",
+				cancelled ? "Stopped after pregenerating" : "Pregenerated",
+				generated.get(), skipped, failed.get(), System.currentTimeMillis() - start);
+		return !cancelled && failed.get() == 0;
+	}
+	
+	/**
+	 * Writes a world's info.json file, or checks that an existing one matches
+	 * the generator so a resumed run does not mix two different worlds.
+	 *
+	 * @param generator      The generator being run.
+	 * @param worldDirectory The world's directory.
+	 * @return true, if the world's info matches the generator.
+	 */
+	private boolean writeInfo(WorldGenerator generator, File worldDirectory) {
+		Map<String, String> worldInfo = new LinkedHashMap<String, String>();
+		worldInfo.put("name", generator.getName());
+		worldInfo.put("width", Integer.toString(generator.getWidth()));
+		worldInfo.put("height", Integer.toString(generator.getHeight()));
+		worldInfo.put("chunkSize", Integer.toString(generator.getChunkSize()));
+		worldInfo.put("seed", Long.toString(generator.getSeed()));
+		File infoFile = new File(worldDirectory, "info.json");
+		if (infoFile.exists()) {
+			try (FileReader infoFileReader = new FileReader(infoFile)) {
+				Map<String, String> savedInfo = new Gson().fromJson(infoFileReader, TypeToken.getParameterized(Map.class, String.class, String.class).getType());
+				for (String key : new String[] { "width", "height", "chunkSize", "seed" }) {
+					if (!worldInfo.get(key).equals(savedInfo.get(key))) {
+						Logger.logMessage(Logger.ERROR, "The world in '%s' has a different %s, refusing to pregenerate into it!", worldDirectory, key);
+						return false;
+					}
+				}
+				Logger.logMessage(Logger.INFO, "Resuming pregeneration of '%s'", worldDirectory);
+				return true;
+			} catch (Exception e) {
+				Logger.logException("Failed to read world info from '%s'!", e, infoFile);
+				return false;
+			}
+		}
+		worldDirectory.mkdirs();
+		if (!TextUtil.write(infoFile, new GsonBuilder().setPrettyPrinting().create().toJson(worldInfo))) {
+			Logger.logMessage(Logger.ERROR, "Failed to write world info to '%s'!", infoFile);
+			return false;
+		}
+		return true;
+	}
+	
+	private void logProgress() {
+		Logger.logMessage(Logger.INFO, "Pregenerated %d/%d chunks (%.1f%%)",
+				getCompletedChunks(), total, 100 * getProgress());
+	}
+	
+	/**
+	 * Stops a pregeneration running on another thread once the chunks already
+	 * being generated are saved.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public int getTotalChunks() {
+		return total;
+	}
+	
+	public int getCompletedChunks() {
+		return skipped + generated.get() + failed.get();
+	}
+	
+	/**
+	 * Gets the fraction of the world's chunks which are done, including those
+	 * which were already saved or failed. Every generation stage runs on a
+	 * chunk before it is counted.
+	 *
+	 * @return A value from 0 to 1.
+	 */
+	public double getProgress() {
+		return (total == 0) ? 0 : (double) getCompletedChunks() / total;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+	
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+}
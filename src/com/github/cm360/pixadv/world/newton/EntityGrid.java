@@ -0,0 +1,338 @@
+package com.github.cm360.pixadv.world.newton;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.github.cm360.pixadv.util.LongObjectMap;
+import com.github.cm360.pixadv.world.storage.ChunkKey;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+
+/**
+ * A uniform grid over world space for finding entities inside a box or near a
+ * point without checking every entity. Each entity is filed under the cell
+ * holding its center, along with its position and size at the time it was
+ * added, and queries widen their search by the largest entity added so they
+ * still find entities whose boxes reach into neighboring cells.
+ * <p>
+ * The physics engine refills a grid every tick. Clearing a grid keeps its
+ * cells and arrays, so refilling it allocates nothing once the number of
+ * entities settles, and cells which stay empty for a while are dropped.
+ * A grid can wrap around the world's width like its tiles do, so entities on
+ * either side of the seam at x = 0 are found and collide with each other.
+ * Entities are filed by their wrapped position, and distances along X are
+ * measured the short way around. Every method is synchronized, so a grid can be
+ * queried from other threads.
+ */
+public class EntityGrid {
+
+	/**
+	 * Receives the entities found by a query.
+	 */
+	@FunctionalInterface
+	public interface EntityVisitor {
+		public void visit(UUID uuid, Entity entity);
+	}
+
+	/**
+	 * Receives pairs of entities whose boxes overlap.
+	 */
+	@FunctionalInterface
+	public interface PairVisitor {
+		public void visit(Entity first, Entity second);
+	}
+
+	/**
+	 * Receives pairs of entities whose boxes overlap, by the order they were
+	 * added in.
+	 */
+	@FunctionalInterface
+	public interface IndexPairVisitor {
+		public void visit(int first, int second);
+	}
+
+	/** How many refills a cell can stay empty for before it is dropped. */
+	private static final int CELL_EXPIRY = 300;
+
+	private final double cellSize;
+	private final double wrapWidth;
+	// Cells across the wrap width, each cellWidth wide so they fit it exactly
+	private final int cellsAcross;
+	private final double cellWidth;
+	private final LongObjectMap<Cell> cells;
+	private int generation;
+
+	// Every entity added since the grid was cleared, in the order added
+	private int count;
+	private UUID[] uuids;
+	private Entity[] entities;
+	private double[] xs;
+	private double[] ys;
+	private double[] halfWidths;
+	private double[] halfHeights;
+	private double maxHalfWidth;
+	private double maxHalfHeight;
+
+	private static class Cell {
+		private int generation;
+		private int size;
+		private int[] members = new int[4];
+	}
+
+	/**
+	 * Creates an empty grid which does not wrap.
+	 *
+	 * @param cellSize The width and height of each cell, in tiles. Cells about
+	 *                 twice the size of a typical entity work best.
+	 */
+	public EntityGrid(double cellSize) {
+		this(cellSize, 0);
+	}
+
+	/**
+	 * Creates an empty grid which wraps around a width. Cells are widened
+	 * slightly if needed so a whole number of them spans the width.
+	 *
+	 * @param cellSize  The width and height of each cell, in tiles. Cells about
+	 *                  twice the size of a typical entity work best.
+	 * @param wrapWidth The width to wrap around, in tiles, or 0 to not wrap.
+	 */
+	public EntityGrid(double cellSize, double wrapWidth) {
+		this.cellSize = cellSize;
+		this.wrapWidth = wrapWidth;
+		this.cellsAcross = (wrapWidth > 0) ? Math.max(1, (int) (wrapWidth / cellSize)) : 0;
+		this.cellWidth = (wrapWidth > 0) ? wrapWidth / cellsAcross : cellSize;
+		this.cells = new LongObjectMap<Cell>();
+		this.uuids = new UUID[16];
+		this.entities = new Entity[16];
+		this.xs = new double[16];
+		this.ys = new double[16];
+		this.halfWidths = new double[16];
+		this.halfHeights = new double[16];
+	}
+
+	/**
+	 * Removes every entity from the grid.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(uuids, 0, count, null);
+		Arrays.fill(entities, 0, count, null);
+		count = 0;
+		maxHalfWidth = 0;
+		maxHalfHeight = 0;
+		generation++;
+		if (generation % CELL_EXPIRY == 0)
+			cells.removeIf((key, cell) -> generation - cell.generation > CELL_EXPIRY);
+	}
+
+	/**
+	 * Adds an entity at its current position.
+	 *
+	 * @param uuid   The entity's UUID.
+	 * @param entity The entity.
+	 */
+	public void add(UUID uuid, Entity entity) {
+		add(uuid, entity, entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight());
+	}
+
+	/**
+	 * Adds an entity with a known position and size, without reading them from
+	 * the entity.
+	 *
+	 * @param uuid   The entity's UUID.
+	 * @param entity The entity.
+	 * @param x      The entity's X coordinate, in tiles.
+	 * @param y      The entity's Y coordinate.
+	 * @param width  The entity's width, in tiles.
+	 * @param height The entity's height.
+	 */
+	public synchronized void add(UUID uuid, Entity entity, double x, double y, double width, double height) {
+		if (count == entities.length) {
+			int capacity = count * 2;
+			uuids = Arrays.copyOf(uuids, capacity);
+			entities = Arrays.copyOf(entities, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			halfWidths = Arrays.copyOf(halfWidths, capacity);
+			halfHeights = Arrays.copyOf(halfHeights, capacity);
+		}
+		int index = count++;
+		uuids[index] = uuid;
+		entities[index] = entity;
+		xs[index] = wrapX(x);
+		ys[index] = y;
+		halfWidths[index] = width / 2;
+		halfHeights[index] = height / 2;
+		maxHalfWidth = Math.max(maxHalfWidth, halfWidths[index]);
+		maxHalfHeight = Math.max(maxHalfHeight, halfHeights[index]);
+		long key = ChunkKey.of(cellOfX(xs[index]), cellOf(ys[index]));
+		Cell cell = cells.get(key);
+		if (cell == null) {
+			cell = new Cell();
+			cells.put(key, cell);
+		}
+		if (cell.generation != generation) {
+			cell.generation = generation;
+			cell.size = 0;
+		}
+		if (cell.size == cell.members.length)
+			cell.members = Arrays.copyOf(cell.members, cell.size * 2);
+		cell.members[cell.size++] = index;
+	}
+
+	/**
+	 * Visits every entity whose box overlaps a box.
+	 *
+	 * @param minX    The box's left edge, in tiles.
+	 * @param minY    The box's bottom edge.
+	 * @param maxX    The box's right edge.
+	 * @param maxY    The box's top edge.
+	 * @param visitor Receives each entity found.
+	 */
+	public synchronized void forEachInBox(double minX, double minY, double maxX, double maxY, EntityVisitor visitor) {
+		int firstCellX = cellOfX(minX - maxHalfWidth);
+		int lastCellX = lastCellX(firstCellX, cellOfX(maxX + maxHalfWidth));
+		int lastCellY = cellOf(maxY + maxHalfHeight);
+		double centerX = (minX + maxX) / 2;
+		double halfX = (maxX - minX) / 2;
+		for (int cellX = firstCellX; cellX <= lastCellX; cellX++) {
+			for (int cellY = cellOf(minY - maxHalfHeight); cellY <= lastCellY; cellY++) {
+				Cell cell = cells.get(ChunkKey.of(wrapCellX(cellX), cellY));
+				if (cell == null || cell.generation != generation)
+					continue;
+				for (int m = 0; m < cell.size; m++) {
+					int i = cell.members[m];
+					if (Math.abs(deltaX(xs[i], centerX)) <= halfX + halfWidths[i]
+							&& ys[i] + halfHeights[i] >= minY && ys[i] - halfHeights[i] <= maxY)
+						visitor.visit(uuids[i], entities[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits every entity whose center is within a distance of a point.
+	 *
+	 * @param x       The point's X coordinate, in tiles.
+	 * @param y       The point's Y coordinate.
+	 * @param radius  The distance, in tiles.
+	 * @param visitor Receives each entity found.
+	 */
+	public synchronized void forEachInRadius(double x, double y, double radius, EntityVisitor visitor) {
+		int firstCellX = cellOfX(x - radius);
+		int lastCellX = lastCellX(firstCellX, cellOfX(x + radius));
+		int lastCellY = cellOf(y + radius);
+		double radiusSquared = radius * radius;
+		for (int cellX = firstCellX; cellX <= lastCellX; cellX++) {
+			for (int cellY = cellOf(y - radius); cellY <= lastCellY; cellY++) {
+				Cell cell = cells.get(ChunkKey.of(wrapCellX(cellX), cellY));
+				if (cell == null || cell.generation != generation)
+					continue;
+				for (int m = 0; m < cell.size; m++) {
+					int i = cell.members[m];
+					double dx = deltaX(xs[i], x);
+					double dy = ys[i] - y;
+					if (dx * dx + dy * dy <= radiusSquared)
+						visitor.visit(uuids[i], entities[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits every pair of entities whose boxes overlapped when they were added,
+	 * each pair once. Pairs are visited in the order their first entity was
+	 * added, so the result only depends on the order entities were added in.
+	 *
+	 * @param visitor Receives each pair, the entity added first being first.
+	 */
+	public synchronized void forEachOverlappingPair(PairVisitor visitor) {
+		forEachOverlappingPair(0, count, (i, j) -> visitor.visit(entities[i], entities[j]));
+	}
+
+	/**
+	 * Visits every pair of entities whose boxes overlapped when they were added,
+	 * and whose first entity is in a range of the order entities were added in.
+	 * This is not synchronized, so several threads can scan different ranges of
+	 * a grid at once, but the grid must not change until they finish.
+	 *
+	 * @param from    The index of the first entity in the range, as the order it
+	 *                was added in.
+	 * @param to      The index after the last entity in the range.
+	 * @param visitor Receives each pair, the entity added first being first.
+	 */
+	public void forEachOverlappingPair(int from, int to, IndexPairVisitor visitor) {
+		// Centers of overlapping boxes are at most this far apart
+		int reachX = (int) Math.ceil(2 * maxHalfWidth / cellWidth);
+		int reachY = (int) Math.ceil(2 * maxHalfHeight / cellSize);
+		for (int i = from; i < to; i++) {
+			int cellX = cellOfX(xs[i]);
+			int cellY = cellOf(ys[i]);
+			int lastCellX = lastCellX(cellX - reachX, cellX + reachX);
+			for (int nx = cellX - reachX; nx <= lastCellX; nx++) {
+				for (int ny = cellY - reachY; ny <= cellY + reachY; ny++) {
+					Cell cell = cells.get(ChunkKey.of(wrapCellX(nx), ny));
+					if (cell == null || cell.generation != generation)
+						continue;
+					for (int m = 0; m < cell.size; m++) {
+						int j = cell.members[m];
+						if (j > i && Math.abs(deltaX(xs[j], xs[i])) < halfWidths[i] + halfWidths[j]
+								&& Math.abs(ys[i] - ys[j]) < halfHeights[i] + halfHeights[j])
+							visitor.visit(i, j);
+					}
+				}
+			}
+		}
+	}
+
+	private int cellOf(double coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private int cellOfX(double x) {
+		return (int) Math.floor(x / cellWidth);
+	}
+
+	private int wrapCellX(int cellX) {
+		return (cellsAcross > 0) ? Math.floorMod(cellX, cellsAcross) : cellX;
+	}
+
+	/**
+	 * Limits a range of cell columns so no column is visited twice when it
+	 * reaches all the way around the world.
+	 */
+	private int lastCellX(int firstCellX, int lastCellX) {
+		return (cellsAcross > 0) ? Math.min(lastCellX, firstCellX + cellsAcross - 1) : lastCellX;
+	}
+
+	private double wrapX(double x) {
+		if (wrapWidth <= 0)
+			return x;
+		double wrapped = x % wrapWidth;
+		// The sum can round up to the width itself for tiny negative values
+		return (wrapped < 0) ? ((wrapped + wrapWidth < wrapWidth) ? wrapped + wrapWidth : 0) : wrapped;
+	}
+
+	/**
+	 * Gets the distance along X from one position to another, the short way
+	 * around if the grid wraps.
+	 */
+	private double deltaX(double x, double fromX) {
+		double dx = x - fromX;
+		if (wrapWidth > 0)
+			dx -= wrapWidth * Math.rint(dx / wrapWidth);
+		return dx;
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	public double getWrapWidth() {
+		return wrapWidth;
+	}
+
+}
@@ -2,18 +2,26 @@ package com.github.cm360.pixadv.world.newton;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import com.github.cm360.pixadv.builtin.pixadv.java.entities.capabilities.ControllableEntity;
 import com.github.cm360.pixadv.builtin.pixadv.java.entities.capabilities.RideableEntity;
 import com.github.cm360.pixadv.builtin.pixadv.java.entities.capabilities.ControllableEntity.Input;
 import com.github.cm360.pixadv.builtin.pixadv.java.entities.capabilities.FlyingEntity;
+import com.github.cm360.pixadv.builtin.pixadv.java.entities.capabilities.PlayerEntity;
 import com.github.cm360.pixadv.world.storage.world.World;
 import com.github.cm360.pixadv.world.types.entities.Entity;
-import com.github.cm360.pixadv.world.types.tiles.Tile;
+import com.github.cm360.pixadv.world.types.entities.EntityStore;
 
 /**
  * The Class Newton, an engine to handle physics for each world.
@@ -27,11 +35,123 @@ public class Newton {
 		TOP, BOTTOM, LEFT, RIGHT
 	};
 	
+	/**
+	 * Entity positions before and after a tick, by the slot each entity had.
+	 */
+	protected static class TickPositions {
+		
+		protected final int count;
+		protected final UUID[] uuids;
+		protected final double[] previousXs;
+		protected final double[] previousYs;
+		protected final double[] xs;
+		protected final double[] ys;
+		
+		protected TickPositions(int count) {
+			this.count = count;
+			this.uuids = new UUID[count];
+			this.previousXs = new double[count];
+			this.previousYs = new double[count];
+			this.xs = new double[count];
+			this.ys = new double[count];
+		}
+		
+	}
+	
+	/**
+	 * The overlapping pairs found by one work unit, as pairs of slots.
+	 */
+	private static class PairList {
+		
+		private int size;
+		private int[] slots = new int[64];
+		
+		private void add(int first, int second) {
+			if (size * 2 == slots.length)
+				slots = Arrays.copyOf(slots, slots.length * 2);
+			slots[size * 2] = first;
+			slots[size * 2 + 1] = second;
+			size++;
+		}
+		
+	}
+	
+	/** How many entities each work unit integrates. */
+	private static final int UNIT_SIZE = 1024;
+	
+	/**
+	 * The width of the strips entity collisions are grouped into, in tiles.
+	 * Collisions within one strip are resolved in parallel with other strips,
+	 * those between strips afterwards.
+	 */
+	private static final double STRIP_WIDTH = 32;
+	
+	/** The default time an entity must rest for before it falls asleep, in seconds. */
+	public static final double DEFAULT_SLEEP_DELAY = 0.5;
+	
+	/** The speed, in tiles per second, under which an entity counts as resting. */
+	private static final double SLEEP_SPEED = 0.05;
+	
+	/**
+	 * The speed, in tiles per second, an entity must move at to wake a sleeping
+	 * entity it touches. Slower entities treat sleeping ones as immovable, so
+	 * settled crowds do not keep waking each other.
+	 */
+	private static final double WAKE_SPEED = 2;
+	
+	/** The default distance, in chunks, entities are simulated within. */
+	public static final int DEFAULT_SIMULATION_DISTANCE = 4;
+	
 	/** The world this engine handles physics for. */
 	protected World world;
 	
-	/** When this engine's last tick occurred, in nano time. */
-	protected long lastTick;
+	/** Moves entities through the world's tiles. */
+	protected TileCollider collider;
+	
+	/** Entity positions before and after the last tick. Replaced as a whole after every tick. */
+	protected volatile TickPositions tickPositions;
+	
+	/** The entity index filled by the last tick, which queries read. */
+	protected volatile EntityGrid entityGrid;
+	
+	/** The entity index the next tick fills, swapped with {@link #entityGrid} after each tick. */
+	protected EntityGrid nextEntityGrid;
+	
+	/** The number of threads ticks run on. */
+	protected volatile int parallelism;
+	
+	/** The workers ticks run on, or null to tick on the calling thread. Guarded by the entity store. */
+	protected ForkJoinPool pool;
+	
+	/** How long an entity must rest for before it falls asleep, in seconds. */
+	protected volatile double sleepDelay;
+	
+	/** The number of entities asleep after the last tick. */
+	protected volatile int sleepingCount;
+	
+	/** How many times entities fell asleep. */
+	protected volatile long sleepCount;
+	
+	/** The world's total chunk version when sleeping entities were last checked for tile changes. */
+	protected long checkedChunkVersion;
+	
+	/** How far from the camera, a player or a controlled entity entities are simulated, in chunks. */
+	protected volatile int simulationDistance;
+	
+	// Per-slot working values for a tick, reused between ticks
+	private double[] accelXs;
+	private double[] accelYs;
+	private double[] deltaXs;
+	private double[] deltaYs;
+	private boolean[] behaviors;
+	private boolean[] contacts;
+	private int[] strips;
+	private PairList[] pairLists;
+	private int[] pairSlots;
+	private long[] stripPairs;
+	private int[] groupStarts;
+	private int[] unitSleeps;
+	private int[] unitSleeping;
 	
 	/** The UUIDs of all currently controlled entities. */
 	protected Set<UUID> controlledIds;
@@ -42,6 +162,9 @@ public class Newton {
 	/** The mouse's last position on screen, in screen coordinates. */
 	protected Point mousePos;
 	
+	/** Set when the control inputs change, to wake the controlled entities. */
+	protected AtomicBoolean inputsChanged;
+	
 	/**
 	 * Instantiates a new Newton physics engine.
 	 *
@@ -49,40 +172,340 @@ public class Newton {
 	 */
 	public Newton(World world) {
 		this.world = world;
+		this.collider = new TileCollider(world);
 		this.controlledIds = Set.of();
 		this.inputDirections = Set.of();
 		this.mousePos = new Point();
+		this.inputsChanged = new AtomicBoolean();
+		this.tickPositions = new TickPositions(0);
+		this.entityGrid = new EntityGrid(4, world.getWidth() * world.getChunkSize());
+		this.nextEntityGrid = new EntityGrid(4, world.getWidth() * world.getChunkSize());
+		this.parallelism = 1;
+		this.sleepDelay = DEFAULT_SLEEP_DELAY;
+		this.simulationDistance = DEFAULT_SIMULATION_DISTANCE;
+		this.accelXs = new double[0];
+		this.accelYs = new double[0];
+		this.deltaXs = new double[0];
+		this.deltaYs = new double[0];
+		this.behaviors = new boolean[0];
+		this.contacts = new boolean[0];
+		this.strips = new int[0];
+		this.pairLists = new PairList[0];
+		this.pairSlots = new int[0];
+		this.stripPairs = new long[0];
+		this.groupStarts = new int[1];
+		this.unitSleeps = new int[0];
+		this.unitSleeping = new int[0];
 	}
 	
 	/**
-	 * Tick the physics engine.
+	 * Tick the physics engine, advancing every entity by the same fixed span of
+	 * time so the result does not depend on how often ticks run.
+	 * <p>
+	 * Entities are updated a step at a time, each step a loop over the world's
+	 * {@link EntityStore} arrays. Only controllable and flying entities, whose
+	 * acceleration, decay and gravity come from their own logic, are asked for
+	 * their values through their getters; every other entity uses the stored
+	 * values directly.
+	 * <p>
+	 * With a parallelism above 1, entities are integrated in units of
+	 * consecutive slots and their collisions with each other found and resolved
+	 * in spatial strips, spread over a pool of workers. Every entity and every
+	 * strip is updated in the same order whatever the parallelism, so ticks give
+	 * exactly the same result on any number of threads.
+	 * <p>
+	 * Entities which barely move for {@link #getSleepDelay()} seconds fall
+	 * asleep and are skipped until something wakes them: new control inputs, a
+	 * tile change in a chunk around them, an entity running into them, or their
+	 * state being set from outside the engine.
+	 * <p>
+	 * Only entities within {@link #getSimulationDistance()} chunks of the camera,
+	 * a player or a controlled entity are ticked. Entities further away are
+	 * frozen into the chunk they are in, to be saved with it, and brought back
+	 * once the area comes within range again. Entities whose type is not
+	 * registered cannot be saved, so they are never frozen. Entities next to a
+	 * chunk which is not loaded are held in place until it is, rather than
+	 * falling through the missing tiles.
 	 *
+	 * @param elapsedSeconds The game time this tick covers, in seconds.
 	 * @return The duration of this tick in nanoseconds.
 	 */
-	public long tick() {
-		long currentTick = System.nanoTime();
-		long tickDuration = currentTick - lastTick;
-		if (lastTick > 0) {
-			// Time elapsed since last tick in seconds
-			double elapsedSeconds = tickDuration / 1000000000.0;
-			world.getEntities().forEach((uuid, entity) -> {
-				synchronized (entity) {
-					// Update inputs for controllable entities
-					if (controlledIds.contains(uuid) && entity instanceof ControllableEntity) {
-						updateControllable((ControllableEntity) entity);
-					}
-					// Update motion values
-					updatePosition(entity, elapsedSeconds);
-					updateVelocity(entity, elapsedSeconds);
-					updateAcceleration(entity);
-					// Apply collision forces caused by other entities
-					processEntityCollisions(entity);
+	public long tick(double elapsedSeconds) {
+		long start = System.nanoTime();
+		EntityStore store = world.getEntityStore();
+		EntityGrid grid = nextEntityGrid;
+		grid.clear();
+		TickPositions positions;
+		synchronized (store) {
+			updateSimulationRegion(store);
+			int count = store.size();
+			int units = (count + UNIT_SIZE - 1) / UNIT_SIZE;
+			ensureCapacity(count, units);
+			UUID[] uuids = store.getUuids();
+			double[] xs = store.getXs();
+			double[] ys = store.getYs();
+			positions = new TickPositions(count);
+			System.arraycopy(uuids, 0, positions.uuids, 0, count);
+			System.arraycopy(xs, 0, positions.previousXs, 0, count);
+			System.arraycopy(ys, 0, positions.previousYs, 0, count);
+			// Find entities with their own motion logic, and update inputs for controllable entities
+			boolean wakeControlled = inputsChanged.getAndSet(false) || !inputDirections.isEmpty();
+			for (int i = 0; i < count; i++) {
+				Entity entity = store.getEntity(i);
+				behaviors[i] = entity instanceof ControllableEntity || entity instanceof FlyingEntity;
+				if (entity instanceof ControllableEntity && controlledIds.contains(uuids[i])) {
+					if (wakeControlled)
+						store.wake(i);
+					updateControllable((ControllableEntity) entity);
+				}
+			}
+			// Update motion values
+			long now = System.nanoTime();
+			long chunkVersion = world.getChunkChanges().getTotalVersion();
+			boolean chunksChanged = chunkVersion != checkedChunkVersion;
+			checkedChunkVersion = chunkVersion;
+			forEach(units, unit -> {
+				int from = unit * UNIT_SIZE;
+				int to = Math.min(count, from + UNIT_SIZE);
+				wakeChanged(store, from, to, chunksChanged);
+				holdUnloaded(store, from, to);
+				updateAccelerations(store, from, to);
+				updatePositions(store, from, to, elapsedSeconds, now);
+				updateAccelerations(store, from, to);
+				updateVelocities(store, from, to, elapsedSeconds);
+				resetAccelerations(store, from, to);
+			});
+			// Apply collision forces caused by other entities
+			double[] widths = store.getWidths();
+			double[] heights = store.getHeights();
+			for (int i = 0; i < count; i++) {
+				grid.add(uuids[i], store.getEntity(i), xs[i], ys[i], widths[i], heights[i]);
+				strips[i] = (int) Math.floor(xs[i] / STRIP_WIDTH);
+			}
+			forEach(units, unit -> {
+				PairList pairs = pairLists[unit];
+				pairs.size = 0;
+				grid.forEachOverlappingPair(unit * UNIT_SIZE, Math.min(count, (unit + 1) * UNIT_SIZE), pairs::add);
+			});
+			resolveEntityCollisions(store, units);
+			// Put entities which have rested long enough to sleep
+			forEach(units, unit -> {
+				int from = unit * UNIT_SIZE;
+				updateSleep(store, unit, from, Math.min(count, from + UNIT_SIZE), positions, elapsedSeconds);
+			});
+			int sleeping = 0;
+			long sleeps = 0;
+			for (int unit = 0; unit < units; unit++) {
+				sleeping += unitSleeping[unit];
+				sleeps += unitSleeps[unit];
+			}
+			sleepingCount = sleeping;
+			sleepCount += sleeps;
+			System.arraycopy(xs, 0, positions.xs, 0, count);
+			System.arraycopy(ys, 0, positions.ys, 0, count);
+		}
+		tickPositions = positions;
+		// Publish the filled index and reuse the old one next tick
+		nextEntityGrid = entityGrid;
+		entityGrid = grid;
+		return System.nanoTime() - start;
+	}
+	
+	private void ensureCapacity(int count, int units) {
+		if (accelXs.length < count) {
+			int capacity = Math.max(count, accelXs.length * 2);
+			accelXs = new double[capacity];
+			accelYs = new double[capacity];
+			deltaXs = new double[capacity];
+			deltaYs = new double[capacity];
+			behaviors = new boolean[capacity];
+			contacts = new boolean[capacity];
+			strips = new int[capacity];
+		}
+		if (unitSleeps.length < units) {
+			unitSleeps = new int[Math.max(units, unitSleeps.length * 2)];
+			unitSleeping = new int[unitSleeps.length];
+		}
+		if (pairLists.length < units) {
+			int length = pairLists.length;
+			pairLists = Arrays.copyOf(pairLists, Math.max(units, length * 2));
+			for (int unit = length; unit < pairLists.length; unit++)
+				pairLists[unit] = new PairList();
+		}
+	}
+	
+	/**
+	 * Runs a task for each of a number of work units, on the pool if there is
+	 * one.
+	 */
+	private void forEach(int count, IntConsumer task) {
+		if (pool == null)
+			IntStream.range(0, count).forEach(task);
+		else
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+	}
+	
+	/**
+	 * Resolves the overlapping pairs found this tick. Pairs within a strip only
+	 * move entities of that strip, so strips are resolved independently of each
+	 * other, each in the order its pairs were found. Pairs spanning two strips
+	 * are resolved afterwards, in the order they were found.
+	 *
+	 * @param store The entities.
+	 * @param units The number of work units the pairs were found in.
+	 */
+	private void resolveEntityCollisions(EntityStore store, int units) {
+		// Gather the pairs in the order they were found
+		int total = 0;
+		for (int unit = 0; unit < units; unit++)
+			total += pairLists[unit].size;
+		if (pairSlots.length < total * 2) {
+			pairSlots = new int[Math.max(total * 2, pairSlots.length * 2)];
+			stripPairs = new long[pairSlots.length / 2];
+			groupStarts = new int[pairSlots.length / 2 + 1];
+		}
+		int offset = 0;
+		for (int unit = 0; unit < units; unit++) {
+			PairList pairs = pairLists[unit];
+			System.arraycopy(pairs.slots, 0, pairSlots, offset, pairs.size * 2);
+			offset += pairs.size * 2;
+		}
+		if (pool == null) {
+			for (int p = 0; p < total; p++)
+				if (strips[pairSlots[p * 2]] == strips[pairSlots[p * 2 + 1]])
+					processEntityCollision(store, pairSlots[p * 2], pairSlots[p * 2 + 1]);
+		} else {
+			// Group the pairs within strips by strip, keeping the order they were found in
+			int grouped = 0;
+			for (int p = 0; p < total; p++) {
+				int strip = strips[pairSlots[p * 2]];
+				if (strip == strips[pairSlots[p * 2 + 1]])
+					stripPairs[grouped++] = ((long) strip << 32) | p;
+			}
+			Arrays.sort(stripPairs, 0, grouped);
+			int groups = 0;
+			for (int k = 0; k < grouped; k++)
+				if (k == 0 || (stripPairs[k] >> 32) != (stripPairs[k - 1] >> 32))
+					groupStarts[groups++] = k;
+			groupStarts[groups] = grouped;
+			forEach(groups, group -> {
+				for (int k = groupStarts[group]; k < groupStarts[group + 1]; k++) {
+					int p = (int) stripPairs[k];
+					processEntityCollision(store, pairSlots[p * 2], pairSlots[p * 2 + 1]);
 				}
 			});
 		}
-		this.lastTick = currentTick;
-		// TODO return correct tick time, not time since last tick
-		return tickDuration;
+		for (int p = 0; p < total; p++)
+			if (strips[pairSlots[p * 2]] != strips[pairSlots[p * 2 + 1]])
+				processEntityCollision(store, pairSlots[p * 2], pairSlots[p * 2 + 1]);
+	}
+	
+	/**
+	 * Sets how many threads ticks run on. Changes wait for the tick in progress
+	 * to finish.
+	 *
+	 * @param parallelism The number of threads, or 1 to tick on the calling
+	 *                    thread only.
+	 */
+	public void setParallelism(int parallelism) {
+		synchronized (world.getEntityStore()) {
+			if (pool != null)
+				pool.shutdown();
+			this.parallelism = Math.max(1, parallelism);
+			pool = (this.parallelism > 1) ? new ForkJoinPool(this.parallelism) : null;
+		}
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Sets how long entities must rest for before they fall asleep.
+	 *
+	 * @param sleepDelay The time, in seconds, or positive infinity to keep every
+	 *                   entity awake.
+	 */
+	public void setSleepDelay(double sleepDelay) {
+		this.sleepDelay = sleepDelay;
+	}
+	
+	public double getSleepDelay() {
+		return sleepDelay;
+	}
+	
+	/**
+	 * Sets how far from the camera, a player or a controlled entity entities
+	 * are simulated. Entities further away are frozen into their chunks, if
+	 * they can be saved.
+	 *
+	 * @param simulationDistance The distance, in chunks, or
+	 *                           {@link Integer#MAX_VALUE} to simulate every
+	 *                           entity wherever it is.
+	 */
+	public void setSimulationDistance(int simulationDistance) {
+		this.simulationDistance = Math.max(0, simulationDistance);
+	}
+	
+	public int getSimulationDistance() {
+		return simulationDistance;
+	}
+	
+	/**
+	 * Gets the number of entities which were asleep at the end of the last tick.
+	 *
+	 * @return The number of sleeping entities.
+	 */
+	public int getSleepingCount() {
+		return sleepingCount;
+	}
+	
+	/**
+	 * Gets how many times entities fell asleep since this engine was created.
+	 *
+	 * @return The number of times.
+	 */
+	public long getSleepCount() {
+		return sleepCount;
+	}
+	
+	/**
+	 * Gets how many times sleeping entities were woken, whether by this engine
+	 * or by changes from outside it.
+	 *
+	 * @return The number of times.
+	 */
+	public long getWakeCount() {
+		return world.getEntityStore().getWakeCount();
+	}
+	
+	/**
+	 * Gets the index of where entities were at the end of the last tick, for
+	 * finding entities in an area without checking every entity in the world.
+	 * Entities added since the last tick are not in it yet.
+	 *
+	 * @return The index.
+	 */
+	public EntityGrid getEntityGrid() {
+		return entityGrid;
+	}
+	
+	/**
+	 * Gets each entity's position part way between the last two ticks, so
+	 * rendering moves smoothly at frame rates other than the tick rate.
+	 * Entities added since the last tick are left out.
+	 *
+	 * @param alpha How far between the two ticks, from 0 to 1.
+	 * @return The positions, keyed by entity UUID.
+	 */
+	public Map<UUID, Point2D.Double> getInterpolatedPositions(double alpha) {
+		TickPositions positions = tickPositions;
+		Map<UUID, Point2D.Double> interpolated = new HashMap<UUID, Point2D.Double>(positions.count * 2);
+		for (int i = 0; i < positions.count; i++)
+			interpolated.put(positions.uuids[i], new Point2D.Double(
+					positions.previousXs[i] + (positions.xs[i] - positions.previousXs[i]) * alpha,
+					positions.previousYs[i] + (positions.ys[i] - positions.previousYs[i]) * alpha));
+		return interpolated;
 	}
 	
 	/**
@@ -104,264 +527,474 @@ public class Newton {
 	}
 	
 	/**
-	 * Update an entity's position. This calculates delta values using kinematics,
-	 * steps it's position to check for tile collisions, finally clipping the
-	 * entity's position to stay inside any solid world boundaries.
+	 * Fills in the acceleration a range of entities move with. Entities with
+	 * their own motion logic are asked for theirs, as it can change with their
+	 * velocity or whether they are on the ground.
 	 *
-	 * @param entity The entity to update.
-	 * @param time   The time which has passed since the last update, in seconds.
+	 * @param store The entities.
+	 * @param from  The first slot to update.
+	 * @param to    The slot after the last one to update.
+	 */
+	private void updateAccelerations(EntityStore store, int from, int to) {
+		System.arraycopy(store.getXAccels(), from, accelXs, from, to - from);
+		System.arraycopy(store.getYAccels(), from, accelYs, from, to - from);
+		for (int i = from; i < to; i++) {
+			if (behaviors[i]) {
+				Entity entity = store.getEntity(i);
+				accelXs[i] = entity.getXAccel();
+				accelYs[i] = entity.getYAccel();
+			}
+		}
+	}
+	
+	/**
+	 * Update entity positions. This calculates delta values using kinematics,
+	 * sweeps each entity towards its new position to check for tile collisions,
+	 * finally clipping its position to stay inside any solid world boundaries.
+	 *
+	 * @param store The entities.
+	 * @param from  The first slot to update.
+	 * @param to    The slot after the last one to update.
+	 * @param time  The time which has passed since the last update, in seconds.
+	 * @param now   The nano time to record for entities landing on the ground.
 	 */
-	private void updatePosition(Entity entity, double time) {
+	private void updatePositions(EntityStore store, int from, int to, double time, long now) {
+		double[] xs = store.getXs();
+		double[] ys = store.getYs();
+		double[] xVels = store.getXVels();
+		double[] yVels = store.getYVels();
+		double[] widths = store.getWidths();
+		double[] heights = store.getHeights();
+		double[] groundTimes = store.getGroundTimes();
+		int[] flags = store.getFlags();
 		// Calculate expected delta values
-		double deltaX = (entity.getXVel() * time) + (0.5 * entity.getXAccel() * (time * time));
-		double deltaY = (entity.getYVel() * time) + (0.5 * entity.getYAccel() * (time * time));
-		// Calculate tile collisions if needed
-		if (!entity.canNoClip()) {
-			stepPosition(entity, deltaX, deltaY);
-		} else {
-			entity.setX(entity.getX() + deltaX);
-			entity.setY(entity.getY() + deltaY);
+		for (int i = from; i < to; i++) {
+			deltaXs[i] = (xVels[i] * time) + (0.5 * accelXs[i] * (time * time));
+			deltaYs[i] = (yVels[i] * time) + (0.5 * accelYs[i] * (time * time));
 		}
-		// Force player inside world boundaries
-		double bottomY = entity.getY() - (entity.getHeight() / 2);
-		if (bottomY < -0.5) {
-			entity.setY((entity.getHeight() / 2) - 0.5);
-			entity.setYVel(0);
-			if (world.getGravity() > 0) {
-				entity.setOnGround(true);
+		// Calculate tile collisions if needed
+		double gravity = world.getGravity();
+		int groundSide = (gravity > 0) ? TileCollider.BOTTOM : (gravity < 0) ? TileCollider.TOP : 0;
+		for (int i = from; i < to; i++) {
+			if ((flags[i] & (EntityStore.SLEEPING | EntityStore.UNLOADED)) != 0)
+				continue;
+			if ((flags[i] & EntityStore.NO_CLIP) != 0) {
+				xs[i] += deltaXs[i];
+				ys[i] += deltaYs[i];
+				continue;
+			}
+			int sides = collider.move(xs, ys, i, widths[i] / 2, heights[i] / 2, deltaXs[i], deltaYs[i]);
+			if ((sides & (TileCollider.TOP | TileCollider.BOTTOM)) != 0)
+				yVels[i] = 0;
+			if ((sides & (TileCollider.LEFT | TileCollider.RIGHT)) != 0)
+				xVels[i] = 0;
+			if ((sides & groundSide) != 0) {
+				flags[i] |= EntityStore.ON_GROUND;
+				groundTimes[i] = now;
+			} else {
+				flags[i] &= ~EntityStore.ON_GROUND;
 			}
 		}
-		int worldHeight = world.getHeight() * world.getChunkSize();
-		double topY = entity.getY() + (entity.getHeight() / 2);
-		if (topY > (worldHeight - 0.5)) {
-			entity.setY((worldHeight - 0.5) - (entity.getHeight() / 2));
-			entity.setYVel(0);
-			if (world.getGravity() < 0) {
-				entity.setOnGround(true);
+		// Force entities inside world boundaries
+		double bottom = -0.5;
+		double top = world.getHeight() * world.getChunkSize() - 0.5;
+		for (int i = from; i < to; i++) {
+			double halfHeight = heights[i] / 2;
+			if (ys[i] - halfHeight < bottom) {
+				ys[i] = bottom + halfHeight;
+				yVels[i] = 0;
+				if (gravity > 0) {
+					flags[i] |= EntityStore.ON_GROUND;
+					groundTimes[i] = now;
+				}
+			}
+			if (ys[i] + halfHeight > top) {
+				ys[i] = top - halfHeight;
+				yVels[i] = 0;
+				if (gravity < 0) {
+					flags[i] |= EntityStore.ON_GROUND;
+					groundTimes[i] = now;
+				}
 			}
 		}
 	}
 	
 	/**
-	 * Steps an entity's position and checks tile collisions at each step.
+	 * Updates entity velocities.
 	 *
-	 * @param entity The entity to update.
-	 * @param deltaX The desired X-axis displacement, in tiles.
-	 * @param deltaY The desired Y-axis displacement, in tiles.
+	 * @param store The entities.
+	 * @param from  The first slot to update.
+	 * @param to    The slot after the last one to update.
+	 * @param time  The time which has passed since the last update, in seconds.
 	 */
-	private void stepPosition(Entity entity, double deltaX, double deltaY) {
-		double stepSize = 0.5;
-		Point2D.Double entityPos = new Point2D.Double(entity.getX(), entity.getY());
-		// Calculate movement distance and direction
-		double distance = Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
-		double angle = Math.atan2(deltaY, deltaX);
-		// Calculate size and number of movement steps
-		int steps = (int) Math.floor(distance / stepSize);
-		double remainder = distance % stepSize;
-		Point2D.Double step = new Point2D.Double(stepSize * Math.cos(angle), stepSize * Math.sin(angle));
-		// Check collisions at each step
-		for (int i = 1; i <= steps; i++) {
-			Point2D.Double stepPos = new Point2D.Double(entityPos.x + step.x, entityPos.y + step.y);
-			applyTileCollisions(entity, entityPos, stepPos, deltaX, deltaY, step);
-			// Exit loop if no more steps should be made
-			if (step.x == 0 && step.y == 0) {
-				break;
+	private void updateVelocities(EntityStore store, int from, int to, double time) {
+		double[] xVels = store.getXVels();
+		double[] yVels = store.getYVels();
+		int[] flags = store.getFlags();
+		// Decay velocity for flying entities
+		for (int i = from; i < to; i++) {
+			if (behaviors[i] && store.getEntity(i) instanceof FlyingEntity) {
+				FlyingEntity flyingEntity = (FlyingEntity) store.getEntity(i);
+				if (flyingEntity.isFlying()) {
+					xVels[i] *= Math.pow(flyingEntity.getFlightDecayX(), time);
+					yVels[i] *= Math.pow(flyingEntity.getFlightDecayY(), time);
+				}
 			}
 		}
-		// Handle remainder
-		Point2D.Double remainderPos = new Point2D.Double(entityPos.x + (remainder * Math.cos(angle)), entityPos.y + (remainder * Math.sin(angle)));
-		applyTileCollisions(entity, entityPos, remainderPos, deltaX, deltaY, step);
-		// Update position
-		entity.setX(entityPos.x);
-		entity.setY(entityPos.y);
+		// Apply acceleration, stopping entities which are barely moving
+		for (int i = from; i < to; i++) {
+			if ((flags[i] & (EntityStore.SLEEPING | EntityStore.UNLOADED)) != 0)
+				continue;
+			double xVel = xVels[i] + accelXs[i] * time;
+			double yVel = yVels[i] + accelYs[i] * time;
+			xVels[i] = (Math.abs(xVel) < 0.001) ? 0 : xVel;
+			yVels[i] = (Math.abs(yVel) < 0.001) ? 0 : yVel;
+		}
 	}
-
+	
 	/**
-	 * Applies tile collisions to an entity. More specifically, checks for new tile
-	 * collisions at unsafePos, and updates the coordinates of safePos to represent
-	 * the new collision-less position for this entity.
+	 * Resets entity accelerations, then applies gravity.
 	 *
-	 * @param entity    The entity to update.
-	 * @param safePos   A point representing the farthest currently known safe tile
-	 *                  position this entity can be stepped to. (Will be modified if
-	 *                  no collisions are found!)
-	 * @param unsafePos A point representing the tile position this entity should
-	 *                  attempt to step to if no collisions are found.
-	 * @param deltaX    The desired X-axis direction, only sign matters.
-	 * @param deltaY    The desired Y-axis direction, only sign matters.
-	 * @param step      A point containing the X and Y step sizes. (Will be modified
-	 *                  if needed!)
+	 * @param store The entities.
+	 * @param from  The first slot to update.
+	 * @param to    The slot after the last one to update.
 	 */
-	private void applyTileCollisions(Entity entity, Point2D.Double safePos, Point2D.Double unsafePos, double deltaX, double deltaY, Point2D.Double step) {
-		Set<Point> collisions = findTileCollisions(entity, unsafePos.x, unsafePos.y);
-		Set<CollisionSide> sides = calculateCollisionSides(entity, unsafePos.x, unsafePos.y, deltaX, deltaY, collisions);
-		// Update velocities and step sizes
-		if (sides.contains(CollisionSide.TOP) || sides.contains(CollisionSide.BOTTOM)) {
-			entity.setYVel(0);
-			step.y = 0;
-		} else {
-			safePos.y = unsafePos.y;
+	private void resetAccelerations(EntityStore store, int from, int to) {
+		double[] xAccels = store.getXAccels();
+		double[] yAccels = store.getYAccels();
+		int[] flags = store.getFlags();
+		double gravityAccel = -world.getGravity() * 6;
+		Arrays.fill(xAccels, from, to, 0);
+		for (int i = from; i < to; i++) {
+			if (behaviors[i])
+				yAccels[i] = store.getEntity(i).isGravityAffected() ? gravityAccel : 0;
+			else
+				yAccels[i] = ((flags[i] & EntityStore.GRAVITY_AFFECTED) != 0) ? gravityAccel : 0;
 		}
-		if (sides.contains(CollisionSide.LEFT) || sides.contains(CollisionSide.RIGHT)) {
-			entity.setXVel(0);
-			step.x = 0;
+	}
+	
+	/**
+	 * Pushes two overlapping entities apart along the axis they overlap least
+	 * on, and cancels the velocity carrying them into each other. The lighter
+	 * entity is moved further, and the least collidable of the two decides how
+	 * much of the overlap is resolved each tick, so crowds settle over a few
+	 * ticks instead of jittering.
+	 * <p>
+	 * A sleeping entity is woken if the other entity moved faster than
+	 * {@link #WAKE_SPEED} over the last tick. Otherwise it stays asleep, and
+	 * only the other entity takes its share of the push and impulse. The speed
+	 * actually moved is used rather than the velocity, as velocities in a pile
+	 * never quite settle when each tick only cancels part of them. Entities held
+	 * until their chunks load are never woken, and are not moved either.
+	 *
+	 * @param store The entities.
+	 * @param a     The slot of one of the entities.
+	 * @param b     The slot of the other entity.
+	 */
+	private void processEntityCollision(EntityStore store, int a, int b) {
+		double[] xs = store.getXs();
+		double[] ys = store.getYs();
+		double[] xVels = store.getXVels();
+		double[] yVels = store.getYVels();
+		double[] widths = store.getWidths();
+		double[] heights = store.getHeights();
+		double[] masses = store.getMasses();
+		int[] flags = store.getFlags();
+		contacts[a] = true;
+		contacts[b] = true;
+		boolean firstHeld = (flags[a] & (EntityStore.SLEEPING | EntityStore.UNLOADED)) != 0;
+		boolean secondHeld = (flags[b] & (EntityStore.SLEEPING | EntityStore.UNLOADED)) != 0;
+		double collidability = Math.min(store.getCollidabilities()[a], store.getCollidabilities()[b]);
+		double firstInverseMass = (masses[a] > 0) ? 1 / masses[a] : 0;
+		double secondInverseMass = (masses[b] > 0) ? 1 / masses[b] : 0;
+		double totalInverseMass = firstInverseMass + secondInverseMass;
+		if (collidability <= 0 || totalInverseMass == 0 || (firstHeld && secondHeld))
+			return;
+		// Overlap on each axis, using positions after any earlier pushes this tick
+		double deltaX = xs[b] - xs[a];
+		double deltaY = ys[b] - ys[a];
+		// The short way around the world, for entities on either side of its seam
+		double worldWidth = world.getWidth() * world.getChunkSize();
+		if (worldWidth > 0)
+			deltaX -= worldWidth * Math.rint(deltaX / worldWidth);
+		double overlapX = (widths[a] + widths[b]) / 2 - Math.abs(deltaX);
+		double overlapY = (heights[a] + heights[b]) / 2 - Math.abs(deltaY);
+		if (overlapX <= 0 || overlapY <= 0)
+			return;
+		double normalX = 0;
+		double normalY = 0;
+		double depth;
+		if (overlapX < overlapY) {
+			normalX = (deltaX < 0) ? -1 : 1;
+			depth = overlapX;
 		} else {
-			safePos.x = unsafePos.x;
+			normalY = (deltaY < 0) ? -1 : 1;
+			depth = overlapY;
+		}
+		// Wake a sleeping entity if the other one is moving
+		int held = firstHeld ? a : b;
+		if ((firstHeld || secondHeld) && (flags[held] & EntityStore.UNLOADED) == 0
+				&& store.getSpeeds()[firstHeld ? b : a] > WAKE_SPEED) {
+			store.wake(held);
+			firstHeld = false;
+			secondHeld = false;
+		}
+		// Separate the entities, split by mass
+		double push = depth * collidability / totalInverseMass;
+		if (!firstHeld)
+			pushEntity(store, a, -normalX * push * firstInverseMass, -normalY * push * firstInverseMass);
+		if (!secondHeld)
+			pushEntity(store, b, normalX * push * secondInverseMass, normalY * push * secondInverseMass);
+		// Remove the part of their relative velocity closing the gap
+		double closing = (xVels[b] - xVels[a]) * normalX + (yVels[b] - yVels[a]) * normalY;
+		if (closing < 0) {
+			double impulse = -closing * collidability / totalInverseMass;
+			if (!firstHeld) {
+				xVels[a] -= impulse * firstInverseMass * normalX;
+				yVels[a] -= impulse * firstInverseMass * normalY;
+			}
+			if (!secondHeld) {
+				xVels[b] += impulse * secondInverseMass * normalX;
+				yVels[b] += impulse * secondInverseMass * normalY;
+			}
 		}
-		// Update onGround state
-		entity.setOnGround(false);
-		entity.setOnGround((world.getGravity() > 0 && sides.contains(CollisionSide.BOTTOM))
-				|| (world.getGravity() < 0 && sides.contains(CollisionSide.TOP)));
 	}
 	
 	/**
-	 * Find tile collisions.
+	 * Freezes the entities outside the simulation region into their chunks, and
+	 * brings back those frozen in loaded chunks inside it. The region is every
+	 * chunk within the simulation distance of the camera's chunk, a player's
+	 * chunk or a controlled entity's chunk. Entities are only frozen a chunk further out than that, so
+	 * those near the edge are not frozen and thawed over and over.
 	 *
-	 * @param entity The entity to check for.
-	 * @param x      The X coordinate to check for tile collisions with this entity
-	 *               at, in tiles.
-	 * @param y      The Y coordinate to check for tile collisions with this entity
-	 *               at, in tiles.
-	 * @return A set containing points for each tile this entity would collide with
-	 *         at the new coordinates.
+	 * @param store The entities, whose lock must be held.
 	 */
-	private Set<Point> findTileCollisions(Entity entity, double x, double y) {
-		// TODO ignore tiles that are already intersected
-		int worldTileHeight = world.getHeight() * world.getChunkSize();
-		//
-		double halfWidth = entity.getWidth() / 2;
-		int leftX = (int) Math.round(x - halfWidth);
-		int rightX = (int) Math.round(x + halfWidth);
-		//
-		double halfHeight = entity.getHeight() / 2;
-		int bottomY = (int) Math.round(y - halfHeight);
-		int topY = (int) Math.round(y + halfHeight);
-		//
-		Set<Point> collisions = new HashSet<Point>();
-		for (int tx = leftX; tx <= rightX; tx++) {
-			for (int ty = bottomY; ty <= topY; ty++) {
-				Point corrected = world.correctCoord(tx, ty);
-				if (corrected.y >= 0 && corrected.y < worldTileHeight) {
-					if (checkCollidableTile(corrected.x, corrected.y)) {
-						collisions.add(new Point(tx, ty));
-					}
+	private void updateSimulationRegion(EntityStore store) {
+		int distance = simulationDistance;
+		if (distance == Integer.MAX_VALUE)
+			return;
+		int width = world.getWidth();
+		int height = world.getHeight();
+		List<int[]> centers = new ArrayList<int[]>();
+		centers.add(chunkOf(world.getCameraX(), world.getCameraY()));
+		double[] xs = store.getXs();
+		double[] ys = store.getYs();
+		for (int i = 0; i < store.size(); i++)
+			if (store.getEntity(i) instanceof PlayerEntity)
+				centers.add(chunkOf(xs[i], ys[i]));
+		for (UUID uuid : controlledIds) {
+			Entity entity = world.getEntity(uuid);
+			if (entity != null)
+				centers.add(chunkOf(entity.getX(), entity.getY()));
+		}
+		// Thaw entities inside the region
+		int reach = Math.min(distance, (width - 1) / 2);
+		for (int[] center : centers)
+			for (int cx = center[0] - reach; cx <= center[0] + reach; cx++)
+				for (int cy = Math.max(0, center[1] - distance); cy <= Math.min(height - 1, center[1] + distance); cy++)
+					if (world.isChunkLoaded(world.wrapChunkX(cx), cy))
+						world.thawEntities(world.wrapChunkX(cx), cy);
+		// Freeze entities well outside it
+		List<UUID> frozen = new ArrayList<UUID>();
+		int chunkSize = world.getChunkSize();
+		for (int i = 0; i < store.size(); i++) {
+			int cx = Math.floorMod((int) Math.floor(xs[i] / chunkSize), width);
+			int cy = Math.max(0, Math.min(height - 1, (int) Math.floor(ys[i] / chunkSize)));
+			boolean inside = false;
+			for (int[] center : centers) {
+				// Worlds wrap horizontally, so measure X distance both ways around
+				int dx = Math.abs(cx - center[0]);
+				dx = Math.min(dx, width - dx);
+				if (dx <= distance + 1 && Math.abs(cy - center[1]) <= distance + 1) {
+					inside = true;
+					break;
 				}
 			}
+			if (!inside)
+				frozen.add(store.getUuid(i));
 		}
-		return collisions;
+		for (UUID uuid : frozen)
+			world.freezeEntity(uuid);
+	}
+	
+	private int[] chunkOf(double x, double y) {
+		int cx = Math.floorMod((int) Math.floor(x / world.getChunkSize()), world.getWidth());
+		int cy = Math.max(0, Math.min(world.getHeight() - 1, (int) Math.floor(y / world.getChunkSize())));
+		return new int[] { cx, cy };
 	}
 	
 	/**
-	 * Check for collidable tile at the specified coordinates.
+	 * Holds the entities in a range which are within a tile of a chunk which is
+	 * not loaded, and releases those whose chunks are all loaded again. Sleeping
+	 * entities are skipped, as they do not move until they are woken.
 	 *
-	 * @param x The corrected X value to check for a tile at.
-	 * @param y The corrected Y value to check for a tile at.
-	 * @return true, if a tile is found.
+	 * @param store The entities.
+	 * @param from  The first slot to check.
+	 * @param to    The slot after the last one to check.
 	 */
-	private boolean checkCollidableTile(int x, int y) {
-		Tile tile2 = world.getTile(x, y, 2);
-		return tile2 != null;
+	private void holdUnloaded(EntityStore store, int from, int to) {
+		int[] flags = store.getFlags();
+		for (int i = from; i < to; i++) {
+			if ((flags[i] & EntityStore.SLEEPING) != 0)
+				continue;
+			if (isNearbyChunkLoaded(store, i))
+				flags[i] &= ~EntityStore.UNLOADED;
+			else
+				flags[i] |= EntityStore.UNLOADED;
+		}
 	}
 	
 	/**
-	 * Calculate collision sides.
+	 * Wakes sleeping entities in a range whose surroundings changed: a tile
+	 * changed in a chunk near them since they fell asleep. Also forgets which
+	 * entities touched another entity last tick.
 	 *
-	 * @param entity the entity
-	 * @param x the x
-	 * @param y the y
-	 * @param deltaX the delta X
-	 * @param deltaY the delta Y
-	 * @param collisions the collisions
-	 * @return the sets the
+	 * @param store         The entities.
+	 * @param from          The first slot to check.
+	 * @param to            The slot after the last one to check.
+	 * @param chunksChanged Whether any chunk changed since the last check. If
+	 *                      not, no entity is checked.
 	 */
-	private Set<CollisionSide> calculateCollisionSides(Entity entity, double x, double y, double deltaX, double deltaY, Set<Point> collisions) {
-		//
-		double halfWidth = entity.getWidth() / 2;
-		double leftX = x - halfWidth;
-		double rightX = x + halfWidth;
-		//
-		double halfHeight = entity.getHeight() / 2;
-		double bottomY = y - halfHeight;
-		double topY = y + halfHeight;
-		// Entity bounding rectangle
-		Rectangle2D.Double entityBounds = new Rectangle2D.Double(x - halfWidth, y - halfHeight, entity.getWidth(), entity.getHeight());
-		// Check side collisions
-		Set<CollisionSide> allSides = new HashSet<CollisionSide>();
-		collisions.stream().forEach(point -> {
-			// Calculate tile intersection
-			Rectangle2D.Double tileBounds = new Rectangle2D.Double(point.x - 0.5, point.y - 0.5, 1, 1);
-			Rectangle2D intersection = tileBounds.createIntersection(entityBounds);
-			// Check side collisions
-			Set<CollisionSide> sides = new HashSet<CollisionSide>();
-			// Y axis collisions
-			if (intersection.getWidth() >= intersection.getHeight()) {
-				if ((deltaY > 0) && (point.y > topY && point.y - 0.5 < topY))
-					sides.add(CollisionSide.TOP);
-				if ((deltaY < 0) && (point.y < bottomY && point.y + 0.5 > bottomY))
-					sides.add(CollisionSide.BOTTOM);
-			}
-			// X axis collisions
-			if (intersection.getHeight() >= intersection.getWidth()) {
-				if ((deltaX < 0) && (point.x < leftX && point.x + 0.5 > leftX))
-					sides.add(CollisionSide.LEFT);
-				if ((deltaX > 0) && (point.x > rightX && point.x - 0.5 < rightX))
-					sides.add(CollisionSide.RIGHT);
-			}
-			allSides.addAll(sides);
-		});
-		return allSides;
+	private void wakeChanged(EntityStore store, int from, int to, boolean chunksChanged) {
+		int[] flags = store.getFlags();
+		long[] sleepVersions = store.getSleepVersions();
+		Arrays.fill(contacts, from, to, false);
+		if (!chunksChanged)
+			return;
+		for (int i = from; i < to; i++)
+			if ((flags[i] & EntityStore.SLEEPING) != 0 && getNearbyChunkVersions(store, i) != sleepVersions[i])
+				store.wake(i);
 	}
 	
 	/**
-	 * Updates the velocity on an entity.
+	 * Tracks how fast each entity in a range moved and how long it has been
+	 * resting for, and puts those which rested for the sleep delay to sleep. An entity rests while it
+	 * moves slower than {@link #SLEEP_SPEED} over a whole tick, so entities
+	 * held still by the ground or a crowd can sleep even though they are
+	 * accelerating. A sleeping entity held up only by other entities is woken
+	 * once it no longer touches any.
 	 *
-	 * @param entity The entity to update.
-	 * @param time The time which has passed since the last update, in seconds.
+	 * @param store     The entities.
+	 * @param unit      The work unit the range belongs to, which the counts are
+	 *                  kept under.
+	 * @param from      The first slot to update.
+	 * @param to        The slot after the last one to update.
+	 * @param positions The positions entities had before the tick.
+	 * @param time      The time which has passed since the last update, in
+	 *                  seconds.
 	 */
-	private void updateVelocity(Entity entity, double time) {
-		double xVel = entity.getXVel();
-		double yVel = entity.getYVel();
-		// Decay velocity for flying entities
-		if (entity instanceof FlyingEntity) {
-			FlyingEntity flyingEntity = (FlyingEntity) entity;
-			if (flyingEntity.isFlying()) {
-				xVel *= Math.pow(flyingEntity.getFlightDecayX(), time);
-				yVel *= Math.pow(flyingEntity.getFlightDecayY(), time);
+	private void updateSleep(EntityStore store, int unit, int from, int to, TickPositions positions, double time) {
+		double[] xs = store.getXs();
+		double[] ys = store.getYs();
+		double[] xVels = store.getXVels();
+		double[] yVels = store.getYVels();
+		double[] restTimes = store.getRestTimes();
+		double[] speeds = store.getSpeeds();
+		long[] sleepVersions = store.getSleepVersions();
+		int[] flags = store.getFlags();
+		double delay = sleepDelay;
+		int sleeps = 0;
+		int sleeping = 0;
+		for (int i = from; i < to; i++) {
+			if ((flags[i] & EntityStore.UNLOADED) != 0)
+				continue;
+			if ((flags[i] & EntityStore.SLEEPING) != 0) {
+				boolean falls = behaviors[i] ? store.getEntity(i).isGravityAffected()
+						: (flags[i] & EntityStore.GRAVITY_AFFECTED) != 0;
+				if (falls && (flags[i] & EntityStore.ON_GROUND) == 0 && !contacts[i] && world.getGravity() != 0)
+					store.wake(i);
+				else
+					sleeping++;
+				continue;
+			}
+			double deltaX = xs[i] - positions.previousXs[i];
+			double deltaY = ys[i] - positions.previousYs[i];
+			speeds[i] = (time > 0) ? Math.sqrt(deltaX * deltaX + deltaY * deltaY) / time : 0;
+			if (speeds[i] < SLEEP_SPEED)
+				restTimes[i] += time;
+			else
+				restTimes[i] = 0;
+			if (restTimes[i] >= delay) {
+				flags[i] |= EntityStore.SLEEPING;
+				xVels[i] = 0;
+				yVels[i] = 0;
+				sleepVersions[i] = getNearbyChunkVersions(store, i);
+				sleeps++;
+				sleeping++;
 			}
 		}
-		// Apply acceleration
-		xVel += entity.getXAccel() * time;
-		yVel += entity.getYAccel() * time;
-		// C
-		if (Math.abs(xVel) < 0.001)
-			xVel = 0;
-		if (Math.abs(yVel) < 0.001)
-			yVel = 0;
-		// Update velocities
-		entity.setXVel(xVel);
-		entity.setYVel(yVel);
+		unitSleeps[unit] = sleeps;
+		unitSleeping[unit] = sleeping;
 	}
 	
 	/**
-	 * Updates the acceleration on an entity by first resetting it, then applying
-	 * gravity.
+	 * Sums the versions of the chunks within a tile of an entity's box. The sum
+	 * changes whenever a tile in one of them changes, as versions only grow.
 	 *
-	 * @param entity The entity to update.
+	 * @param store The entities.
+	 * @param slot  The entity's slot.
+	 * @return The summed versions.
 	 */
-	private void updateAcceleration(Entity entity) {
-		entity.setXAccel(0);
-		entity.setYAccel(entity.isGravityAffected() ? (-world.getGravity() * 6) : 0);
+	private long getNearbyChunkVersions(EntityStore store, int slot) {
+		int chunkSize = world.getChunkSize();
+		int topRow = world.getHeight() * chunkSize - 1;
+		double halfWidth = store.getWidths()[slot] / 2;
+		double halfHeight = store.getHeights()[slot] / 2;
+		double x = store.getXs()[slot];
+		double y = store.getYs()[slot];
+		int minCx = Math.floorDiv((int) Math.floor(x - halfWidth) - 1, chunkSize);
+		int maxCx = Math.floorDiv((int) Math.ceil(x + halfWidth) + 1, chunkSize);
+		int minCy = Math.max(0, (int) Math.floor(y - halfHeight) - 1) / chunkSize;
+		int maxCy = Math.min(topRow, Math.max(0, (int) Math.ceil(y + halfHeight) + 1)) / chunkSize;
+		long versions = 0;
+		for (int cx = minCx; cx <= maxCx; cx++)
+			for (int cy = minCy; cy <= maxCy; cy++)
+				versions += world.getChunkVersion(world.wrapChunkX(cx), cy);
+		return versions;
 	}
 	
 	/**
-	 * Process entity collisions.
+	 * Checks whether every chunk within a tile of an entity's box is loaded.
 	 *
-	 * @param entity the entity
+	 * @param store The entities.
+	 * @param slot  The entity's slot.
+	 * @return true, if the chunks are all loaded.
 	 */
-	private void processEntityCollisions(Entity entity) {
-		
+	private boolean isNearbyChunkLoaded(EntityStore store, int slot) {
+		int chunkSize = world.getChunkSize();
+		int topRow = world.getHeight() * chunkSize - 1;
+		double halfWidth = store.getWidths()[slot] / 2;
+		double halfHeight = store.getHeights()[slot] / 2;
+		double x = store.getXs()[slot];
+		double y = store.getYs()[slot];
+		int minCx = Math.floorDiv((int) Math.floor(x - halfWidth) - 1, chunkSize);
+		int maxCx = Math.floorDiv((int) Math.ceil(x + halfWidth) + 1, chunkSize);
+		int minCy = Math.max(0, (int) Math.floor(y - halfHeight) - 1) / chunkSize;
+		int maxCy = Math.min(topRow, Math.max(0, (int) Math.ceil(y + halfHeight) + 1)) / chunkSize;
+		for (int cx = minCx; cx <= maxCx; cx++)
+			for (int cy = minCy; cy <= maxCy; cy++)
+				if (!world.isChunkLoaded(world.wrapChunkX(cx), cy))
+					return false;
+		return true;
 	}
 	
+	/**
+	 * Moves an entity without letting it enter solid tiles, unless it can clip
+	 * through them.
+	 *
+	 * @param store  The entities.
+	 * @param slot   The entity's slot.
+	 * @param deltaX The X-axis displacement, in tiles.
+	 * @param deltaY The Y-axis displacement, in tiles.
+	 */
+	private void pushEntity(EntityStore store, int slot, double deltaX, double deltaY) {
+		if ((store.getFlags()[slot] & EntityStore.NO_CLIP) != 0) {
+			store.getXs()[slot] += deltaX;
+			store.getYs()[slot] += deltaY;
+		} else {
+			collider.move(store.getXs(), store.getYs(), slot, store.getWidths()[slot] / 2, store.getHeights()[slot] / 2, deltaX, deltaY);
+		}
+	}
 	
 	/**
 	 * Update control input.
@@ -374,6 +1007,7 @@ public class Newton {
 		this.controlledIds = controlledIds;
 		this.inputDirections = inputs;
 		this.mousePos = mousePos;
+		inputsChanged.set(true);
 	}
 
 }
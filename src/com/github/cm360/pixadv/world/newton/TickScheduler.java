@@ -0,0 +1,179 @@
+package com.github.cm360.pixadv.world.newton;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.cm360.pixadv.util.Logger;
+
+/**
+ * Runs a task at a fixed rate on its own thread. Time passing between ticks is
+ * added to an accumulator and spent in whole ticks, so every tick covers the
+ * same span of game time however busy the machine is. The thread parks until
+ * the next tick is due instead of spinning.
+ * <p>
+ * If ticks take longer than their span the scheduler catches up by running
+ * several in a row, but only up to a limit. Any time beyond that is dropped, so
+ * the game slows down instead of falling further and further behind.
+ */
+public class TickScheduler {
+
+	public static final int DEFAULT_TICK_RATE = 60;
+	public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+	private final String name;
+	private final Runnable task;
+
+	private Thread thread;
+	private volatile long tickNanos;
+	private volatile int maxCatchUpTicks;
+	private volatile boolean paused;
+	/** The nano time which game time has been simulated up to. */
+	private volatile long simulatedTime;
+	private volatile long ticks;
+	private volatile long droppedTicks;
+
+	/**
+	 * Creates a scheduler. It does not run until {@link #start()} is called.
+	 *
+	 * @param name     The name of the scheduler's thread.
+	 * @param tickRate The number of ticks to run per second.
+	 * @param task     The task to run every tick.
+	 */
+	public TickScheduler(String name, int tickRate, Runnable task) {
+		this.name = name;
+		this.task = task;
+		this.maxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+		setTickRate(tickRate);
+	}
+
+	public synchronized void start() {
+		if (thread != null)
+			return;
+		thread = new Thread(this::run, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the scheduler once the tick in progress is finished.
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	private void run() {
+		long previous = System.nanoTime();
+		long accumulator = 0;
+		simulatedTime = previous;
+		while (!Thread.currentThread().isInterrupted()) {
+			if (paused) {
+				LockSupport.park(this);
+				// Do not try to catch up on the time spent paused
+				previous = System.nanoTime();
+				accumulator = 0;
+				simulatedTime = previous;
+				continue;
+			}
+			long now = System.nanoTime();
+			accumulator += now - previous;
+			previous = now;
+			long step = tickNanos;
+			// Drop whatever time cannot be caught up on
+			long maxBacklog = step * maxCatchUpTicks;
+			if (accumulator > maxBacklog) {
+				droppedTicks += (accumulator - maxBacklog) / step;
+				accumulator = maxBacklog;
+			}
+			while (accumulator >= step && !paused) {
+				task.run();
+				accumulator -= step;
+				ticks++;
+			}
+			simulatedTime = now - accumulator;
+			LockSupport.parkNanos(this, step - accumulator);
+		}
+		Logger.logMessage(Logger.DEBUG, "Stopped tick scheduler '%s' after %d ticks (%d dropped)", name, ticks, droppedTicks);
+	}
+
+	/**
+	 * Gets how far the present is between the last tick and the next one, for
+	 * interpolating what is drawn between the states before and after the last
+	 * tick.
+	 *
+	 * @return A value from 0, just after a tick, to 1, when the next is due.
+	 */
+	public double getAlpha() {
+		if (paused)
+			return 1;
+		double alpha = (double) (System.nanoTime() - simulatedTime) / tickNanos;
+		return Math.max(0, Math.min(alpha, 1));
+	}
+
+	public boolean isRunning() {
+		Thread current = thread;
+		return current != null && current.isAlive();
+	}
+
+	/**
+	 * Checks whether the calling thread is this scheduler's thread.
+	 *
+	 * @return true, if called from inside a tick.
+	 */
+	public boolean isSchedulerThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+		Thread current = thread;
+		if (!paused && current != null)
+			LockSupport.unpark(current);
+	}
+
+	public int getTickRate() {
+		return (int) Math.round(1e9 / tickNanos);
+	}
+
+	public void setTickRate(int tickRate) {
+		if (tickRate < 1)
+			throw new IllegalArgumentException("The tick rate must be at least 1!");
+		this.tickNanos = 1000000000L / tickRate;
+	}
+
+	/**
+	 * Gets the span of game time each tick covers.
+	 *
+	 * @return The tick length in seconds.
+	 */
+	public double getTickSeconds() {
+		return tickNanos / 1000000000.0;
+	}
+
+	public int getMaxCatchUpTicks() {
+		return maxCatchUpTicks;
+	}
+
+	/**
+	 * Sets how many ticks may run back to back when the scheduler falls behind.
+	 *
+	 * @param maxCatchUpTicks The limit, at least 1.
+	 */
+	public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+		this.maxCatchUpTicks = Math.max(1, maxCatchUpTicks);
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.github.cm360.pixadv.world.newton;
+
+import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+
+/**
+ * Moves entity bounding boxes through a world's tile grid, stopping them at
+ * solid tiles. The box is swept along its whole movement at once: the grid is
+ * walked boundary by boundary in the order the box's leading edges reach them,
+ * and only the row or column of tiles the box is about to enter is checked. If
+ * both edges reach a boundary at once, the tile diagonally ahead is checked
+ * too, and a box meeting only that corner stops moving vertically. A box
+ * blocked on one axis keeps sliding along the other.
+ * <p>
+ * Tiles are centered on whole coordinates, so tile (x, y) covers x - 0.5 to
+ * x + 0.5 horizontally and y - 0.5 to y + 0.5 vertically. Tiles the box
+ * already overlaps never block it, so an entity stuck inside terrain can move
+ * out. Moving a box stored in arrays allocates nothing.
+ */
+public class TileCollider {
+
+	/** Flags for the sides of a box which hit a tile. */
+	public static final int TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8;
+
+	/** How close a box edge must be to a tile boundary to count as touching it. */
+	private static final double EPSILON = 1e-9;
+
+	private final World world;
+
+	public TileCollider(World world) {
+		this.world = world;
+	}
+
+	/**
+	 * Moves an entity as far as it can towards a new position.
+	 *
+	 * @param entity The entity to move.
+	 * @param deltaX The desired X-axis displacement, in tiles.
+	 * @param deltaY The desired Y-axis displacement, in tiles.
+	 * @return The sides of the entity which hit a tile, as a combination of
+	 *         {@link #TOP}, {@link #BOTTOM}, {@link #LEFT} and {@link #RIGHT}.
+	 */
+	public int move(Entity entity, double deltaX, double deltaY) {
+		double[] xs = { entity.getX() };
+		double[] ys = { entity.getY() };
+		int sides = move(xs, ys, 0, entity.getWidth() / 2, entity.getHeight() / 2, deltaX, deltaY);
+		entity.setX(xs[0]);
+		entity.setY(ys[0]);
+		return sides;
+	}
+
+	/**
+	 * Moves a box stored in position arrays as far as it can towards a new
+	 * position. Only the box's own entries are read and written, so boxes in
+	 * the same arrays can be moved from different threads.
+	 *
+	 * @param xs         The X coordinates of box centers.
+	 * @param ys         The Y coordinates of box centers.
+	 * @param index      The index of the box to move.
+	 * @param halfWidth  Half of the box's width, in tiles.
+	 * @param halfHeight Half of the box's height.
+	 * @param deltaX     The desired X-axis displacement, in tiles.
+	 * @param deltaY     The desired Y-axis displacement, in tiles.
+	 * @return The sides of the box which hit a tile, as a combination of
+	 *         {@link #TOP}, {@link #BOTTOM}, {@link #LEFT} and {@link #RIGHT}.
+	 */
+	public int move(double[] xs, double[] ys, int index, double halfWidth, double halfHeight, double deltaX, double deltaY) {
+		double x = xs[index];
+		double y = ys[index];
+		int stepX = (deltaX > 0) ? 1 : -1;
+		int stepY = (deltaY > 0) ? 1 : -1;
+		// The next column and row the leading edges will enter
+		int nextColumn = (deltaX > 0)
+				? (int) Math.ceil(x + halfWidth + 0.5 - EPSILON)
+				: (int) Math.floor(x - halfWidth - 0.5 + EPSILON);
+		int nextRow = (deltaY > 0)
+				? (int) Math.ceil(y + halfHeight + 0.5 - EPSILON)
+				: (int) Math.floor(y - halfHeight - 0.5 + EPSILON);
+		double remainingX = deltaX;
+		double remainingY = deltaY;
+		int sides = 0;
+		while (remainingX != 0 || remainingY != 0) {
+			// Fraction of the remaining movement until each leading edge reaches its next boundary
+			double timeX = (remainingX == 0) ? Double.POSITIVE_INFINITY
+					: Math.max(0, ((nextColumn - 0.5 * stepX) - (x + halfWidth * stepX)) / remainingX);
+			double timeY = (remainingY == 0) ? Double.POSITIVE_INFINITY
+					: Math.max(0, ((nextRow - 0.5 * stepY) - (y + halfHeight * stepY)) / remainingY);
+			double time = Math.min(timeX, timeY);
+			if (time >= 1) {
+				x += remainingX;
+				y += remainingY;
+				break;
+			}
+			x += remainingX * time;
+			y += remainingY * time;
+			remainingX -= remainingX * time;
+			remainingY -= remainingY * time;
+			if (isAtBoundary(x + halfWidth * stepX, nextColumn - 0.5 * stepX, remainingX)
+					&& isAtBoundary(y + halfHeight * stepY, nextRow - 0.5 * stepY, remainingY)) {
+				// Both edges cross at once, so the box would also enter the diagonal tile
+				boolean columnBlocked = isColumnBlocked(nextColumn, y - halfHeight, y + halfHeight);
+				boolean rowBlocked = isRowBlocked(nextRow, x - halfWidth, x + halfWidth);
+				// Landing on or bumping the corner of a tile stops vertical movement
+				if (!columnBlocked && !rowBlocked)
+					rowBlocked = isBlocked(nextColumn, nextRow, nextColumn, nextRow);
+				if (columnBlocked) {
+					x = nextColumn - (0.5 + halfWidth) * stepX;
+					remainingX = 0;
+					sides |= (stepX > 0) ? RIGHT : LEFT;
+				} else {
+					nextColumn += stepX;
+				}
+				if (rowBlocked) {
+					y = nextRow - (0.5 + halfHeight) * stepY;
+					remainingY = 0;
+					sides |= (stepY > 0) ? TOP : BOTTOM;
+				} else {
+					nextRow += stepY;
+				}
+			} else if (timeX <= timeY) {
+				if (isColumnBlocked(nextColumn, y - halfHeight, y + halfHeight)) {
+					// Stop flush against the tiles
+					x = nextColumn - (0.5 + halfWidth) * stepX;
+					remainingX = 0;
+					sides |= (stepX > 0) ? RIGHT : LEFT;
+				} else {
+					nextColumn += stepX;
+				}
+			} else {
+				if (isRowBlocked(nextRow, x - halfWidth, x + halfWidth)) {
+					y = nextRow - (0.5 + halfHeight) * stepY;
+					remainingY = 0;
+					sides |= (stepY > 0) ? TOP : BOTTOM;
+				} else {
+					nextRow += stepY;
+				}
+			}
+		}
+		xs[index] = x;
+		ys[index] = y;
+		return sides;
+	}
+
+	/**
+	 * Checks whether a moving leading edge has reached the boundary it is
+	 * heading for.
+	 */
+	private static boolean isAtBoundary(double edge, double boundary, double remaining) {
+		return remaining != 0 && Math.abs(edge - boundary) < EPSILON;
+	}
+
+	private boolean isColumnBlocked(int column, double bottom, double top) {
+		return isBlocked(column, firstOverlapped(bottom), column, lastOverlapped(top));
+	}
+
+	private boolean isRowBlocked(int row, double left, double right) {
+		return isBlocked(firstOverlapped(left), row, lastOverlapped(right), row);
+	}
+
+	/**
+	 * Gets the first tile a box starting at a coordinate overlaps, ignoring
+	 * tiles it only touches.
+	 */
+	private static int firstOverlapped(double start) {
+		return (int) Math.floor(start - 0.5 + EPSILON) + 1;
+	}
+
+	/**
+	 * Gets the last tile a box ending at a coordinate overlaps, ignoring tiles
+	 * it only touches.
+	 */
+	private static int lastOverlapped(double end) {
+		return (int) Math.ceil(end + 0.5 - EPSILON) - 1;
+	}
+
+	/**
+	 * Checks whether any tile in a rectangle blocks entities.
+	 *
+	 * @param minX The rectangle's left column, wrapped by the world.
+	 * @param minY The rectangle's bottom row.
+	 * @param maxX The rectangle's right column, inclusive.
+	 * @param maxY The rectangle's top row, inclusive.
+	 * @return true, if a tile in the rectangle is solid.
+	 */
+	protected boolean isBlocked(int minX, int minY, int maxX, int maxY) {
+		return world.isAreaSolid(minX, minY, maxX, maxY);
+	}
+
+}
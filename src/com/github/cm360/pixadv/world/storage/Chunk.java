@@ -1,29 +1,172 @@
 package com.github.cm360.pixadv.world.storage;
 
-import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 
-import com.github.cm360.pixadv.registry.Identifier;
-import com.github.cm360.pixadv.registry.Registry;
-import com.github.cm360.pixadv.util.TextUtil;
-import com.github.cm360.pixadv.world.storage.world.World;
+import com.github.cm360.pixadv.world.types.entities.Entity;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public class Chunk {
 
+	public static final int LAYERS = 3;
+	/** The layer whose tiles entities collide with. */
+	public static final int COLLISION_LAYER = 2;
+	
 	private int size = 20;
-	private Tile[][][] tiles;
+	private ChunkLayer[] layers;
+	/**
+	 * One bit per cell of the collision layer, set where the cell is solid. Each
+	 * row starts on a new word, so a span of a row is tested with one mask per
+	 * word it covers.
+	 */
+	private long[] solid;
+	private int wordsPerRow;
+	/**
+	 * Entities frozen in this chunk while it is outside every simulation region,
+	 * saved and loaded along with its tiles. Null while there are none.
+	 */
+	private Map<UUID, Entity> entities;
 	
 	public Chunk(int size) {
 		this.size = size;
-		this.tiles = new Tile[size][size][3];
+		this.layers = new ChunkLayer[LAYERS];
+		for (int l = 0; l < LAYERS; l++)
+			layers[l] = new ChunkLayer(size * size);
+		this.wordsPerRow = (size + 63) >>> 6;
+		this.solid = new long[size * wordsPerRow];
+	}
+	
+	public Chunk(int size, ChunkLayer[] layers) {
+		this.size = size;
+		this.layers = layers;
+		this.wordsPerRow = (size + 63) >>> 6;
+		this.solid = new long[size * wordsPerRow];
+		ChunkLayer collision = layers[COLLISION_LAYER];
+		if (!collision.isUniform() || collision.get(0) != null)
+			for (int y = 0; y < size; y++)
+				for (int x = 0; x < size; x++)
+					if (collision.get(y * size + x) != null)
+						solid[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+	}
+	
+	private Chunk(int size, ChunkLayer[] layers, long[] solid) {
+		this.size = size;
+		this.layers = layers;
+		this.wordsPerRow = (size + 63) >>> 6;
+		this.solid = solid;
 	}
 	
 	public Tile getTile(int x, int y, int layer) {
-		return tiles[x][y][layer];
+		return layers[layer].get(y * size + x);
+	}
+	
+	public synchronized void setTile(Tile tile, int x, int y, int layer) {
+		layers[layer].set(y * size + x, tile);
+		if (layer == COLLISION_LAYER) {
+			if (tile != null)
+				solid[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+			else
+				solid[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+		}
+	}
+	
+	/**
+	 * Checks whether a cell of the collision layer is solid.
+	 *
+	 * @param x The cell's X coordinate in this chunk.
+	 * @param y The cell's Y coordinate in this chunk.
+	 * @return true, if the cell holds a tile.
+	 */
+	public boolean isSolid(int x, int y) {
+		return (solid[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+	
+	/**
+	 * Checks whether any cell of a rectangle of the collision layer is solid.
+	 *
+	 * @param minX The X coordinate of the rectangle's left column in this chunk.
+	 * @param minY The Y coordinate of the rectangle's bottom row in this chunk.
+	 * @param maxX The X coordinate of the rectangle's right column, inclusive.
+	 * @param maxY The Y coordinate of the rectangle's top row, inclusive.
+	 * @return true, if any cell in the rectangle holds a tile.
+	 */
+	public boolean isAreaSolid(int minX, int minY, int maxX, int maxY) {
+		int firstWord = minX >>> 6;
+		int lastWord = maxX >>> 6;
+		// Masks for the partly covered words at either end of each row
+		long firstMask = -1L << minX;
+		long lastMask = -1L >>> (63 - (maxX & 63));
+		for (int y = minY; y <= maxY; y++) {
+			int row = y * wordsPerRow;
+			if (firstWord == lastWord) {
+				if ((solid[row + firstWord] & firstMask & lastMask) != 0)
+					return true;
+			} else {
+				if ((solid[row + firstWord] & firstMask) != 0 || (solid[row + lastWord] & lastMask) != 0)
+					return true;
+				for (int word = firstWord + 1; word < lastWord; word++)
+					if (solid[row + word] != 0)
+						return true;
+			}
+		}
+		return false;
+	}
+	
+	public ChunkLayer getLayer(int layer) {
+		return layers[layer];
+	}
+	
+	/**
+	 * Keeps a frozen entity in this chunk until it is simulated again.
+	 *
+	 * @param uuid   The entity's UUID.
+	 * @param entity The entity, which must not be in a world.
+	 */
+	public synchronized void addEntity(UUID uuid, Entity entity) {
+		if (entities == null)
+			entities = new LinkedHashMap<UUID, Entity>();
+		entities.put(uuid, entity);
+	}
+	
+	/**
+	 * Removes every frozen entity from this chunk.
+	 *
+	 * @return The entities which were in this chunk, keyed by UUID.
+	 */
+	public synchronized Map<UUID, Entity> removeEntities() {
+		Map<UUID, Entity> removed = (entities == null) ? Collections.emptyMap() : entities;
+		entities = null;
+		return removed;
 	}
 	
-	public void setTile(Tile tile, int x, int y, int layer) {
-		tiles[x][y][layer] = tile;
+	/**
+	 * Gets the entities frozen in this chunk.
+	 *
+	 * @return A copy of the entities, keyed by UUID.
+	 */
+	public synchronized Map<UUID, Entity> getEntities() {
+		return (entities == null) ? Collections.emptyMap() : new LinkedHashMap<UUID, Entity>(entities);
+	}
+	
+	public synchronized boolean hasEntities() {
+		return entities != null;
+	}
+	
+	/**
+	 * Takes a copy-on-write snapshot of this chunk for saving.
+	 *
+	 * @return A copy of this chunk which later changes do not affect.
+	 */
+	public synchronized Chunk snapshot() {
+		ChunkLayer[] copies = new ChunkLayer[layers.length];
+		for (int l = 0; l < layers.length; l++)
+			copies[l] = layers[l].snapshot();
+		Chunk snapshot = new Chunk(size, copies, solid.clone());
+		if (entities != null)
+			snapshot.entities = new LinkedHashMap<UUID, Entity>(entities);
+		return snapshot;
 	}
 	
 	public void setSize(int newSize) {
@@ -34,36 +177,33 @@ public class Chunk {
 		return size;
 	}
 	
-	// IO methods
-	public static Chunk load(Registry registry, String chunkData, World parent) {
-		Chunk chunk = new Chunk(parent.getChunkSize());
-		// Parse each line of chunk data
-		for (String line : chunkData.split("[\\n\\r]+")) {
-			try {
-				// Parse line into position and tile info
-				String[] lineSplit = line.split(":", 3);
-				String[] pos = lineSplit[0].split("_", 3);
-				Tile tile = registry.getTile(Identifier.parse(lineSplit[1]));
-				tile.setData(lineSplit[2]);
-				chunk.setTile(tile, Integer.parseInt(pos[0]), Integer.parseInt(pos[1]), Integer.parseInt(pos[2]));
-			} catch (Exception e) {
-				// Improperly formatted line
-				System.out.println("  Corrupt entry found while loading chunk!");
-				System.out.println("    " + line);
-				System.out.printf("    %s: %s\n", e.getClass().getName(), e.getMessage());
-			}
-		}
-		return chunk;
+	// Memory methods
+	/**
+	 * Estimates the heap used by this chunk's tile storage, not counting the tile
+	 * objects themselves.
+	 *
+	 * @return The estimated size in bytes.
+	 */
+	public long getMemoryUsage() {
+		// Object header and fields, layer array, solid cell mask
+		long usage = 32 + 32 + 16 + 8L * solid.length;
+		for (ChunkLayer layer : layers)
+			usage += layer.getMemoryUsage();
+		return usage;
 	}
-
-	public void saveTo(File chunkFile, int chunkSize) {
-		StringBuilder output = new StringBuilder();
-		for (int x = 0; x < chunkSize; x++)
-			for (int y = 0; y < chunkSize; y++)
-				for (int l = 0; l < 3; l++) {
-					output.append(String.format("%s_%s_%s:%s\n", x, y, l, getTile(x, y, l)));
-				}
-		TextUtil.write(chunkFile, output.toString());
+	
+	/**
+	 * Estimates the heap the previous Tile[size][size][3] layout used for a chunk
+	 * of the given size, for comparison with {@link #getMemoryUsage()}.
+	 *
+	 * @param size The width and height of the chunk, in tiles.
+	 * @return The estimated size in bytes.
+	 */
+	public static long getLegacyMemoryUsage(int size) {
+		long outer = (16 + 4L * size + 7) & ~7L;
+		long columns = size * ((16 + 4L * size + 7) & ~7L);
+		long cells = (long) size * size * ((16 + 4L * LAYERS + 7) & ~7L);
+		return 24 + outer + columns + cells;
 	}
 
 }
@@ -0,0 +1,115 @@
+package com.github.cm360.pixadv.world.storage;
+
+import java.util.Arrays;
+
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * Fills a chunk's layers as plain tile arrays and packs them into a
+ * {@link Chunk} in one step. Writing tiles here skips the palette lookups and
+ * change tracking of {@link Chunk#setTile(Tile, int, int, int)}, so generators
+ * and importers can build a chunk cheaply and place the finished chunk in a
+ * world with a single change notification.
+ * <p>
+ * A builder is not thread safe, but can be reused once a chunk has been built.
+ */
+public class ChunkBuilder {
+
+	private final int size;
+	private final Tile[][] layers;
+	private final int[] indices;
+	private Tile[] palette;
+
+	/**
+	 * Creates a builder for chunks filled with air.
+	 *
+	 * @param size The width and height of the chunks, in tiles.
+	 */
+	public ChunkBuilder(int size) {
+		this.size = size;
+		this.layers = new Tile[Chunk.LAYERS][size * size];
+		this.indices = new int[size * size];
+		this.palette = new Tile[4];
+	}
+
+	public Tile getTile(int x, int y, int layer) {
+		return layers[layer][y * size + x];
+	}
+
+	public void setTile(Tile tile, int x, int y, int layer) {
+		layers[layer][y * size + x] = tile;
+	}
+
+	/**
+	 * Gets the array backing one layer, for filling it directly. Cells are
+	 * indexed by y * size + x.
+	 *
+	 * @param layer The layer.
+	 * @return The layer's tiles.
+	 */
+	public Tile[] getLayer(int layer) {
+		return layers[layer];
+	}
+
+	/**
+	 * Fills every layer with air.
+	 */
+	public void clear() {
+		for (Tile[] layer : layers)
+			Arrays.fill(layer, null);
+	}
+
+	/**
+	 * Packs the current tiles into a new chunk. The builder keeps its tiles, so
+	 * call {@link #clear()} before building an unrelated chunk.
+	 *
+	 * @return The chunk.
+	 */
+	public Chunk build() {
+		ChunkLayer[] packed = new ChunkLayer[Chunk.LAYERS];
+		for (int l = 0; l < Chunk.LAYERS; l++)
+			packed[l] = pack(layers[l]);
+		return new Chunk(size, packed);
+	}
+
+	private ChunkLayer pack(Tile[] tiles) {
+		// Build the palette in order of first use
+		int paletteSize = 0;
+		int last = -1;
+		for (int i = 0; i < tiles.length; i++) {
+			Tile tile = tiles[i];
+			if (last < 0 || palette[last] != tile) {
+				last = -1;
+				for (int p = 0; p < paletteSize; p++) {
+					if (palette[p] == tile) {
+						last = p;
+						break;
+					}
+				}
+				if (last < 0) {
+					if (paletteSize == palette.length)
+						palette = Arrays.copyOf(palette, paletteSize * 2);
+					palette[paletteSize] = tile;
+					last = paletteSize++;
+				}
+			}
+			indices[i] = last;
+		}
+		Tile[] layerPalette = Arrays.copyOf(palette, paletteSize);
+		Arrays.fill(palette, null);
+		if (paletteSize == 1)
+			return new ChunkLayer(tiles.length, layerPalette[0]);
+		// Pack indices with as few bits as the palette needs
+		int bits = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+		int perWord = 64 / bits;
+		long[] data = new long[ChunkLayer.wordCount(tiles.length, bits)];
+		for (int i = 0; i < tiles.length; i++)
+			data[i / perWord] |= (long) indices[i] << ((i % perWord) * bits);
+		return new ChunkLayer(tiles.length, layerPalette, bits, data);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.github.cm360.pixadv.world.storage;
+
+/**
+ * Packs chunk coordinates into a single long, for use as a map key without
+ * allocating a point object.
+ */
+public class ChunkKey {
+
+	public static long of(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+	
+	public static int getX(long key) {
+		return (int) (key >> 32);
+	}
+	
+	public static int getY(long key) {
+		return (int) key;
+	}
+	
+	public static String toString(long key) {
+		return "%d,%d".formatted(getX(key), getY(key));
+	}
+
+}
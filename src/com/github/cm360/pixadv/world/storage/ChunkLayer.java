@@ -0,0 +1,319 @@
+package com.github.cm360.pixadv.world.storage;
+
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * A single layer of a chunk, stored as a small palette of distinct tiles and a
+ * bit-packed array of palette indices. Layers made up of a single tile (all
+ * air, all stone, etc.) keep no index array at all.
+ * <p>
+ * The palette, index width and packed array are published together as one
+ * state through a volatile field, so a layer can be read from any thread while
+ * one thread at a time writes to it. A write which needs a new palette entry
+ * builds a whole new state, with its own copy of the packed array, before
+ * publishing it; other writes only change a single cell of the current state
+ * to an index which is valid for its palette.
+ */
+public class ChunkLayer {
+
+	/**
+	 * One version of a layer's storage. Its palette and the size of its packed
+	 * array never change once it is published.
+	 */
+	private static final class State {
+
+		/** The distinct tiles used by the layer. Index 0 is the initial tile. */
+		private final Tile[] palette;
+
+		/** Bits used per packed index, or 0 if the layer holds a single value. */
+		private final int bitsPerEntry;
+
+		/** The packed palette indices, or null if the layer holds a single value. */
+		private final long[] data;
+
+		private State(Tile[] palette, int bitsPerEntry, long[] data) {
+			this.palette = palette;
+			this.bitsPerEntry = bitsPerEntry;
+			this.data = data;
+		}
+
+	}
+
+	/** The number of cells in this layer. */
+	private final int cells;
+
+	/** The current storage, replaced as a whole whenever the palette changes. */
+	private volatile State state;
+
+	/** Whether the state's arrays are shared with a snapshot and must be copied before writing. */
+	private boolean shared;
+
+	/**
+	 * Instantiates a new layer filled with air.
+	 *
+	 * @param cells The number of cells in this layer.
+	 */
+	public ChunkLayer(int cells) {
+		this(cells, null);
+	}
+
+	/**
+	 * Instantiates a new layer filled with a single tile.
+	 *
+	 * @param cells The number of cells in this layer.
+	 * @param fill  The tile every cell initially holds.
+	 */
+	public ChunkLayer(int cells, Tile fill) {
+		this.cells = cells;
+		this.state = new State(new Tile[] { fill }, 0, null);
+	}
+
+	/**
+	 * Instantiates a layer from previously packed data, such as data read from a
+	 * chunk file. The arrays are used directly, not copied.
+	 *
+	 * @param cells        The number of cells in this layer.
+	 * @param palette      The distinct tiles used by this layer.
+	 * @param bitsPerEntry Bits used per packed index, or 0 for a single value.
+	 * @param data         The packed palette indices, or null for a single value.
+	 */
+	public ChunkLayer(int cells, Tile[] palette, int bitsPerEntry, long[] data) {
+		if (bitsPerEntry == 0 ? palette.length < 1 : data.length != wordCount(cells, bitsPerEntry))
+			throw new IllegalArgumentException("Packed layer data does not match the cell count!");
+		this.cells = cells;
+		this.state = new State(palette, bitsPerEntry, (bitsPerEntry == 0) ? null : data);
+	}
+
+	private ChunkLayer(State state, int cells) {
+		this.cells = cells;
+		this.state = state;
+		this.shared = true;
+	}
+
+	/**
+	 * Creates a copy of this layer which shares its arrays until either layer is
+	 * written to, so taking a snapshot does not copy any tile data.
+	 *
+	 * @return The snapshot.
+	 */
+	public ChunkLayer snapshot() {
+		shared = true;
+		return new ChunkLayer(state, cells);
+	}
+
+	/**
+	 * Gets the tile stored in a cell.
+	 *
+	 * @param index The cell index.
+	 * @return The tile in that cell, or null for air.
+	 */
+	public Tile get(int index) {
+		State current = state;
+		if (current.bitsPerEntry == 0)
+			return current.palette[0];
+		else
+			return current.palette[readIndex(current, index)];
+	}
+
+	/**
+	 * Sets the tile stored in a cell. Only one thread may write to a layer at a
+	 * time.
+	 *
+	 * @param index The cell index.
+	 * @param tile  The tile to store, or null for air.
+	 */
+	public void set(int index, Tile tile) {
+		State current = state;
+		int paletteIndex = indexOf(current, tile);
+		if (current.bitsPerEntry == 0 && paletteIndex == 0) {
+			// Uniform layer already holds this tile
+			return;
+		}
+		if (paletteIndex < 0) {
+			// Publish the new palette entry before any cell refers to it
+			current = withTile(current, tile);
+			paletteIndex = current.palette.length - 1;
+			state = current;
+			shared = false;
+		} else if (shared) {
+			// Copy on write, the snapshot keeps the old arrays
+			current = new State(current.palette, current.bitsPerEntry, current.data.clone());
+			state = current;
+			shared = false;
+		}
+		writeIndex(current, index, paletteIndex);
+	}
+
+	/**
+	 * Checks if every cell in this layer holds the same tile.
+	 *
+	 * @return true, if this layer is stored as a single value.
+	 */
+	public boolean isUniform() {
+		return state.bitsPerEntry == 0;
+	}
+
+	public int getCellCount() {
+		return cells;
+	}
+
+	// The getters below each read the current state, so a layer being written to
+	// should be read through a snapshot to get values which belong together
+	public int getPaletteSize() {
+		return state.palette.length;
+	}
+
+	public int getBitsPerEntry() {
+		return state.bitsPerEntry;
+	}
+
+	public Tile getPaletteEntry(int paletteIndex) {
+		return state.palette[paletteIndex];
+	}
+
+	/**
+	 * Gets the packed palette indices backing this layer. The array is not
+	 * copied and must not be modified.
+	 *
+	 * @return The packed indices, or null if this layer holds a single value.
+	 */
+	public long[] getPackedData() {
+		return state.data;
+	}
+
+	/**
+	 * Gets the number of longs needed to pack a layer.
+	 *
+	 * @param cells The number of cells in the layer.
+	 * @param bits  Bits used per packed index.
+	 * @return The length of the packed array.
+	 */
+	public static int wordCount(int cells, int bits) {
+		int perWord = 64 / bits;
+		return (cells + perWord - 1) / perWord;
+	}
+
+	/**
+	 * Estimates the heap used by this layer's own storage, not counting the
+	 * tile objects referenced by its palette.
+	 *
+	 * @return The estimated size in bytes.
+	 */
+	public long getMemoryUsage() {
+		State current = state;
+		// Object header and fields, state, palette array, packed data array
+		long usage = 32 + 24;
+		usage += align(16 + 4L * current.palette.length);
+		if (current.data != null)
+			usage += align(16 + 8L * current.data.length);
+		return usage;
+	}
+
+	// Palette methods
+	private static int indexOf(State state, Tile tile) {
+		Tile[] palette = state.palette;
+		for (int i = 0; i < palette.length; i++)
+			if (palette[i] == tile)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Builds a new state holding the same cells as another, with a tile added
+	 * to the end of its palette. The new state never shares its packed array.
+	 */
+	private State withTile(State current, Tile tile) {
+		Tile[] palette = current.palette;
+		int bits = current.bitsPerEntry;
+		long[] data;
+		if (palette.length >= (1 << bits)) {
+			// Palette is full, drop unused entries before widening indices
+			State compacted = (bits == 0) ? null : compact(current);
+			if (compacted != null) {
+				palette = compacted.palette;
+				data = compacted.data;
+			} else {
+				data = resize(current, bits + 1);
+				bits++;
+			}
+		} else {
+			data = current.data.clone();
+		}
+		Tile[] grown = new Tile[palette.length + 1];
+		System.arraycopy(palette, 0, grown, 0, palette.length);
+		grown[palette.length] = tile;
+		return new State(grown, bits, data);
+	}
+
+	/**
+	 * Builds a new state without the palette entries which are no longer
+	 * referenced by any cell.
+	 *
+	 * @return The new state, or null if every entry is still used.
+	 */
+	private State compact(State current) {
+		Tile[] palette = current.palette;
+		boolean[] used = new boolean[palette.length];
+		int usedCount = 0;
+		for (int i = 0; i < cells; i++) {
+			int paletteIndex = readIndex(current, i);
+			if (!used[paletteIndex]) {
+				used[paletteIndex] = true;
+				usedCount++;
+			}
+		}
+		if (usedCount == palette.length)
+			return null;
+		// Build index remapping
+		int[] remap = new int[palette.length];
+		Tile[] compacted = new Tile[usedCount];
+		int next = 0;
+		for (int i = 0; i < palette.length; i++) {
+			if (used[i]) {
+				remap[i] = next;
+				compacted[next++] = palette[i];
+			}
+		}
+		// Rewrite packed indices into a new array
+		State result = new State(compacted, current.bitsPerEntry, new long[current.data.length]);
+		for (int i = 0; i < cells; i++)
+			writeIndex(result, i, remap[readIndex(current, i)]);
+		return result;
+	}
+
+	private long[] resize(State current, int newBits) {
+		long[] newData = new long[wordCount(cells, newBits)];
+		int oldBits = current.bitsPerEntry;
+		if (oldBits > 0) {
+			int oldPerWord = 64 / oldBits;
+			long oldMask = (1L << oldBits) - 1;
+			int newPerWord = 64 / newBits;
+			for (int i = 0; i < cells; i++) {
+				long value = (current.data[i / oldPerWord] >>> ((i % oldPerWord) * oldBits)) & oldMask;
+				newData[i / newPerWord] |= value << ((i % newPerWord) * newBits);
+			}
+		}
+		return newData;
+	}
+
+	// Packed index methods
+	private static int readIndex(State state, int index) {
+		int bits = state.bitsPerEntry;
+		int perWord = 64 / bits;
+		return (int) ((state.data[index / perWord] >>> ((index % perWord) * bits)) & ((1L << bits) - 1));
+	}
+
+	private static void writeIndex(State state, int index, int value) {
+		int bits = state.bitsPerEntry;
+		int perWord = 64 / bits;
+		int shift = (index % perWord) * bits;
+		long mask = ((1L << bits) - 1) << shift;
+		int word = index / perWord;
+		state.data[word] = (state.data[word] & ~mask) | (((long) value << shift) & mask);
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+}
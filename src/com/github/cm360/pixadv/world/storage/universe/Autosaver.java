@@ -0,0 +1,189 @@
+package com.github.cm360.pixadv.world.storage.universe;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
+import com.github.cm360.pixadv.registry.Registry;
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.world.LocalWorld;
+import com.github.cm360.pixadv.world.storage.world.World;
+
+/**
+ * Periodically saves the modified chunks of a local universe's worlds on a
+ * background thread. Chunks are snapshotted between physics ticks and written
+ * at a limited rate on each world's I/O threads, so neither the physics thread
+ * nor rendering has to wait.
+ */
+public class Autosaver {
+
+	public static final long DEFAULT_INTERVAL = 60000;
+	public static final long DEFAULT_BYTES_PER_SECOND = 8 * 1048576;
+	private static final long RETRY_DELAY = 10;
+	
+	private LocalUniverse universe;
+	private Registry registry;
+	private long interval;
+	private long bytesPerSecond;
+	
+	private Thread thread;
+	private volatile boolean running;
+	private final Object saveLock = new Object();
+	private final Object waitLock = new Object();
+	
+	public Autosaver(LocalUniverse universe, Registry registry) {
+		this.universe = universe;
+		this.registry = registry;
+		this.interval = DEFAULT_INTERVAL;
+		this.bytesPerSecond = DEFAULT_BYTES_PER_SECOND;
+	}
+	
+	public synchronized void start() {
+		if (running)
+			return;
+		running = true;
+		thread = new Thread(() -> {
+			while (running) {
+				pause(interval);
+				if (running)
+					save(true);
+			}
+			Logger.logMessage(Logger.DEBUG, "Stopped autosave for '%s'", universe.getName());
+		}, "Autosave-%s".formatted(universe.getName()));
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops the background thread, waiting for any save in progress to finish.
+	 * The thread is woken rather than interrupted, since interrupting a thread
+	 * blocked in file channel I/O closes the channel.
+	 */
+	public void stop() {
+		Thread stopping;
+		synchronized (this) {
+			running = false;
+			stopping = thread;
+			thread = null;
+		}
+		if (stopping != null) {
+			synchronized (waitLock) {
+				waitLock.notifyAll();
+			}
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Saves every modified chunk of every world which has a save directory.
+	 *
+	 * @param throttled Whether to limit writes to the configured rate.
+	 * @return The number of chunks saved.
+	 */
+	public int save(boolean throttled) {
+		// Only one save runs at a time
+		synchronized (saveLock) {
+			int saved = 0;
+			long written = 0;
+			long start = System.nanoTime();
+			long nextWrite = start;
+			for (String worldName : universe.getWorldNames()) {
+				World world = universe.getWorld(worldName);
+				if (!(world instanceof LocalWorld) || ((LocalWorld) world).getDirectory() == null)
+					continue;
+				LocalWorld localWorld = (LocalWorld) world;
+				Map<HashablePoint, Chunk> snapshots = localWorld.snapshotModifiedChunks();
+				for (Entry<HashablePoint, Chunk> snapshot : snapshots.entrySet()) {
+					HashablePoint pos = snapshot.getKey();
+					try {
+						int bytes = write(localWorld, pos.x, pos.y, snapshot.getValue());
+						written += bytes;
+						saved++;
+						// Wait until this write's share of the rate has passed, unless stopping
+						if (throttled && running) {
+							nextWrite = Math.max(nextWrite, System.nanoTime()) + bytes * 1000000000L / bytesPerSecond;
+							long wait = (nextWrite - System.nanoTime()) / 1000000;
+							if (wait > 0)
+								pause(wait);
+						}
+					} catch (IOException e) {
+						Logger.logException("Failed to save chunk %d,%d of '%s'!", e, pos.x, pos.y, worldName);
+					}
+				}
+			}
+			if (saved > 0)
+				Logger.logMessage(Logger.INFO, "Saved %d chunks (%dKB) of '%s' in %dms",
+						saved, written / 1024, universe.getName(), (System.nanoTime() - start) / 1000000);
+			return saved;
+		}
+	}
+	
+	/**
+	 * Writes a snapshot on its world's I/O threads and waits for the write to
+	 * finish. Writes rejected because the I/O queue is full are retried shortly
+	 * after.
+	 */
+	private int write(LocalWorld world, int cx, int cy, Chunk snapshot) throws IOException {
+		while (true) {
+			try {
+				return world.saveChunk(registry, cx, cy, snapshot).join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RejectedExecutionException && !world.getChunkIO().isClosed()) {
+					try {
+						Thread.sleep(RETRY_DELAY);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while saving!", ie);
+					}
+				} else if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else {
+					throw new IOException(cause);
+				}
+			}
+		}
+	}
+	
+	private void pause(long millis) {
+		synchronized (waitLock) {
+			try {
+				if (running)
+					waitLock.wait(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+		}
+	}
+	
+	public long getInterval() {
+		return interval;
+	}
+	
+	/**
+	 * Sets the time between autosaves. Takes effect after the current wait.
+	 *
+	 * @param interval The time between autosaves, in milliseconds.
+	 */
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+	
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+	
+	public void setBytesPerSecond(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+}
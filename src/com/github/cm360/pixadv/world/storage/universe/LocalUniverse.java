@@ -21,6 +21,7 @@ import com.google.gson.reflect.TypeToken;
 public class LocalUniverse extends Universe {
 
 	protected File saveDirectory;
+	protected Autosaver autosaver;
 	
 	public LocalUniverse(Registry registry, File directory) {
 		this(registry, directory, null);
@@ -29,6 +30,7 @@ public class LocalUniverse extends Universe {
 	public LocalUniverse(Registry registry, File directory, Supplier<UUID> playerIdSupplier) {
 		super(registry, playerIdSupplier);
 		setDirectory(directory);
+		autosaver = new Autosaver(this, registry);
 	}
 
 	public boolean load() {
@@ -57,11 +59,21 @@ public class LocalUniverse extends Universe {
 									if (worldInfoFile.exists()) {
 										try (FileReader worldInfoFileReader = new FileReader(worldInfoFile);) {
 											Map<String, String> worldInfo = gson.fromJson(worldInfoFileReader, TypeToken.getParameterized(HashMap.class, String.class, String.class).getType());
-											worlds.put(worldDir.getName(), new LocalWorld(
+											LocalWorld world = new LocalWorld(
 													Integer.parseInt(worldInfo.get("width")),
 													Integer.parseInt(worldInfo.get("height")),
 													Integer.parseInt(worldInfo.get("chunkSize")),
-													worldInfo, worldDir));
+													worldInfo, worldDir);
+											world.setRegistry(registry);
+											// Keep generating chunks which were not pregenerated
+											String seed = worldInfo.get("seed");
+											if (seed != null)
+												world.setGenerator(new BasicWorldGenerator(Long.parseLong(seed))
+														.setStages(registry.createGenerationStages())
+														.setWidth(world.getWidth())
+														.setHeight(world.getHeight())
+														.setChunkSize(world.getChunkSize()));
+											worlds.put(worldDir.getName(), world);
 										}
 									} else {
 										Logger.logMessage(Logger.ERROR, "The world '%s' from the save '%s' is missing an info.json file!", worldDir.getName(), getName());
@@ -75,8 +87,12 @@ public class LocalUniverse extends Universe {
 //										genWorld.createChunk(x / genWorld.getChunkSize(), 0);
 //									Logger.logMessage(Logger.DEBUG, "Placed tile? %s", genWorld.setTile(new Dirt(), x, (int) Math.round(genWorld.getChunkSize() * (SimplexNoise.noise(x / 50.0, 0) + 1) / 2), 0));
 //								}
-								World genWorld = new BasicWorldGenerator(new Random().nextLong()).generate();
+								World genWorld = new BasicWorldGenerator(new Random().nextLong())
+										.setStages(registry.createGenerationStages())
+										.createWorld();
+								genWorld.setRegistry(registry);
 								worlds.put("GENTEST", genWorld);
+								autosaver.start();
 								return true;
 							} else {
 								Logger.logMessage(Logger.ERROR, "The save '%s' is incompatible with the current registry!", getName());
@@ -95,8 +111,15 @@ public class LocalUniverse extends Universe {
 		return false;
 	}
 	
+	/**
+	 * Saves every modified chunk of this universe's worlds without throttling.
+	 */
 	public void save() {
-		
+		autosaver.save(false);
+	}
+	
+	public Autosaver getAutosaver() {
+		return autosaver;
 	}
 	
 	public File getDirectory() {
@@ -114,8 +137,9 @@ public class LocalUniverse extends Universe {
 	
 	@Override
 	public void close() {
+		autosaver.stop();
+		save();
 		super.close();
-		// TODO save worlds
 	}
 
 }
@@ -59,6 +59,10 @@ public abstract class Universe {
 		return info.getOrDefault("name", "Unnamed Universe");
 	}
 	
+	public Registry getRegistry() {
+		return registry;
+	}
+	
 	public CommandProcessor getCommandProcessor() {
 		return commandProcessor;
 	}
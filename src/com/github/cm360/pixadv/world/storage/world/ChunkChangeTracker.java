@@ -0,0 +1,118 @@
+package com.github.cm360.pixadv.world.storage.world;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks changes to the chunks of a world. Each chunk has a version number
+ * which increases whenever its contents change, so consumers such as the
+ * renderer and lighting engine can compare against the version they last
+ * processed, and a total version increases with every chunk's, so they can
+ * tell cheaply whether anything changed at all. A separate bitset marks chunks
+ * changed since they were last saved. Both are safe to update from any thread without locking.
+ */
+public class ChunkChangeTracker {
+
+	private final int height;
+	private final AtomicLongArray versions;
+	private final AtomicLong totalVersion;
+	private final AtomicLongArray dirty;
+	
+	public ChunkChangeTracker(int width, int height) {
+		this.height = height;
+		this.versions = new AtomicLongArray(width * height);
+		this.totalVersion = new AtomicLong();
+		this.dirty = new AtomicLongArray((width * height + 63) / 64);
+	}
+	
+	/**
+	 * Records that a chunk's tiles were changed. Increments its version and marks
+	 * it as needing to be saved.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 */
+	public void markChanged(int cx, int cy) {
+		int index = cx * height + cy;
+		versions.incrementAndGet(index);
+		totalVersion.incrementAndGet();
+		dirty.getAndAccumulate(index >>> 6, 1L << index, (word, bit) -> word | bit);
+	}
+	
+	/**
+	 * Records that a chunk was replaced, such as by loading it, without marking
+	 * it as needing to be saved.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 */
+	public void markReplaced(int cx, int cy) {
+		versions.incrementAndGet(cx * height + cy);
+		totalVersion.incrementAndGet();
+	}
+	
+	public long getVersion(int cx, int cy) {
+		return versions.get(cx * height + cy);
+	}
+	
+	/**
+	 * Gets a version which increases whenever any chunk's version does.
+	 *
+	 * @return The total version.
+	 */
+	public long getTotalVersion() {
+		return totalVersion.get();
+	}
+	
+	public boolean isDirty(int cx, int cy) {
+		int index = cx * height + cy;
+		return (dirty.get(index >>> 6) & (1L << index)) != 0;
+	}
+	
+	public void markDirty(int cx, int cy) {
+		int index = cx * height + cy;
+		dirty.getAndAccumulate(index >>> 6, 1L << index, (word, bit) -> word | bit);
+	}
+	
+	/**
+	 * Clears a chunk's dirty mark. Clear the mark before reading the chunk to
+	 * save it, so a change made during the save marks it dirty again.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return true, if the chunk was dirty.
+	 */
+	public boolean clearDirty(int cx, int cy) {
+		int index = cx * height + cy;
+		long bit = 1L << index;
+		return (dirty.getAndAccumulate(index >>> 6, ~bit, (word, mask) -> word & mask) & bit) != 0;
+	}
+	
+	/**
+	 * Finds the next dirty chunk, in order of cx * height + cy.
+	 *
+	 * @param fromIndex The chunk index to start searching from.
+	 * @return The index of the next dirty chunk, or -1 if there are none.
+	 */
+	public int nextDirty(int fromIndex) {
+		int word = fromIndex >>> 6;
+		if (word >= dirty.length())
+			return -1;
+		long bits = dirty.get(word) & (-1L << fromIndex);
+		while (bits == 0) {
+			if (++word >= dirty.length())
+				return -1;
+			bits = dirty.get(word);
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+	
+	public int getChunkX(int index) {
+		return index / height;
+	}
+	
+	public int getChunkY(int index) {
+		return index % height;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.github.cm360.pixadv.world.storage.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
+import com.github.cm360.pixadv.world.types.entities.Entity;
+
+/**
+ * Tracks when each chunk of a world was last used and picks which chunks to
+ * unload once more than a budget of chunks are resident. Chunks near the
+ * camera or any entity are pinned and never picked.
+ * <p>
+ * Chunks are touched when they are installed and once per frame while they are
+ * drawn, not on every tile access, so the shared clock stays off the paths the
+ * render, lighting and physics threads read tiles through.
+ */
+public class ChunkResidency {
+
+	public static final int DEFAULT_BUDGET = 256;
+	public static final int DEFAULT_PIN_RADIUS = 2;
+	
+	private final World world;
+	
+	/** The access clock value each chunk was last used at, indexed by cx * height + cy. */
+	private final long[] lastAccess;
+	
+	/** Incremented on every touch. */
+	private final AtomicLong clock;
+	
+	private int budget;
+	private int pinRadius;
+	
+	public ChunkResidency(World world) {
+		this.world = world;
+		this.lastAccess = new long[world.getWidth() * world.getHeight()];
+		this.clock = new AtomicLong();
+		this.budget = DEFAULT_BUDGET;
+		this.pinRadius = DEFAULT_PIN_RADIUS;
+	}
+	
+	/**
+	 * Marks a chunk as just used.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 */
+	public void touch(int cx, int cy) {
+		lastAccess[cx * world.getHeight() + cy] = clock.incrementAndGet();
+	}
+	
+	/**
+	 * Picks the least recently used unpinned chunks which need to be unloaded
+	 * to bring the world back within its budget.
+	 *
+	 * @return The chunks to unload, least recently used first.
+	 */
+	public List<HashablePoint> selectEvictions() {
+		int height = world.getHeight();
+		int loaded = world.getLoadedChunkCount();
+		List<HashablePoint> evictions = new ArrayList<HashablePoint>();
+		if (loaded <= budget)
+			return evictions;
+		// Gather the chunks everything of interest currently sits in
+		List<int[]> pins = new ArrayList<int[]>();
+		pins.add(chunkOf(world.getCameraX(), world.getCameraY()));
+		for (Entity entity : world.getEntities().values())
+			pins.add(chunkOf(entity.getX(), entity.getY()));
+		// Collect unpinned candidates, oldest first
+		List<HashablePoint> candidates = new ArrayList<HashablePoint>();
+		for (int cx = 0; cx < world.getWidth(); cx++)
+			for (int cy = 0; cy < height; cy++)
+				if (world.isChunkLoaded(cx, cy) && !isPinned(cx, cy, pins))
+					candidates.add(new HashablePoint(cx, cy));
+		candidates.sort((a, b) -> Long.compare(lastAccess[a.x * height + a.y], lastAccess[b.x * height + b.y]));
+		for (int i = 0; i < candidates.size() && evictions.size() < loaded - budget; i++)
+			evictions.add(candidates.get(i));
+		return evictions;
+	}
+	
+	private int[] chunkOf(double x, double y) {
+		int cx = Math.floorMod((int) Math.floor(x / world.getChunkSize()), world.getWidth());
+		int cy = (int) Math.floor(y / world.getChunkSize());
+		return new int[] { cx, cy };
+	}
+	
+	private boolean isPinned(int cx, int cy, List<int[]> pins) {
+		for (int[] pin : pins) {
+			// Worlds wrap horizontally, so measure X distance both ways around
+			int dx = Math.abs(cx - pin[0]);
+			dx = Math.min(dx, world.getWidth() - dx);
+			if (dx <= pinRadius && Math.abs(cy - pin[1]) <= pinRadius)
+				return true;
+		}
+		return false;
+	}
+	
+	public int getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Sets the number of chunks which may stay loaded before the least recently
+	 * used ones are unloaded. Pinned chunks may still exceed it.
+	 *
+	 * @param budget The maximum number of unpinned resident chunks.
+	 */
+	public void setBudget(int budget) {
+		this.budget = budget;
+	}
+	
+	public int getPinRadius() {
+		return pinRadius;
+	}
+	
+	public void setPinRadius(int pinRadius) {
+		this.pinRadius = pinRadius;
+	}
+
+}
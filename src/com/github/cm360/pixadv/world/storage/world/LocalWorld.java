@@ -1,57 +1,268 @@
 package com.github.cm360.pixadv.world.storage.world;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
 import com.github.cm360.pixadv.registry.Registry;
 import com.github.cm360.pixadv.util.Logger;
-import com.github.cm360.pixadv.world.io.ChunkReader;
+import com.github.cm360.pixadv.world.io.ChunkIOService;
+import com.github.cm360.pixadv.world.io.ChunkStorage;
+import com.github.cm360.pixadv.world.io.FileChunkStorage;
+import com.github.cm360.pixadv.world.io.RegionChunkStorage;
 import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator;
 
 public class LocalWorld extends World {
 
 	protected File saveDirectory;
+	protected ChunkStorage chunkStorage;
+	protected ChunkIOService chunkIO;
+	protected WorldGenerator generator;
 	
 	public LocalWorld(int width, int height, int chunkSize, Map<String, String> info, File directory) {
 		super(width, height, chunkSize, info);
+		chunkIO = new ChunkIOService(getName());
 		setDirectory(directory);
 	}
 	
 	@Override
 	public boolean loadChunk(Registry registry, int cx, int cy) {
 		try {
-			// Load chunk
-			File chunkFile = new File(String.format("%s/chunks/%d_%d.pachunk", saveDirectory, cx, cy).replace('/', File.separatorChar));
-			chunks[cx][cy] = new ChunkReader(registry, chunkSize).read(chunkFile);
-			chunkUpdates.add(new HashablePoint(cx, cy));
+			requestChunk(registry, cx, cy).join();
 			return true;
-		} catch (Exception e) {
-			if (e.getClass().equals(FileNotFoundException.class)) {
-				Logger.logMessage(Logger.WARNING, "Creating empty chunk at %d,%d", cx, cy);
-				chunks[cx][cy] = new Chunk(chunkSize);
-				chunkUpdates.add(new HashablePoint(cx, cy));
-				return true;
+		} catch (CompletionException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Loads a chunk on this world's I/O threads. Requests for a chunk which is
+	 * already being loaded share the same future.
+	 *
+	 * @param registry The registry used to resolve saved tiles.
+	 * @param cx       The chunk's X coordinate.
+	 * @param cy       The chunk's Y coordinate.
+	 * @return A future completed once the chunk has been installed.
+	 */
+	public CompletableFuture<Chunk> requestChunk(Registry registry, int cx, int cy) {
+		return chunkIO.load(cx, cy, (x, y) -> {
+			try {
+				Chunk chunk = readChunk(registry, x, y);
+				installChunk(x, y, chunk);
+				return chunk;
+			} catch (IOException | RuntimeException e) {
+				Logger.logException("Failed to load chunk %d,%d!", e, x, y);
+				throw e;
+			}
+		});
+	}
+	
+	protected Chunk readChunk(Registry registry, int cx, int cy) throws IOException {
+		// Load chunk from storage if it has been saved
+		ChunkStorage storage = getChunkStorage(registry);
+		Chunk chunk = (storage == null) ? null : storage.read(cx, cy);
+		if (chunk == null) {
+			if (generator != null) {
+				// Generated chunks can be reproduced, so they are not saved until modified
+				chunk = generator.generateChunk(cx, cy);
 			} else {
-				Logger.logException("Failed to load chunk %d,%d!", e, cx, cy);
+				Logger.logMessage(Logger.WARNING, "Creating empty chunk at %d,%d", cx, cy);
+				chunk = new Chunk(chunkSize);
 			}
 		}
-		return false;
+		return chunk;
 	}
 	
+	protected void installChunk(int cx, int cy, Chunk chunk) {
+		synchronized (this) {
+			// Keep a chunk which was created or loaded some other way in the meantime
+			if (chunks[cx][cy] != null)
+				return;
+			chunks[cx][cy] = chunk;
+			residency.touch(cx, cy);
+			chunkChanges.markReplaced(cx, cy);
+		}
+		evictChunks();
+	}
+	
+	/**
+	 * Unloads a chunk. A chunk which changed since it was last saved is not
+	 * dropped straight away: its write is queued on this world's I/O threads,
+	 * and the chunk is dropped once the write completes, unless it changed or
+	 * was replaced meanwhile. Unloading never waits for disk I/O.
+	 *
+	 * @return true, if the chunk is no longer loaded.
+	 */
 	@Override
 	public boolean unloadChunk(int cx, int cy) {
-		// Save chunk
-		return true;
+		Chunk chunk;
+		Chunk snapshot;
+		ChunkStorage storage;
+		synchronized (this) {
+			chunk = chunks[cx][cy];
+			if (chunk == null)
+				return true;
+			// Already being written back
+			if (chunkIO.isSaving(cx, cy))
+				return false;
+			if (!chunkChanges.isDirty(cx, cy)) {
+				chunks[cx][cy] = null;
+				return true;
+			}
+			if (chunkStorage == null) {
+				Logger.logMessage(Logger.WARNING, "Chunk %d,%d has nowhere to be saved, keeping it loaded", cx, cy);
+				return false;
+			}
+			storage = chunkStorage;
+			// Clear first, so changes made during the write mark it dirty again
+			chunkChanges.clearDirty(cx, cy);
+			snapshot = chunk.snapshot();
+		}
+		// Write back changes before dropping the chunk
+		chunkIO.save(cx, cy, snapshot, storage::write).whenComplete((bytes, e) -> {
+			if (e != null) {
+				chunkChanges.markDirty(cx, cy);
+				if (e instanceof Exception && !(e instanceof RejectedExecutionException))
+					Logger.logException("Failed to save chunk %d,%d!", (Exception) e, cx, cy);
+				return;
+			}
+			synchronized (this) {
+				if (chunks[cx][cy] == chunk && !chunkChanges.isDirty(cx, cy) && !chunkIO.isSaving(cx, cy))
+					chunks[cx][cy] = null;
+			}
+		});
+		return false;
+	}
+	
+	/**
+	 * Unloads the least recently used chunks until this world is back within
+	 * its residency budget. Chunks are picked while holding this world's lock.
+	 * Unchanged chunks are dropped immediately, while changed ones are dropped
+	 * once their queued writes complete, so the world may stay over budget
+	 * until then.
+	 */
+	public void evictChunks() {
+		List<HashablePoint> evictions;
+		synchronized (this) {
+			evictions = residency.selectEvictions();
+		}
+		int unloaded = 0;
+		for (HashablePoint chunk : evictions)
+			if (unloadChunk(chunk.x, chunk.y))
+				unloaded++;
+		if (unloaded > 0)
+			Logger.logMessage(Logger.DEBUG, "Unloaded %d least recently used chunks from '%s'", unloaded, getName());
+	}
+	
+	/**
+	 * Takes copy-on-write snapshots of every loaded chunk which changed since it
+	 * was last saved. The snapshots are taken between physics ticks.
+	 *
+	 * @return The snapshots, keyed by chunk coordinates.
+	 */
+	public Map<HashablePoint, Chunk> snapshotModifiedChunks() {
+		return callBetweenTicks(() -> {
+			Map<HashablePoint, Chunk> snapshots = new LinkedHashMap<HashablePoint, Chunk>();
+			for (int i = chunkChanges.nextDirty(0); i >= 0; i = chunkChanges.nextDirty(i + 1)) {
+				int cx = chunkChanges.getChunkX(i);
+				int cy = chunkChanges.getChunkY(i);
+				Chunk chunk = chunks[cx][cy];
+				// Clear first, so changes made after the snapshot mark it dirty again
+				if (chunk != null && chunkChanges.clearDirty(cx, cy))
+					snapshots.put(new HashablePoint(cx, cy), chunk.snapshot());
+			}
+			return snapshots;
+		});
+	}
+	
+	/**
+	 * Queues a chunk snapshot to be written on this world's I/O threads. If the
+	 * write fails or is rejected, the loaded chunk is marked dirty again so it is
+	 * retried by the next save.
+	 *
+	 * @param registry The registry used to resolve saved tiles.
+	 * @param cx       The chunk's X coordinate.
+	 * @param cy       The chunk's Y coordinate.
+	 * @param snapshot The snapshot to write.
+	 * @return A future completed with the number of bytes written.
+	 */
+	public CompletableFuture<Integer> saveChunk(Registry registry, int cx, int cy, Chunk snapshot) {
+		ChunkStorage storage = getChunkStorage(registry);
+		CompletableFuture<Integer> future = (storage == null)
+				? CompletableFuture.failedFuture(new IOException("The world '%s' has no save directory!".formatted(getName())))
+				: chunkIO.save(cx, cy, snapshot, storage::write);
+		return future.whenComplete((bytes, e) -> {
+			if (e != null)
+				chunkChanges.markDirty(cx, cy);
+		});
+	}
+	
+	/**
+	 * Gets the storage this world's chunks are saved in, opening it if needed.
+	 *
+	 * @param registry The registry used to resolve saved tiles.
+	 * @return The chunk storage, or null if this world has no save directory.
+	 */
+	protected synchronized ChunkStorage getChunkStorage(Registry registry) {
+		if (chunkStorage == null && saveDirectory != null) {
+			// Region files first, falling back to files saved one per chunk
+			ChunkStorage fileStorage = new FileChunkStorage(registry, new File(saveDirectory, "chunks"), chunkSize);
+			chunkStorage = new RegionChunkStorage(registry, new File(saveDirectory, "regions"), chunkSize, fileStorage);
+		}
+		return chunkStorage;
+	}
+	
+	public WorldGenerator getGenerator() {
+		return generator;
+	}
+	
+	/**
+	 * Sets the generator used for chunks which have not been saved yet.
+	 *
+	 * @param generator The generator, or null to create empty chunks.
+	 */
+	public void setGenerator(WorldGenerator generator) {
+		this.generator = generator;
+	}
+	
+	public ChunkIOService getChunkIO() {
+		return chunkIO;
 	}
 	
 	public File getDirectory() {
 		return saveDirectory;
 	}
 	
-	public void setDirectory(File newDirectory) {
+	public synchronized void setDirectory(File newDirectory) {
+		closeChunkStorage();
 		saveDirectory = newDirectory;
 	}
+	
+	private void closeChunkStorage() {
+		if (chunkStorage != null) {
+			try {
+				chunkStorage.close();
+			} catch (IOException e) {
+				Logger.logException("Failed to close chunk storage for '%s'!", e, getName());
+			}
+			chunkStorage = null;
+		}
+	}
+	
+	@Override
+	public void close() {
+		super.close();
+		chunkIO.close();
+		synchronized (this) {
+			closeChunkStorage();
+		}
+	}
 
 }
@@ -0,0 +1,80 @@
+package com.github.cm360.pixadv.world.storage.world;
+
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.types.tiles.Tile;
+
+/**
+ * A reusable buffer holding every layer of a rectangle of tiles, filled from a
+ * world in one pass over the chunks it covers.
+ */
+public class TileRegion {
+
+	private final int width;
+	private final int height;
+	private final Tile[][] layers;
+	private int x;
+	private int y;
+	
+	public TileRegion(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.layers = new Tile[Chunk.LAYERS][width * height];
+	}
+	
+	/**
+	 * Fills this region with the tiles of a world.
+	 *
+	 * @param world The world to read from.
+	 * @param x     The X coordinate of the region's bottom left tile.
+	 * @param y     The Y coordinate of the region's bottom left tile.
+	 */
+	public void read(World world, int x, int y) {
+		this.x = x;
+		this.y = y;
+		for (int l = 0; l < layers.length; l++)
+			world.readTiles(x, y, width, height, l, layers[l], 0);
+	}
+	
+	/**
+	 * Writes this region's tiles back to the position they were last read from.
+	 *
+	 * @param world The world to write to.
+	 * @return The number of tiles placed.
+	 */
+	public int write(World world) {
+		int placed = 0;
+		for (int l = 0; l < layers.length; l++)
+			placed += world.writeTiles(x, y, width, height, l, layers[l], 0);
+		return placed;
+	}
+	
+	public Tile get(int dx, int dy, int layer) {
+		return layers[layer][dy * width + dx];
+	}
+	
+	public void set(Tile tile, int dx, int dy, int layer) {
+		layers[layer][dy * width + dx] = tile;
+	}
+	
+	public int getX() {
+		return x;
+	}
+	
+	public int getY() {
+		return y;
+	}
+	
+	public void setPosition(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+
+}
@@ -1,20 +1,30 @@
 package com.github.cm360.pixadv.world.storage.world;
 
 import java.awt.Point;
+import java.awt.geom.Point2D;
 import java.util.ArrayDeque;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import com.github.cm360.pixadv.graphics.edison.Edison;
-import com.github.cm360.pixadv.graphics.picasso.HashablePoint;
 import com.github.cm360.pixadv.registry.Registry;
-import com.github.cm360.pixadv.util.Logger;
 import com.github.cm360.pixadv.world.newton.Newton;
+import com.github.cm360.pixadv.world.newton.TickScheduler;
 import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.types.entities.AbstractEntity;
 import com.github.cm360.pixadv.world.types.entities.Entity;
+import com.github.cm360.pixadv.world.types.entities.EntityStore;
 import com.github.cm360.pixadv.world.types.tiles.Tile;
 
 public abstract class World {
@@ -26,13 +36,17 @@ public abstract class World {
 	protected int chunkSize;
 	protected double gravity = 9.8;
 	protected Chunk[][] chunks;
-	protected Queue<HashablePoint> chunkUpdates;
+	protected ChunkChangeTracker chunkChanges;
+	protected ChunkResidency residency;
 	
 	protected Newton newton;
-	protected Thread physicsThread;
+	protected TickScheduler physicsScheduler;
 	protected int physicsTickTimesQueueSize = 200;
 	protected Queue<Long> physicsTickTimes;
+	protected Queue<Runnable> tickBoundaryTasks;
 	protected Map<UUID, Entity> entities;
+	protected EntityStore entityStore;
+	protected Registry registry;
 	
 	protected Edison edison;
 	
@@ -47,86 +61,240 @@ public abstract class World {
 		this.chunkSize = chunkSize;
 		this.info = info;
 		chunks = new Chunk[width][height];
-		entities = new HashMap<UUID, Entity>();
-		chunkUpdates = new ConcurrentLinkedQueue<HashablePoint>();
+		entities = new ConcurrentHashMap<UUID, Entity>();
+		entityStore = new EntityStore();
+		chunkChanges = new ChunkChangeTracker(width, height);
+		residency = new ChunkResidency(this);
 		paused = false;
 		// Start physics engine
 		newton = new Newton(this);
 		physicsTickTimes = new ArrayDeque<Long>(physicsTickTimesQueueSize);
-		physicsThread = new Thread(() -> {
-			while (!Thread.interrupted()) {
-				// Pause if needed
-				if (paused) {
-					try {
-						wait();
-					} catch (InterruptedException e) {
-						break;
-					}
-				}
-				// Tick physics
-				long tickTime = newton.tick();
-				synchronized (physicsTickTimes) {
-					while (physicsTickTimes.size() >= physicsTickTimesQueueSize)
-						physicsTickTimes.remove();
-					physicsTickTimes.add(tickTime);
-				}
+		tickBoundaryTasks = new ConcurrentLinkedQueue<Runnable>();
+		physicsScheduler = new TickScheduler("Physics-%s".formatted(getName()), TickScheduler.DEFAULT_TICK_RATE, () -> {
+			// Tick physics
+			long tickTime = newton.tick(physicsScheduler.getTickSeconds());
+			synchronized (physicsTickTimes) {
+				while (physicsTickTimes.size() >= physicsTickTimesQueueSize)
+					physicsTickTimes.remove();
+				physicsTickTimes.add(tickTime);
 			}
-			Logger.logMessage(Logger.DEBUG, "Stopped physics engine");
-		}, "Physics-%s".formatted(getName()));
-		physicsThread.start();
+			// Run tasks waiting for a tick boundary
+			Runnable task;
+			while ((task = tickBoundaryTasks.poll()) != null)
+				task.run();
+		});
+		physicsScheduler.start();
 		// Start lighting engine
 		edison = new Edison(this);
 	}
 	
+	/**
+	 * Gets a tile. The X coordinate wraps around the world's width.
+	 *
+	 * @param x     The tile's X coordinate.
+	 * @param y     The tile's Y coordinate.
+	 * @param layer The layer to read.
+	 * @return The tile, or null for air, a Y coordinate outside the world or an
+	 *         unloaded chunk.
+	 */
 	public Tile getTile(int x, int y, int layer) {
-		Point chunk = getChunkOf(x, y);
-		Point coord = getChunkCoordOf(x, y);
+		if (y < 0 || y >= height * chunkSize)
+			return null;
+		int wx = wrapX(x);
+		int cx = wx / chunkSize;
+		int cy = y / chunkSize;
 		// TODO request unloaded chunk
-		if (isChunkLoaded(chunk.x, chunk.y))
-			return chunks[chunk.x][chunk.y].getTile(coord.x, coord.y, layer);
-		else
+		Chunk loaded = chunks[cx][cy];
+		if (loaded != null) {
+			return loaded.getTile(wx - cx * chunkSize, y - cy * chunkSize, layer);
+		} else {
 			return null;
+		}
 	}
 	
+	/**
+	 * Sets a tile. The X coordinate wraps around the world's width.
+	 *
+	 * @param tile  The tile to place, or null for air.
+	 * @param x     The tile's X coordinate.
+	 * @param y     The tile's Y coordinate.
+	 * @param layer The layer to write.
+	 * @return true, if the tile was placed in a loaded chunk.
+	 */
 	public boolean setTile(Tile tile, int x, int y, int layer) {
-		HashablePoint chunk = new HashablePoint(getChunkOf(x, y));
-		Point coord = getChunkCoordOf(x, y);
+		if (y < 0 || y >= height * chunkSize)
+			return false;
+		int wx = wrapX(x);
+		int cx = wx / chunkSize;
+		int cy = y / chunkSize;
 		// TODO request unloaded chunk
-		if (isChunkLoaded(chunk.x, chunk.y)) {
-			chunks[chunk.x][chunk.y].setTile(tile, coord.x, coord.y, layer);
-			if (!chunkUpdates.contains(chunk))
-				chunkUpdates.add(chunk);
+		Chunk loaded = chunks[cx][cy];
+		if (loaded != null) {
+			loaded.setTile(tile, wx - cx * chunkSize, y - cy * chunkSize, layer);
+			chunkChanges.markChanged(cx, cy);
 			return true;
 		} else {
 			return false;
 		}
 	}
 	
+	/**
+	 * Copies a rectangle of tiles from one layer into an array, visiting each
+	 * chunk the rectangle overlaps once. Tiles in unloaded chunks or outside the
+	 * world vertically are read as null.
+	 *
+	 * @param x      The X coordinate of the rectangle's bottom left tile.
+	 * @param y      The Y coordinate of the rectangle's bottom left tile.
+	 * @param w      The rectangle's width.
+	 * @param h      The rectangle's height.
+	 * @param layer  The layer to read.
+	 * @param out    The array to fill, indexed by row * w + column.
+	 * @param offset The index in the array of the first tile.
+	 */
+	public void readTiles(int x, int y, int w, int h, int layer, Tile[] out, int offset) {
+		for (int row = 0; row < h; ) {
+			int ty = y + row;
+			int cy = Math.floorDiv(ty, chunkSize);
+			int ly = ty - cy * chunkSize;
+			int rows = Math.min(h - row, chunkSize - ly);
+			for (int column = 0; column < w; ) {
+				int wx = wrapX(x + column);
+				int cx = wx / chunkSize;
+				int lx = wx - cx * chunkSize;
+				int columns = Math.min(w - column, chunkSize - lx);
+				Chunk chunk = (cy >= 0 && cy < height) ? chunks[cx][cy] : null;
+				for (int r = 0; r < rows; r++) {
+					int index = offset + (row + r) * w + column;
+					for (int c = 0; c < columns; c++)
+						out[index + c] = (chunk == null) ? null : chunk.getTile(lx + c, ly + r, layer);
+				}
+				column += columns;
+			}
+			row += rows;
+		}
+	}
+	
+	/**
+	 * Copies an array of tiles into a rectangle of one layer, visiting each chunk
+	 * the rectangle overlaps once. Tiles falling in unloaded chunks or outside
+	 * the world vertically are skipped.
+	 *
+	 * @param x      The X coordinate of the rectangle's bottom left tile.
+	 * @param y      The Y coordinate of the rectangle's bottom left tile.
+	 * @param w      The rectangle's width.
+	 * @param h      The rectangle's height.
+	 * @param layer  The layer to write.
+	 * @param in     The tiles to place, indexed by row * w + column.
+	 * @param offset The index in the array of the first tile.
+	 * @return The number of tiles placed.
+	 */
+	public int writeTiles(int x, int y, int w, int h, int layer, Tile[] in, int offset) {
+		int placed = 0;
+		for (int row = 0; row < h; ) {
+			int ty = y + row;
+			int cy = Math.floorDiv(ty, chunkSize);
+			int ly = ty - cy * chunkSize;
+			int rows = Math.min(h - row, chunkSize - ly);
+			for (int column = 0; column < w; ) {
+				int wx = wrapX(x + column);
+				int cx = wx / chunkSize;
+				int lx = wx - cx * chunkSize;
+				int columns = Math.min(w - column, chunkSize - lx);
+				Chunk chunk = (cy >= 0 && cy < height) ? chunks[cx][cy] : null;
+				if (chunk != null) {
+					synchronized (chunk) {
+						for (int r = 0; r < rows; r++) {
+							int index = offset + (row + r) * w + column;
+							for (int c = 0; c < columns; c++)
+								chunk.setTile(in[index + c], lx + c, ly + r, layer);
+						}
+					}
+					chunkChanges.markChanged(cx, cy);
+					placed += rows * columns;
+				}
+				column += columns;
+			}
+			row += rows;
+		}
+		return placed;
+	}
+	
+	/**
+	 * Checks whether any tile in a rectangle of the collision layer is solid,
+	 * testing each chunk the rectangle overlaps against its solid cell mask.
+	 * Tiles in unloaded chunks or outside the world vertically are not solid.
+	 *
+	 * @param minX The X coordinate of the rectangle's left column.
+	 * @param minY The Y coordinate of the rectangle's bottom row.
+	 * @param maxX The X coordinate of the rectangle's right column, inclusive.
+	 * @param maxY The Y coordinate of the rectangle's top row, inclusive.
+	 * @return true, if any tile in the rectangle is solid.
+	 */
+	public boolean isAreaSolid(int minX, int minY, int maxX, int maxY) {
+		minY = Math.max(minY, 0);
+		maxY = Math.min(maxY, height * chunkSize - 1);
+		for (int y = minY; y <= maxY; ) {
+			int cy = y / chunkSize;
+			int ly = y - cy * chunkSize;
+			int rows = Math.min(maxY - y + 1, chunkSize - ly);
+			for (int x = minX; x <= maxX; ) {
+				int wx = wrapX(x);
+				int cx = wx / chunkSize;
+				int lx = wx - cx * chunkSize;
+				int columns = Math.min(maxX - x + 1, chunkSize - lx);
+				Chunk chunk = chunks[cx][cy];
+				if (chunk != null && chunk.isAreaSolid(lx, ly, lx + columns - 1, ly + rows - 1))
+					return true;
+				x += columns;
+			}
+			y += rows;
+		}
+		return false;
+	}
+	
+	/**
+	 * Wraps a tile X coordinate around the world's width.
+	 *
+	 * @param x The tile X coordinate, possibly outside the world.
+	 * @return The equivalent coordinate within the world.
+	 */
+	public int wrapX(int x) {
+		return Math.floorMod(x, width * chunkSize);
+	}
+	
 	public Point correctCoord(int x, int y) {
-		int xNew = x;
-		int worldWidthTiles = getWidth() * chunkSize;
-		if (x < 0)
-			while (xNew < 0)
-				xNew += worldWidthTiles;
-		else if (x >= worldWidthTiles)
-			while (xNew >= worldWidthTiles)
-				xNew -= worldWidthTiles;
-		return new Point(xNew, y);
+		return new Point(wrapX(x), y);
 	}
 	
 	public Point correctChunkCoord(int cx, int cy) {
-		int cxNew = cx;
-		if (cx < 0)
-			while (cxNew < 0)
-				cxNew += getWidth();
-		else if (cx >= getWidth())
-			while (cxNew >= getWidth())
-				cxNew -= getWidth();
-		return new Point(cxNew, cy);
+		return new Point(wrapChunkX(cx), cy);
+	}
+	
+	/**
+	 * Wraps a chunk X coordinate around the world's width.
+	 *
+	 * @param cx The chunk X coordinate, possibly outside the world.
+	 * @return The equivalent coordinate within the world.
+	 */
+	public int wrapChunkX(int cx) {
+		return Math.floorMod(cx, width);
 	}
 	
 	public void createChunk(int cx, int cy) {
-		chunks[cx][cy] = new Chunk(chunkSize);
+		setChunk(cx, cy, new Chunk(chunkSize));
+	}
+	
+	/**
+	 * Places a chunk in this world, replacing any chunk already loaded there. The
+	 * chunk is marked as changed, so it is saved with the next autosave.
+	 *
+	 * @param cx    The chunk's X coordinate.
+	 * @param cy    The chunk's Y coordinate.
+	 * @param chunk The chunk to place.
+	 */
+	public void setChunk(int cx, int cy, Chunk chunk) {
+		chunks[cx][cy] = chunk;
+		chunkChanges.markChanged(cx, cy);
 	}
 	
 	public abstract boolean loadChunk(Registry registry, int cx, int cy);
@@ -138,41 +306,190 @@ public abstract class World {
 	}
 	
 	public Point getChunkOf(int x, int y) {
-		return new Point(x / chunkSize, y / chunkSize);
+		return new Point(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize));
 	}
 	
 	public Point getChunkCoordOf(int x, int y) {
-		return new Point(x % chunkSize, y % chunkSize);
+		return new Point(Math.floorMod(x, chunkSize), Math.floorMod(y, chunkSize));
 	}
 	
 	public boolean isTileLoaded(int x, int y) {
-		Point tileCoords = getChunkOf(x, y);
-		return isChunkLoaded(tileCoords.x, tileCoords.y);
+		if (y < 0 || y >= height * chunkSize)
+			return false;
+		return isChunkLoaded(wrapX(x) / chunkSize, y / chunkSize);
 	}
 	
 	public boolean isChunkLoaded(int cx, int cy) {
 		return chunks[cx][cy] != null;
 	}
 	
-	public Queue<HashablePoint> getChunkUpdates() {
-		return chunkUpdates;
+	public int getLoadedChunkCount() {
+		int loaded = 0;
+		for (int cx = 0; cx < width; cx++)
+			for (int cy = 0; cy < height; cy++)
+				if (chunks[cx][cy] != null)
+					loaded++;
+		return loaded;
+	}
+	
+	/**
+	 * Estimates the heap used by the tile storage of all loaded chunks.
+	 *
+	 * @return The estimated size in bytes.
+	 */
+	public long getChunkMemoryUsage() {
+		long usage = 0;
+		for (int cx = 0; cx < width; cx++)
+			for (int cy = 0; cy < height; cy++)
+				if (chunks[cx][cy] != null)
+					usage += chunks[cx][cy].getMemoryUsage();
+		return usage;
+	}
+	
+	public ChunkResidency getChunkResidency() {
+		return residency;
+	}
+	
+	public ChunkChangeTracker getChunkChanges() {
+		return chunkChanges;
+	}
+	
+	/**
+	 * Gets a chunk's version number, which increases whenever the chunk changes.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return The chunk's current version.
+	 */
+	public long getChunkVersion(int cx, int cy) {
+		return chunkChanges.getVersion(cx, cy);
 	}
 	
+	/**
+	 * Gets the world's entities. Use {@link #addEntity(UUID, Entity)} and
+	 * {@link #removeEntity(UUID)} to change them, which keep the
+	 * {@link EntityStore} in step.
+	 *
+	 * @return An unmodifiable view of the entities, keyed by UUID.
+	 */
 	public Map<UUID, Entity> getEntities() {
-		return entities;
+		return Collections.unmodifiableMap(entities);
 	}
 	
 	public Entity getEntity(UUID uuid) {
 		return entities.get(uuid);
 	}
 	
+	public EntityStore getEntityStore() {
+		return entityStore;
+	}
+	
+	/**
+	 * Adds an entity to this world, replacing any entity with the same UUID.
+	 *
+	 * @param uuid   The entity's UUID.
+	 * @param entity The entity to add.
+	 * @throws IllegalArgumentException If the entity does not extend {@link AbstractEntity}.
+	 */
 	public void addEntity(UUID uuid, Entity entity) {
+		if (!(entity instanceof AbstractEntity))
+			throw new IllegalArgumentException("Entities must extend AbstractEntity to be stored in a world!");
 		entity.setY(getHeight() / 3.0 * getChunkSize());
-		entities.put(uuid, entity);
+		putEntity(uuid, entity);
+	}
+	
+	private void putEntity(UUID uuid, Entity entity) {
+		synchronized (entityStore) {
+			Entity previous = entities.put(uuid, entity);
+			if (previous != null)
+				entityStore.remove((AbstractEntity) previous);
+			entityStore.add(uuid, (AbstractEntity) entity);
+		}
 	}
 	
 	public Entity removeEntity(UUID uuid) {
-		return entities.remove(uuid);
+		synchronized (entityStore) {
+			Entity entity = entities.remove(uuid);
+			if (entity != null)
+				entityStore.remove((AbstractEntity) entity);
+			return entity;
+		}
+	}
+	
+	/**
+	 * Freezes an entity by moving it out of the world and into the chunk it is
+	 * in, which is marked dirty so the entity is saved along with it. A frozen
+	 * entity is not ticked until {@link #thawEntities(int, int)} brings it back.
+	 * Only entities whose type is registered can be frozen, as any other entity
+	 * would be lost once its chunk is saved and unloaded.
+	 *
+	 * @param uuid The entity's UUID.
+	 * @return true, if the entity was frozen, or false if it is not in this
+	 *         world, it cannot be saved with this world's registry or its chunk
+	 *         is not loaded.
+	 */
+	public boolean freezeEntity(UUID uuid) {
+		synchronized (entityStore) {
+			Entity entity = entities.get(uuid);
+			if (entity == null || registry == null || registry.getEntityId(entity) == null)
+				return false;
+			int cx = Math.floorMod((int) Math.floor(entity.getX() / chunkSize), width);
+			int cy = Math.max(0, Math.min(height - 1, (int) Math.floor(entity.getY() / chunkSize)));
+			// Chunks are unloaded under this world's lock, so hold it until the chunk is dirty
+			synchronized (this) {
+				Chunk chunk = chunks[cx][cy];
+				if (chunk == null)
+					return false;
+				entities.remove(uuid);
+				entityStore.remove((AbstractEntity) entity);
+				chunk.addEntity(uuid, entity);
+				chunkChanges.markDirty(cx, cy);
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Brings back every entity frozen in a chunk, in the state it was frozen in.
+	 * Entities whose UUID is already in use in the world are dropped.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return The number of entities brought back.
+	 */
+	public int thawEntities(int cx, int cy) {
+		int thawed = 0;
+		synchronized (entityStore) {
+			Map<UUID, Entity> frozen;
+			synchronized (this) {
+				Chunk chunk = chunks[cx][cy];
+				if (chunk == null || !chunk.hasEntities())
+					return 0;
+				frozen = chunk.removeEntities();
+				chunkChanges.markDirty(cx, cy);
+			}
+			for (Map.Entry<UUID, Entity> entry : frozen.entrySet()) {
+				if (entities.containsKey(entry.getKey()) || !(entry.getValue() instanceof AbstractEntity))
+					continue;
+				putEntity(entry.getKey(), entry.getValue());
+				thawed++;
+			}
+		}
+		return thawed;
+	}
+	
+	public Registry getRegistry() {
+		return registry;
+	}
+	
+	/**
+	 * Sets the registry this world's entities are saved with. Without one, no
+	 * entity is ever frozen.
+	 *
+	 * @param registry The registry, or null.
+	 */
+	public void setRegistry(Registry registry) {
+		this.registry = registry;
 	}
 	
 	public String getInfo(String key) {
@@ -219,12 +536,63 @@ public abstract class World {
 		return newton;
 	}
 	
+	public TickScheduler getPhysicsScheduler() {
+		return physicsScheduler;
+	}
+	
+	/**
+	 * Gets where each entity should be drawn, interpolated between the last two
+	 * physics ticks by how much time has passed since the last one.
+	 *
+	 * @return The positions, keyed by entity UUID.
+	 */
+	public Map<UUID, Point2D.Double> getInterpolatedEntityPositions() {
+		return newton.getInterpolatedPositions(physicsScheduler.getAlpha());
+	}
+	
 	public Long[] getPhysicsTickTimes() {
 		synchronized (physicsTickTimes) {
 			return physicsTickTimes.toArray(size -> new Long[size]);
 		}
 	}
 	
+	/**
+	 * Runs a task on the physics thread between two ticks and waits for its
+	 * result. If the physics thread is not running, or does not get to the task
+	 * in time, the task runs on the calling thread instead.
+	 *
+	 * @param <T>  The type of the task's result.
+	 * @param task The task to run.
+	 * @return The task's result.
+	 */
+	public <T> T callBetweenTicks(Supplier<T> task) {
+		if (!physicsScheduler.isRunning() || paused || physicsScheduler.isSchedulerThread())
+			return task.get();
+		// Whichever thread claims the task first runs it
+		AtomicBoolean claimed = new AtomicBoolean();
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		tickBoundaryTasks.add(() -> {
+			if (claimed.compareAndSet(false, true)) {
+				try {
+					result.complete(task.get());
+				} catch (RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+		try {
+			return result.get(1, TimeUnit.SECONDS);
+		} catch (TimeoutException | InterruptedException e) {
+			if (e instanceof InterruptedException)
+				Thread.currentThread().interrupt();
+			if (claimed.compareAndSet(false, true))
+				return task.get();
+			return result.join();
+		} catch (ExecutionException e) {
+			throw new CompletionException(e.getCause());
+		}
+	}
+	
 	public Edison getLightingEngine() {
 		return edison;
 	}
@@ -235,11 +603,12 @@ public abstract class World {
 	
 	public void setPaused(boolean paused) {
 		this.paused = paused;
-		notifyAll();
+		physicsScheduler.setPaused(paused);
 	}
 	
 	public void close() {
-		physicsThread.interrupt();
+		physicsScheduler.stop();
+		newton.setParallelism(1);
 	}
 
 }
@@ -1,5 +1,13 @@
 package com.github.cm360.pixadv.world.types.entities;
 
+/**
+ * A base for entities. While an entity is in a world, its position, motion,
+ * size and flags live in the world's {@link EntityStore} and the fields below
+ * only hold them while the entity is outside of one. Size, mass and
+ * collidability are copied into the store when the entity is added, so set
+ * them in the constructor. Setting an entity's position, motion or clipping
+ * wakes it if it is sleeping.
+ */
 public abstract class AbstractEntity implements Entity {
 
 	protected double width = 1;
@@ -16,104 +24,203 @@ public abstract class AbstractEntity implements Entity {
 	protected boolean gravityAffected = true;
 	protected boolean onGround = false;
 	protected double lastGroundTime;
+	
+	/** The store holding this entity's state, or null if it is not in one. */
+	EntityStore store;
+	
+	/** This entity's slot in {@link #store}. */
+	int slot = -1;
 
 	@Override
 	public double getWidth() {
-		return width;
+		EntityStore store = this.store;
+		return (store == null) ? width : store.widths[slot];
 	}
 
 	@Override
 	public double getHeight() {
-		return height;
+		EntityStore store = this.store;
+		return (store == null) ? height : store.heights[slot];
 	}
 	
 	@Override
 	public double getMass() {
-		return mass;
+		EntityStore store = this.store;
+		return (store == null) ? mass : store.masses[slot];
 	}
 	
 	@Override
 	public double getCollidability() {
-		return collidability;
+		EntityStore store = this.store;
+		return (store == null) ? collidability : store.collidabilities[slot];
 	}
 
 	@Override
 	public double getX() {
-		return x;
+		EntityStore store = this.store;
+		return (store == null) ? x : store.xs[slot];
 	}
 
 	@Override
 	public void setX(double x) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.xs[slot] = x;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.x = x;
 	}
 
 	@Override
 	public double getY() {
-		return y;
+		EntityStore store = this.store;
+		return (store == null) ? y : store.ys[slot];
 	}
 
 	@Override
 	public void setY(double y) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.ys[slot] = y;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.y = y;
 	}
 
 	@Override
 	public double getXVel() {
-		return xVel;
+		EntityStore store = this.store;
+		return (store == null) ? xVel : store.xVels[slot];
 	}
 
 	@Override
 	public void setXVel(double xVel) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.xVels[slot] = xVel;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.xVel = xVel;
 	}
 
 	@Override
 	public double getYVel() {
-		return yVel;
+		EntityStore store = this.store;
+		return (store == null) ? yVel : store.yVels[slot];
 	}
 
 	@Override
 	public void setYVel(double yVel) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.yVels[slot] = yVel;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.yVel = yVel;
 	}
 	
 	@Override
 	public double getXAccel() {
-		return xAccel;
+		EntityStore store = this.store;
+		return (store == null) ? xAccel : store.xAccels[slot];
 	}
 
 	@Override
 	public void setXAccel(double xAccel) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.xAccels[slot] = xAccel;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.xAccel = xAccel;
 	}
 
 	@Override
 	public double getYAccel() {
-		return yAccel;
+		EntityStore store = this.store;
+		return (store == null) ? yAccel : store.yAccels[slot];
 	}
 
 	@Override
 	public void setYAccel(double yAccel) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.yAccels[slot] = yAccel;
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.yAccel = yAccel;
 	}
 	
 	@Override
 	public boolean canNoClip() {
-		return noClip;
+		EntityStore store = this.store;
+		return (store == null) ? noClip : (store.flags[slot] & EntityStore.NO_CLIP) != 0;
 	}
 	
 	@Override
 	public void setNoClip(boolean noClip) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.flags[slot] = noClip ? (store.flags[slot] | EntityStore.NO_CLIP) : (store.flags[slot] & ~EntityStore.NO_CLIP);
+					store.wake(slot);
+					return;
+				}
+			}
+		}
 		this.noClip = noClip;
 	}
 	
 	@Override
 	public boolean isGravityAffected() {
-		return gravityAffected;
+		EntityStore store = this.store;
+		return (store == null) ? gravityAffected : (store.flags[slot] & EntityStore.GRAVITY_AFFECTED) != 0;
 	}
 	
 	@Override
 	public void setOnGround(boolean onGround) {
+		EntityStore store = this.store;
+		if (store != null) {
+			synchronized (store) {
+				if (this.store == store) {
+					store.flags[slot] = onGround ? (store.flags[slot] | EntityStore.ON_GROUND) : (store.flags[slot] & ~EntityStore.ON_GROUND);
+					if (onGround)
+						store.groundTimes[slot] = System.nanoTime();
+					return;
+				}
+			}
+		}
 		this.onGround = onGround;
 		if (onGround)
 			lastGroundTime = System.nanoTime();
@@ -121,7 +228,18 @@ public abstract class AbstractEntity implements Entity {
 	
 	@Override
 	public boolean isOnGround() {
-		return onGround;
+		EntityStore store = this.store;
+		return (store == null) ? onGround : (store.flags[slot] & EntityStore.ON_GROUND) != 0;
+	}
+	
+	/**
+	 * Gets when this entity was last on the ground.
+	 *
+	 * @return The time, in nano time.
+	 */
+	public double getLastGroundTime() {
+		EntityStore store = this.store;
+		return (store == null) ? lastGroundTime : store.groundTimes[slot];
 	}
 
 }
@@ -3,6 +3,12 @@ package com.github.cm360.pixadv.world.types.entities;
 import java.awt.image.BufferedImage;
 import java.util.Map;
 
+/**
+ * An entity which can be placed in a world. Worlds keep their entities' state
+ * in an {@link EntityStore}, which only {@link AbstractEntity} knows how to
+ * read and write, so every implementation must extend it. Worlds refuse any
+ * other implementation, and the registry skips them when loading modules.
+ */
 public interface Entity {
 
 	public String getID();
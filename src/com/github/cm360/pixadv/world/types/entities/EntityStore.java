@@ -0,0 +1,319 @@
+package com.github.cm360.pixadv.world.types.entities;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the physical state of a world's entities in parallel primitive arrays,
+ * one slot per entity. Slots are kept dense: removing an entity moves the last
+ * one into its slot. Once added, an {@link AbstractEntity} reads and writes its
+ * position, motion, size and flags here instead of in its own fields, so the
+ * physics engine can update every entity with simple loops over the arrays.
+ * <p>
+ * The arrays are replaced when the store grows, so fetch them again after
+ * adding entities. Adding and removing entities is synchronized on the store;
+ * hold its lock while iterating slots.
+ * <p>
+ * Entities which have rested for a while are put to sleep by the physics
+ * engine, which then skips them until they are woken. Changing an entity's
+ * position, motion or flags from outside the engine wakes it.
+ */
+public class EntityStore {
+
+	/** Flags kept for each entity. */
+	public static final int NO_CLIP = 1, GRAVITY_AFFECTED = 2, ON_GROUND = 4, SLEEPING = 8, UNLOADED = 16;
+
+	int size;
+	UUID[] uuids;
+	AbstractEntity[] entities;
+	double[] xs;
+	double[] ys;
+	double[] xVels;
+	double[] yVels;
+	double[] xAccels;
+	double[] yAccels;
+	double[] widths;
+	double[] heights;
+	double[] masses;
+	double[] collidabilities;
+	double[] groundTimes;
+	double[] restTimes;
+	double[] speeds;
+	long[] sleepVersions;
+	int[] flags;
+	private final AtomicLong wakeCount = new AtomicLong();
+
+	public EntityStore() {
+		this(64);
+	}
+
+	public EntityStore(int capacity) {
+		uuids = new UUID[capacity];
+		entities = new AbstractEntity[capacity];
+		xs = new double[capacity];
+		ys = new double[capacity];
+		xVels = new double[capacity];
+		yVels = new double[capacity];
+		xAccels = new double[capacity];
+		yAccels = new double[capacity];
+		widths = new double[capacity];
+		heights = new double[capacity];
+		masses = new double[capacity];
+		collidabilities = new double[capacity];
+		groundTimes = new double[capacity];
+		restTimes = new double[capacity];
+		speeds = new double[capacity];
+		sleepVersions = new long[capacity];
+		flags = new int[capacity];
+	}
+
+	/**
+	 * Moves an entity's state into a new slot. From then on the entity reads and
+	 * writes its state in this store.
+	 *
+	 * @param uuid   The entity's UUID.
+	 * @param entity The entity, which must not be in a store already.
+	 * @return The entity's slot.
+	 */
+	public synchronized int add(UUID uuid, AbstractEntity entity) {
+		if (entity.store != null)
+			throw new IllegalStateException("The entity is already in a store!");
+		if (size == entities.length)
+			grow(size * 2);
+		int slot = size++;
+		uuids[slot] = uuid;
+		entities[slot] = entity;
+		xs[slot] = entity.x;
+		ys[slot] = entity.y;
+		xVels[slot] = entity.xVel;
+		yVels[slot] = entity.yVel;
+		xAccels[slot] = entity.xAccel;
+		yAccels[slot] = entity.yAccel;
+		widths[slot] = entity.width;
+		heights[slot] = entity.height;
+		masses[slot] = entity.mass;
+		collidabilities[slot] = entity.collidability;
+		groundTimes[slot] = entity.lastGroundTime;
+		restTimes[slot] = 0;
+		speeds[slot] = 0;
+		sleepVersions[slot] = 0;
+		flags[slot] = (entity.noClip ? NO_CLIP : 0)
+				| (entity.gravityAffected ? GRAVITY_AFFECTED : 0)
+				| (entity.onGround ? ON_GROUND : 0);
+		entity.store = this;
+		entity.slot = slot;
+		return slot;
+	}
+
+	/**
+	 * Copies an entity's state back into its own fields and frees its slot.
+	 *
+	 * @param entity The entity to remove.
+	 * @return true, if the entity was in this store.
+	 */
+	public synchronized boolean remove(AbstractEntity entity) {
+		if (entity.store != this)
+			return false;
+		int slot = entity.slot;
+		entity.x = xs[slot];
+		entity.y = ys[slot];
+		entity.xVel = xVels[slot];
+		entity.yVel = yVels[slot];
+		entity.xAccel = xAccels[slot];
+		entity.yAccel = yAccels[slot];
+		entity.lastGroundTime = groundTimes[slot];
+		entity.noClip = (flags[slot] & NO_CLIP) != 0;
+		entity.gravityAffected = (flags[slot] & GRAVITY_AFFECTED) != 0;
+		entity.onGround = (flags[slot] & ON_GROUND) != 0;
+		// Leave the slot set, so getters racing with this never read slot -1
+		entity.store = null;
+		// Fill the gap with the last entity
+		int last = --size;
+		if (slot != last) {
+			uuids[slot] = uuids[last];
+			entities[slot] = entities[last];
+			xs[slot] = xs[last];
+			ys[slot] = ys[last];
+			xVels[slot] = xVels[last];
+			yVels[slot] = yVels[last];
+			xAccels[slot] = xAccels[last];
+			yAccels[slot] = yAccels[last];
+			widths[slot] = widths[last];
+			heights[slot] = heights[last];
+			masses[slot] = masses[last];
+			collidabilities[slot] = collidabilities[last];
+			groundTimes[slot] = groundTimes[last];
+			restTimes[slot] = restTimes[last];
+			speeds[slot] = speeds[last];
+			sleepVersions[slot] = sleepVersions[last];
+			flags[slot] = flags[last];
+			entities[slot].slot = slot;
+		}
+		uuids[last] = null;
+		entities[last] = null;
+		return true;
+	}
+
+	private void grow(int capacity) {
+		uuids = Arrays.copyOf(uuids, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		xVels = Arrays.copyOf(xVels, capacity);
+		yVels = Arrays.copyOf(yVels, capacity);
+		xAccels = Arrays.copyOf(xAccels, capacity);
+		yAccels = Arrays.copyOf(yAccels, capacity);
+		widths = Arrays.copyOf(widths, capacity);
+		heights = Arrays.copyOf(heights, capacity);
+		masses = Arrays.copyOf(masses, capacity);
+		collidabilities = Arrays.copyOf(collidabilities, capacity);
+		groundTimes = Arrays.copyOf(groundTimes, capacity);
+		restTimes = Arrays.copyOf(restTimes, capacity);
+		speeds = Arrays.copyOf(speeds, capacity);
+		sleepVersions = Arrays.copyOf(sleepVersions, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+	}
+
+	/**
+	 * Wakes a sleeping entity, so the physics engine updates it again, and
+	 * restarts the time it has been resting for. Only the entity's own slot is
+	 * changed, so entities can be woken from several threads at once.
+	 *
+	 * @param slot The entity's slot.
+	 */
+	public void wake(int slot) {
+		if ((flags[slot] & SLEEPING) != 0) {
+			flags[slot] &= ~SLEEPING;
+			wakeCount.incrementAndGet();
+		}
+		restTimes[slot] = 0;
+	}
+
+	/**
+	 * Gets how many times entities in this store were woken.
+	 *
+	 * @return The number of wakes since the store was created.
+	 */
+	public long getWakeCount() {
+		return wakeCount.get();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the slot holding an entity.
+	 *
+	 * @param entity The entity.
+	 * @return The entity's slot, or -1 if it is not in this store.
+	 */
+	public int slotOf(AbstractEntity entity) {
+		return (entity.store == this) ? entity.slot : -1;
+	}
+
+	public UUID[] getUuids() {
+		return uuids;
+	}
+
+	public UUID getUuid(int slot) {
+		return uuids[slot];
+	}
+
+	public AbstractEntity getEntity(int slot) {
+		return entities[slot];
+	}
+
+	public double[] getXs() {
+		return xs;
+	}
+
+	public double[] getYs() {
+		return ys;
+	}
+
+	public double[] getXVels() {
+		return xVels;
+	}
+
+	public double[] getYVels() {
+		return yVels;
+	}
+
+	public double[] getXAccels() {
+		return xAccels;
+	}
+
+	public double[] getYAccels() {
+		return yAccels;
+	}
+
+	public double[] getWidths() {
+		return widths;
+	}
+
+	public double[] getHeights() {
+		return heights;
+	}
+
+	public double[] getMasses() {
+		return masses;
+	}
+
+	public double[] getCollidabilities() {
+		return collidabilities;
+	}
+
+	/**
+	 * Gets when each entity was last on the ground, in nano time.
+	 *
+	 * @return The times, by slot.
+	 */
+	public double[] getGroundTimes() {
+		return groundTimes;
+	}
+
+	/**
+	 * Gets how long each entity has been resting for, in seconds.
+	 *
+	 * @return The times, by slot.
+	 */
+	public double[] getRestTimes() {
+		return restTimes;
+	}
+
+	/**
+	 * Gets how fast each entity actually moved over the last tick, in tiles per
+	 * second.
+	 *
+	 * @return The speeds, by slot.
+	 */
+	public double[] getSpeeds() {
+		return speeds;
+	}
+
+	/**
+	 * Gets a summary of the versions of the chunks around each sleeping entity
+	 * when it fell asleep, which the physics engine compares to find entities
+	 * whose surroundings changed.
+	 *
+	 * @return The versions, by slot.
+	 */
+	public long[] getSleepVersions() {
+		return sleepVersions;
+	}
+
+	/**
+	 * Gets each entity's flags, a combination of {@link #NO_CLIP},
+	 * {@link #GRAVITY_AFFECTED}, {@link #ON_GROUND}, {@link #SLEEPING} and
+	 * {@link #UNLOADED}, which the physics engine sets on entities it holds in
+	 * place until the chunks around them are loaded.
+	 *
+	 * @return The flags, by slot.
+	 */
+	public int[] getFlags() {
+		return flags;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.github.cm360.pixadv.world.types.generators;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.cm360.pixadv.world.storage.ChunkBuilder;
+
+/**
+ * A chunk part way through generation. Stages write tiles through the chunk's
+ * builder, and can leave data for later stages, such as a heightmap, under a
+ * namespaced key.
+ */
+public class GenerationContext {
+
+	/**
+	 * Provides the neighbors of a chunk being generated.
+	 */
+	@FunctionalInterface
+	public interface NeighborSource {
+		public GenerationContext getNeighbor(GenerationContext context, int cx, int cy);
+	}
+	
+	private final int cx;
+	private final int cy;
+	private final ChunkBuilder builder;
+	private final Map<String, Object> data;
+	private final NeighborSource neighbors;
+	private GenerationStage stage;
+	
+	public GenerationContext(int cx, int cy, ChunkBuilder builder, NeighborSource neighbors) {
+		this.cx = cx;
+		this.cy = cy;
+		this.builder = builder;
+		this.data = new ConcurrentHashMap<String, Object>();
+		this.neighbors = neighbors;
+	}
+	
+	public int getChunkX() {
+		return cx;
+	}
+	
+	public int getChunkY() {
+		return cy;
+	}
+	
+	public int getChunkSize() {
+		return builder.getSize();
+	}
+	
+	public ChunkBuilder getBuilder() {
+		return builder;
+	}
+	
+	/**
+	 * Gets data left by an earlier stage.
+	 *
+	 * @param <T> The type of the data.
+	 * @param key The data's key, such as "pixadv:heights".
+	 * @return The data, or null if no stage has set it.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key) {
+		return (T) data.get(key);
+	}
+	
+	/**
+	 * Leaves data for later stages.
+	 *
+	 * @param key   The data's key, prefixed with the module's ID.
+	 * @param value The data, which must not be null.
+	 */
+	public void put(String key, Object value) {
+		data.put(key, value);
+	}
+	
+	/**
+	 * Gets a neighboring chunk which has been through at least the running
+	 * stage's dependencies. Neighbors must only be read, never written.
+	 *
+	 * @param dx The chunk X offset, wrapping around the world.
+	 * @param dy The chunk Y offset.
+	 * @return The neighbor, or null if it is above or below the world.
+	 * @throws IllegalArgumentException If the neighbor is outside the running
+	 *                                  stage's neighbor radius.
+	 */
+	public GenerationContext getNeighbor(int dx, int dy) {
+		int radius = (stage == null) ? 0 : stage.getNeighborRadius();
+		if (Math.abs(dx) > radius || Math.abs(dy) > radius)
+			throw new IllegalArgumentException("Chunk offset %d,%d is outside of the stage's neighbor radius!".formatted(dx, dy));
+		if (dx == 0 && dy == 0)
+			return this;
+		return neighbors.getNeighbor(this, cx + dx, cy + dy);
+	}
+	
+	public GenerationStage getStage() {
+		return stage;
+	}
+	
+	void setStage(GenerationStage stage) {
+		this.stage = stage;
+	}
+
+}
@@ -0,0 +1,303 @@
+package com.github.cm360.pixadv.world.types.generators;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.github.cm360.pixadv.util.Logger;
+import com.github.cm360.pixadv.world.storage.Chunk;
+import com.github.cm360.pixadv.world.storage.ChunkBuilder;
+import com.github.cm360.pixadv.world.storage.ChunkKey;
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+
+/**
+ * Runs a set of generation stages in dependency order and keeps timings for
+ * each of them.
+ * <p>
+ * A whole world is generated one stage at a time, with each stage running on
+ * every chunk in parallel before the next one starts, so a stage can read any
+ * neighbor which has been through its dependencies. A single chunk is
+ * generated on its own, and any neighbors its stages read are generated up to
+ * the stages they need and then thrown away.
+ */
+public class GenerationPipeline {
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	
+	private final WorldGenerator generator;
+	private final List<String> ids;
+	private final List<GenerationStage> stages;
+	private final List<BitSet> requirements;
+	private final List<StageTiming> timings;
+	private final ThreadLocal<ChunkBuilder> builders;
+	
+	private volatile Phase phase;
+	private final AtomicLong completed;
+	private volatile long total;
+	
+	/**
+	 * The time spent in a single stage.
+	 */
+	public static class StageTiming {
+		
+		private final String id;
+		private final Phase phase;
+		private final AtomicLong chunks = new AtomicLong();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder chunkNanos = new LongAdder();
+		private volatile long wallNanos;
+		
+		private StageTiming(String id, Phase phase) {
+			this.id = id;
+			this.phase = phase;
+		}
+		
+		public String getId() {
+			return id;
+		}
+		
+		public Phase getPhase() {
+			return phase;
+		}
+		
+		/**
+		 * @return The number of chunks this stage has run on.
+		 */
+		public long getChunks() {
+			return chunks.get();
+		}
+		
+		/**
+		 * @return The CPU time spent in this stage across all threads, in nanoseconds.
+		 */
+		public long getCpuNanos() {
+			return cpuNanos.sum();
+		}
+		
+		/**
+		 * @return The time spent in this stage summed over each chunk, in nanoseconds.
+		 */
+		public long getChunkNanos() {
+			return chunkNanos.sum();
+		}
+		
+		/**
+		 * @return The elapsed time of this stage during the last whole world generation, in nanoseconds.
+		 */
+		public long getWallNanos() {
+			return wallNanos;
+		}
+		
+	}
+	
+	/**
+	 * Receives chunks once every stage has run on them.
+	 */
+	@FunctionalInterface
+	public interface ChunkConsumer {
+		public void accept(int cx, int cy, Chunk chunk);
+	}
+	
+	/**
+	 * Creates a pipeline and initializes its stages.
+	 *
+	 * @param generator The generator the stages generate for.
+	 * @param stages    The stages, keyed by ID.
+	 * @throws IllegalArgumentException If a stage depends on a missing stage, or
+	 *                                  stages depend on each other in a loop.
+	 */
+	public GenerationPipeline(WorldGenerator generator, Map<String, GenerationStage> stages) {
+		this.generator = generator;
+		this.ids = sort(stages);
+		this.stages = new ArrayList<GenerationStage>();
+		this.requirements = new ArrayList<BitSet>();
+		this.timings = new ArrayList<StageTiming>();
+		for (String id : ids) {
+			GenerationStage stage = stages.get(id);
+			// Every stage this one needs, directly or not
+			BitSet required = new BitSet();
+			for (String dependency : stage.getDependencies()) {
+				int index = ids.indexOf(dependency);
+				required.set(index);
+				required.or(requirements.get(index));
+			}
+			this.stages.add(stage);
+			this.requirements.add(required);
+			this.timings.add(new StageTiming(id, stage.getPhase()));
+			stage.initialize(generator);
+		}
+		this.builders = ThreadLocal.withInitial(() -> new ChunkBuilder(generator.getChunkSize()));
+		this.phase = Phase.Waiting;
+		this.completed = new AtomicLong();
+	}
+	
+	private static List<String> sort(Map<String, GenerationStage> stages) {
+		// Stable topological sort, keeping the given order where dependencies allow
+		List<String> sorted = new ArrayList<String>();
+		Map<String, GenerationStage> remaining = new LinkedHashMap<String, GenerationStage>(stages);
+		while (!remaining.isEmpty()) {
+			String next = null;
+			for (Map.Entry<String, GenerationStage> entry : remaining.entrySet()) {
+				boolean ready = true;
+				for (String dependency : entry.getValue().getDependencies()) {
+					if (!stages.containsKey(dependency))
+						throw new IllegalArgumentException("Generation stage '%s' depends on unknown stage '%s'!".formatted(entry.getKey(), dependency));
+					if (!sorted.contains(dependency))
+						ready = false;
+				}
+				if (ready) {
+					next = entry.getKey();
+					break;
+				}
+			}
+			if (next == null)
+				throw new IllegalArgumentException("Generation stages %s depend on each other in a loop!".formatted(remaining.keySet()));
+			sorted.add(next);
+			remaining.remove(next);
+		}
+		return sorted;
+	}
+	
+	/**
+	 * Generates a single chunk, generating any neighbors its stages read.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return The generated chunk.
+	 */
+	public Chunk generateChunk(int cx, int cy) {
+		ChunkBuilder builder = builders.get();
+		builder.clear();
+		Map<Long, GenerationContext> neighbors = new HashMap<Long, GenerationContext>();
+		Map<GenerationContext, BitSet> applied = new HashMap<GenerationContext, BitSet>();
+		GenerationContext.NeighborSource source = new GenerationContext.NeighborSource() {
+			@Override
+			public GenerationContext getNeighbor(GenerationContext context, int x, int y) {
+				if (y < 0 || y >= generator.getHeight())
+					return null;
+				int wrappedX = Math.floorMod(x, generator.getWidth());
+				GenerationContext neighbor = neighbors.computeIfAbsent(ChunkKey.of(wrappedX, y),
+						key -> new GenerationContext(wrappedX, y, new ChunkBuilder(generator.getChunkSize()), this));
+				// Bring the neighbor up to the stages the running stage needs
+				BitSet done = applied.computeIfAbsent(neighbor, key -> new BitSet());
+				BitSet required = requirements.get(stages.indexOf(context.getStage()));
+				for (int i = required.nextSetBit(0); i >= 0; i = required.nextSetBit(i + 1)) {
+					if (!done.get(i)) {
+						run(neighbor, i);
+						done.set(i);
+					}
+				}
+				return neighbor;
+			}
+		};
+		GenerationContext context = new GenerationContext(cx, cy, builder, source);
+		for (int i = 0; i < stages.size(); i++)
+			run(context, i);
+		return builder.build();
+	}
+	
+	/**
+	 * Generates every chunk of the world, running each stage on all chunks in
+	 * parallel before starting the next.
+	 *
+	 * @param parallelism The number of threads, or 1 to generate on the calling thread.
+	 * @param consumer    Receives each finished chunk, possibly from several threads at once.
+	 */
+	public void generateAll(int parallelism, ChunkConsumer consumer) {
+		int width = generator.getWidth();
+		int height = generator.getHeight();
+		GenerationContext[] contexts = new GenerationContext[width * height];
+		GenerationContext.NeighborSource source = (context, x, y) ->
+				(y < 0 || y >= height) ? null : contexts[Math.floorMod(x, width) * height + y];
+		for (int cx = 0; cx < width; cx++)
+			for (int cy = 0; cy < height; cy++)
+				contexts[cx * height + cy] = new GenerationContext(cx, cy, new ChunkBuilder(generator.getChunkSize()), source);
+		completed.set(0);
+		total = (long) stages.size() * contexts.length;
+		ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+		try {
+			phase = Phase.Init;
+			for (int i = 0; i < stages.size(); i++) {
+				int stage = i;
+				phase = stages.get(i).getPhase();
+				long start = System.nanoTime();
+				forEach(pool, contexts.length, c -> {
+					run(contexts[c], stage);
+					completed.incrementAndGet();
+				});
+				timings.get(i).wallNanos = System.nanoTime() - start;
+			}
+			forEach(pool, contexts.length, c -> consumer.accept(
+					contexts[c].getChunkX(), contexts[c].getChunkY(), contexts[c].getBuilder().build()));
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+		phase = Phase.Complete;
+		logTimings();
+	}
+	
+	private static void forEach(ForkJoinPool pool, int count, IntConsumer task) {
+		if (pool == null)
+			IntStream.range(0, count).forEach(task);
+		else
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+	}
+	
+	private void run(GenerationContext context, int index) {
+		GenerationStage stage = stages.get(index);
+		StageTiming timing = timings.get(index);
+		context.setStage(stage);
+		long cpuStart = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+		long start = System.nanoTime();
+		stage.generate(context);
+		timing.chunkNanos.add(System.nanoTime() - start);
+		if (threads.isCurrentThreadCpuTimeSupported())
+			timing.cpuNanos.add(threads.getCurrentThreadCpuTime() - cpuStart);
+		timing.chunks.incrementAndGet();
+	}
+	
+	/**
+	 * Logs how long each stage has taken.
+	 */
+	public void logTimings() {
+		for (StageTiming timing : timings)
+			Logger.logMessage(Logger.INFO, "Stage '%s' (%s): %.1fms wall, %.1fms per chunk total, %.1fms CPU over %d chunks",
+					timing.getId(), timing.getPhase(), timing.getWallNanos() / 1e6, timing.getChunkNanos() / 1e6,
+					timing.getCpuNanos() / 1e6, timing.getChunks());
+	}
+	
+	/**
+	 * Gets the fraction of the current whole world generation which is done.
+	 *
+	 * @return A value from 0 to 1.
+	 */
+	public double getProgress() {
+		long expected = total;
+		return (expected == 0) ? 0 : (double) completed.get() / expected;
+	}
+	
+	public Phase getPhase() {
+		return phase;
+	}
+	
+	public List<String> getStageIds() {
+		return Collections.unmodifiableList(ids);
+	}
+	
+	public List<StageTiming> getTimings() {
+		return Collections.unmodifiableList(timings);
+	}
+
+}
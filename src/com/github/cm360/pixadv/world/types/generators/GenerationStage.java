@@ -0,0 +1,64 @@
+package com.github.cm360.pixadv.world.types.generators;
+
+import java.util.Set;
+
+import com.github.cm360.pixadv.world.types.generators.WorldGenerator.Phase;
+
+/**
+ * A single pass of world generation, such as shaping terrain or carving caves.
+ * Stages are registered by modules through their content provider and run by a
+ * {@link GenerationPipeline} in dependency order.
+ * <p>
+ * Stages are instantiated once per pipeline and then run for many chunks at
+ * the same time, so {@link #generate(GenerationContext)} must not keep any
+ * per-chunk state in fields.
+ */
+public interface GenerationStage {
+
+	/**
+	 * Gets the phase this stage is reported under.
+	 *
+	 * @return The phase.
+	 */
+	public Phase getPhase();
+	
+	/**
+	 * Gets the IDs of the stages which must run on a chunk before this one, such
+	 * as "pixadv:terrain".
+	 *
+	 * @return The IDs of the stages this stage depends on.
+	 */
+	public default Set<String> getDependencies() {
+		return Set.of();
+	}
+	
+	/**
+	 * Gets how many chunks away this stage reads neighboring chunks, see
+	 * {@link GenerationContext#getNeighbor(int, int)}. Neighbors are only
+	 * guaranteed to have been through this stage's dependencies, and may be
+	 * running this stage at the same time, so only data written by the
+	 * dependencies should be read from them.
+	 *
+	 * @return The neighbor radius, or 0 if only the chunk itself is used.
+	 */
+	public default int getNeighborRadius() {
+		return 0;
+	}
+	
+	/**
+	 * Prepares this stage to generate chunks for a generator's world.
+	 *
+	 * @param generator The generator, used for its seed and world size.
+	 */
+	public default void initialize(WorldGenerator generator) {
+		
+	}
+	
+	/**
+	 * Runs this stage on a chunk.
+	 *
+	 * @param context The chunk being generated.
+	 */
+	public void generate(GenerationContext context);
+
+}
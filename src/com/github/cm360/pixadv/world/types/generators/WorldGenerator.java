@@ -1,5 +1,6 @@
 package com.github.cm360.pixadv.world.types.generators;
 
+import com.github.cm360.pixadv.world.storage.Chunk;
 import com.github.cm360.pixadv.world.storage.world.World;
 
 public interface WorldGenerator {
@@ -8,8 +9,44 @@ public interface WorldGenerator {
 	
 	public World generate();
 	
+	/**
+	 * Creates a world with no chunks loaded. Its chunks are generated by this
+	 * generator when they are first requested and have not been saved.
+	 *
+	 * @return The new world.
+	 */
+	public World createWorld();
+	
+	/**
+	 * Generates a single chunk. This may be called from several threads at once,
+	 * and must always give the same chunk for the same coordinates so it lines
+	 * up with neighbors generated at other times.
+	 *
+	 * @param cx The chunk's X coordinate.
+	 * @param cy The chunk's Y coordinate.
+	 * @return The generated chunk.
+	 */
+	public Chunk generateChunk(int cx, int cy);
+	
 	public Phase getGenerationPhase();
 	
+	/**
+	 * Gets the fraction of the current {@link #generate()} call which is done.
+	 *
+	 * @return A value from 0 to 1.
+	 */
+	public double getProgress();
+	
+	public long getSeed();
+	
+	public String getName();
+	
+	public int getWidth();
+	
+	public int getHeight();
+	
+	public int getChunkSize();
+	
 	public WorldGenerator setName(String name);
 	
 	public WorldGenerator setWidth(int width);
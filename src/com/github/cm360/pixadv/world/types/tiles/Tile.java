@@ -4,11 +4,23 @@ import java.util.List;
 
 import com.github.cm360.pixadv.registry.Identifier;
 
+/**
+ * A tile state. Tile states are immutable and shared, so two cells holding the
+ * same tile type and data refer to the same instance and may be compared by
+ * identity.
+ */
 public interface Tile {
 	
 	public String getID();
 	
-	public void setData(String data);
+	/**
+	 * Gets the shared state of this tile type which matches the given data.
+	 * Implementations must return the same instance for equal data.
+	 *
+	 * @param data The serialized tile data, or null for the default state.
+	 * @return The matching tile state.
+	 */
+	public Tile withData(String data);
 	
 	public String getData();
 	